@@ -8,7 +8,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.client.StatsClient;
 import ru.practicum.dto.EndpointHitDto;
-import ru.practicum.dto.ViewStatsDto;
 import ru.practicum.ewm.category.model.Category;
 import ru.practicum.ewm.category.repository.CategoryRepository;
 import ru.practicum.ewm.event.dto.EventFullDto;
@@ -449,36 +448,16 @@ public class EventService {
             hitDto.setIp(ip);
             hitDto.setTimestamp(LocalDateTime.now());
             statsClient.saveHit(hitDto);
-            log.info("Statistics sent for uri: {}", uri);
+            log.info("Statistics queued for uri: {}", uri);
         } catch (Exception e) {
             log.error("Failed to send statistics", e);
         }
     }
 
     private Long getViewsForEvent(Long eventId) {
+        String uri = "/events/" + eventId;
         try {
-            LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0);
-            LocalDateTime end = LocalDateTime.now().plusDays(1);
-            List<String> uris = List.of("/events/" + eventId);
-
-            log.info("=== REQUESTING STATS ===");
-            log.info("Event ID: {}", eventId);
-            log.info("URI: {}", uris);
-            log.info("Start: {}, End: {}", start, end);
-            log.info("Unique: true");
-
-            List<ViewStatsDto> stats = statsClient.getStats(start, end, uris, true);
-
-            log.info("=== STATS RESPONSE ===");
-            log.info("Stats: {}", stats);
-
-            if (stats != null && !stats.isEmpty()) {
-                Long hits = stats.get(0).getHits();
-                log.info("Returning hits: {}", hits);
-                return hits;
-            } else {
-                log.warn("Stats is null or empty!");
-            }
+            return statsClient.getViews(List.of(uri), true).getOrDefault(uri, 0L);
         } catch (Exception e) {
             log.error("Failed to get views for event {}", eventId, e);
         }
@@ -497,20 +476,11 @@ public class EventService {
                     .map(event -> "/events/" + event.getId())
                     .collect(Collectors.toList());
 
-            List<ViewStatsDto> stats = statsClient.getStats(
-                    LocalDateTime.of(2020, 1, 1, 0, 0),
-                    LocalDateTime.now().plusDays(1),
-                    uris,
-                    true
-            );
-
-            if (stats != null && !stats.isEmpty()) {
-                return stats.stream()
-                        .collect(Collectors.toMap(
-                                stat -> Long.parseLong(stat.getUri().substring("/events/".length())),
-                                ViewStatsDto::getHits
-                        ));
-            }
+            return statsClient.getViews(uris, true).entrySet().stream()
+                    .collect(Collectors.toMap(
+                            entry -> Long.parseLong(entry.getKey().substring("/events/".length())),
+                            Map.Entry::getValue
+                    ));
         } catch (Exception e) {
             log.error("Failed to get views for events", e);
         }
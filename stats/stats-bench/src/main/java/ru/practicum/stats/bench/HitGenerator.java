@@ -0,0 +1,118 @@
+package ru.practicum.stats.bench;
+
+import ru.practicum.dto.EndpointHitDto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Синтетические хиты с распределениями, близкими к боевым. Популярность событий - по Ципфу: несколько событий
+// собирают большую часть просмотров, у остальных длинный хвост; каждый восьмой хит - список /events.
+// Посетители тоже по Ципфу: постоянные пользователи возвращаются, большинство адресов встречается редко;
+// адреса детерминированы номером посетителя, примерно каждый двадцатый - IPv6.
+// Время хитов равномерно в [from, to). Генератор не потокобезопасен,
+// при одном seed выдаёт одну и ту же последовательность
+public class HitGenerator {
+
+    public static final String APP = "ewm-main-service";
+
+    private static final double EVENT_EXPONENT = 1.1;
+    private static final double VISITOR_EXPONENT = 0.8;
+
+    private final SplittableRandom random;
+    private final Zipf events;
+    private final Zipf visitors;
+    private final LocalDateTime from;
+    private final long spanSeconds;
+
+    public HitGenerator(long seed, int events, int visitors, LocalDateTime from, LocalDateTime to) {
+        this.random = new SplittableRandom(seed);
+        this.events = new Zipf(events, EVENT_EXPONENT);
+        this.visitors = new Zipf(visitors, VISITOR_EXPONENT);
+        this.from = from;
+        this.spanSeconds = Math.max(1, Duration.between(from, to).toSeconds());
+    }
+
+    public EndpointHitDto next() {
+        String uri = random.nextInt(8) == 0 ? "/events" : eventUri(events.sample(random));
+        String ip = ip(visitors.sample(random));
+        LocalDateTime timestamp = from.plusSeconds(random.nextLong(spanSeconds));
+        return new EndpointHitDto(null, APP, uri, ip, timestamp);
+    }
+
+    public List<EndpointHitDto> next(int count) {
+        List<EndpointHitDto> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hits.add(next());
+        }
+        return hits;
+    }
+
+    // count самых популярных событий, как их запрашивает основной сервис
+    public List<String> popularUris(int count) {
+        List<String> uris = new ArrayList<>(count);
+        for (int rank = 1; rank <= Math.min(count, events.size()); rank++) {
+            uris.add(eventUri(rank));
+        }
+        return uris;
+    }
+
+    // Случайная выборка событий с тем же распределением популярности
+    public List<String> sampleUris(int count) {
+        List<String> uris = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            uris.add(eventUri(events.sample(random)));
+        }
+        return uris;
+    }
+
+    private static String eventUri(int rank) {
+        return "/events/" + rank;
+    }
+
+    private static String ip(int visitor) {
+        long hash = mix(visitor);
+        if (hash % 20 == 0) {
+            return String.format("2001:db8:%x:%x::%x", hash >>> 48 & 0xFFFF, hash >>> 32 & 0xFFFF, hash & 0xFFFF);
+        }
+        return (hash >>> 24 & 0xFF) + "." + (hash >>> 16 & 0xFF) + "." + (hash >>> 8 & 0xFF) + "." + (hash & 0xFF);
+    }
+
+    // Перемешивание номера посетителя (SplitMix64): адреса разбросаны по всему пространству
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (z ^ (z >>> 31)) & Long.MAX_VALUE;
+    }
+
+    // Распределение Ципфа на рангах 1..n: предрассчитанная функция распределения и двоичный поиск
+    private static final class Zipf {
+
+        private final double[] cumulative;
+
+        Zipf(int n, double exponent) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int rank = 1; rank <= n; rank++) {
+                sum += 1 / Math.pow(rank, exponent);
+                cumulative[rank - 1] = sum;
+            }
+            for (int i = 0; i < n; i++) {
+                cumulative[i] /= sum;
+            }
+        }
+
+        int sample(SplittableRandom random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return (index >= 0 ? index : -index - 1) + 1;
+        }
+
+        int size() {
+            return cumulative.length;
+        }
+    }
+}
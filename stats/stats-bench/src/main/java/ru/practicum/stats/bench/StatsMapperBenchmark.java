@@ -0,0 +1,55 @@
+package ru.practicum.stats.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.stats.mapper.StatsMapper;
+import ru.practicum.stats.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Преобразования EndpointHitDto <-> EndpointHit на пути записи хита
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatsMapperBenchmark {
+
+    private static final int HITS = 1024;
+
+    private final StatsMapper mapper = new StatsMapper();
+    private List<EndpointHitDto> dtos;
+    private List<EndpointHit> entities;
+    private int next;
+
+    @Setup
+    public void setup() {
+        LocalDateTime now = LocalDateTime.now();
+        dtos = new HitGenerator(1, 10_000, 100_000, now.minusDays(30), now).next(HITS);
+        entities = dtos.stream()
+                .map(mapper::toEntity)
+                .toList();
+    }
+
+    @Benchmark
+    public EndpointHit toEntity() {
+        return mapper.toEntity(dtos.get(next++ & (HITS - 1)));
+    }
+
+    @Benchmark
+    public EndpointHitDto toDto() {
+        return mapper.toDto(entities.get(next++ & (HITS - 1)));
+    }
+}
@@ -0,0 +1,121 @@
+package ru.practicum.stats.bench;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.practicum.stats.StatsServerApplication;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Контекст stats-server без веб-слоя поверх встроенного PostgreSQL в каталоге во временной папке
+// или, в профиле embedded, поверх встроенного хранилища сегментов во временной папке.
+// Логи приложения приглушены: StatsService пишет строку на каждый хит, это мерило бы логирование
+public final class StatsServerFixture implements AutoCloseable {
+
+    private final EmbeddedPostgres postgres;
+    private final Path segments;
+    private final ConfigurableApplicationContext context;
+
+    private StatsServerFixture(EmbeddedPostgres postgres, Path segments, ConfigurableApplicationContext context) {
+        this.postgres = postgres;
+        this.segments = segments;
+        this.context = context;
+    }
+
+    // properties - дополнительные свойства stats-server вида key=value
+    public static StatsServerFixture start(String... properties) {
+        EmbeddedPostgres postgres;
+        try {
+            postgres = EmbeddedPostgres.builder()
+                    .setLocaleConfig("locale", "C")
+                    .start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start embedded PostgreSQL", e);
+        }
+        try {
+            return new StatsServerFixture(postgres, null, run(properties,
+                    "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                    "--spring.datasource.username=postgres",
+                    "--spring.datasource.password=postgres"));
+        } catch (RuntimeException e) {
+            stop(postgres);
+            throw e;
+        }
+    }
+
+    // Профиль embedded: хиты во встроенном хранилище, PostgreSQL не запускается
+    public static StatsServerFixture startEmbedded(String... properties) {
+        Path segments;
+        try {
+            segments = Files.createTempDirectory("stats-segments");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create a segment directory", e);
+        }
+        try {
+            return new StatsServerFixture(null, segments, run(properties,
+                    "--spring.profiles.active=embedded",
+                    "--stats.segments.dir=" + segments));
+        } catch (RuntimeException e) {
+            delete(segments);
+            throw e;
+        }
+    }
+
+    private static ConfigurableApplicationContext run(String[] properties, String... storage) {
+        List<String> args = new ArrayList<>(List.of(storage));
+        args.addAll(List.of(
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate.SQL=WARN"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(StatsServerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new));
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() {
+        try {
+            context.close();
+        } finally {
+            if (postgres != null) {
+                stop(postgres);
+            }
+            if (segments != null) {
+                delete(segments);
+            }
+        }
+    }
+
+    private static void stop(EmbeddedPostgres postgres) {
+        try {
+            postgres.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not stop embedded PostgreSQL", e);
+        }
+    }
+
+    private static void delete(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete " + directory, e);
+        }
+    }
+}
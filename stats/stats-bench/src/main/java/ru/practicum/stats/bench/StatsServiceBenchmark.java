@@ -0,0 +1,134 @@
+package ru.practicum.stats.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.service.StatsService;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// StatsService целиком (роллапы, индексы, кэш) на встроенном PostgreSQL. Перед замером в базу
+// записывается hits синтетических хитов за последние 30 дней. Запросы getStats выбираются из пула
+// queries заранее построенных запросов: так основной сервис спрашивает просмотры одних и тех же событий,
+// при cache=true повторы обслуживает кэш результатов. Свойства stats-server можно менять параметром
+// properties через ';' (запятая в -p разделяет значения параметра):
+// -p "properties=stats.storage.mode=compact;stats.rollups.enabled=false"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class StatsServiceBenchmark {
+
+    private static final int DAYS = 30;
+    private static final int EVENTS = 10_000;
+    private static final int VISITORS = 200_000;
+    private static final int BATCH = 1000;
+
+    @Param("100000")
+    private int hits;
+
+    @Param("1000")
+    private int queries;
+
+    @Param({"true", "false"})
+    private boolean cache;
+
+    @Param("")
+    private String properties;
+
+    private final AtomicLong seeds = new AtomicLong();
+    private StatsServerFixture fixture;
+    private StatsService statsService;
+    private LocalDateTime now;
+    private List<Query> pool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<String> settings = new ArrayList<>(List.of("stats.cache.enabled=" + cache));
+        if (!properties.isBlank()) {
+            settings.addAll(List.of(properties.split(";")));
+        }
+        fixture = StatsServerFixture.start(settings.toArray(String[]::new));
+        statsService = fixture.getBean(StatsService.class);
+
+        now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        HitGenerator generator = new HitGenerator(seeds.incrementAndGet(), EVENTS, VISITORS, now.minusDays(DAYS), now);
+        for (int written = 0; written < hits; written += BATCH) {
+            statsService.saveHits(generator.next(Math.min(BATCH, hits - written)));
+        }
+
+        // Окна от часа до всего срока, по одному и нескольким событиям и по всем uri
+        SplittableRandom random = new SplittableRandom(seeds.incrementAndGet());
+        pool = new ArrayList<>(queries);
+        for (int i = 0; i < queries; i++) {
+            long seconds = switch (random.nextInt(4)) {
+                case 0 -> 3600;
+                case 1 -> 86400;
+                case 2 -> 7 * 86400;
+                default -> DAYS * 86400L;
+            };
+            LocalDateTime end = now.minusSeconds(random.nextLong(DAYS * 86400L - seconds + 1));
+            List<String> uris = switch (random.nextInt(3)) {
+                case 0 -> generator.sampleUris(1);
+                case 1 -> generator.sampleUris(10);
+                default -> null;
+            };
+            pool.add(new Query(end.minusSeconds(seconds), end, uris, random.nextBoolean()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        private HitGenerator generator;
+        private SplittableRandom random;
+
+        @Setup(Level.Trial)
+        public void setup(StatsServiceBenchmark benchmark) {
+            long seed = benchmark.seeds.incrementAndGet();
+            generator = new HitGenerator(seed, EVENTS, VISITORS, benchmark.now.minusMinutes(5), benchmark.now);
+            random = new SplittableRandom(seed);
+        }
+    }
+
+    @Benchmark
+    public EndpointHitDto saveHit(Client client) {
+        return statsService.saveHit(client.generator.next());
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> getStats(Client client) {
+        Query query = pool.get(client.random.nextInt(pool.size()));
+        return statsService.getStats(query.start(), query.end(), query.uris(), query.unique(), false);
+    }
+
+    private record Query(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+    }
+}
@@ -0,0 +1,144 @@
+package ru.practicum.stats.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.service.StatsService;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Хранилища сырых хитов: plain - JPA на встроенном PostgreSQL, segments - встроенное хранилище сегментов
+// (профиль embedded). Роллапы, индексы в памяти, окно последних хитов и кэш выключены, так что и запись,
+// и запросы идут в хранилище. Перед замером записывается hits хитов за последние 30 дней;
+// ingest пишет пачки по INGEST_BATCH хитов, запросы выбираются из пула как в StatsServiceBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class StorageBenchmark {
+
+    private static final int DAYS = 30;
+    private static final int EVENTS = 10_000;
+    private static final int VISITORS = 200_000;
+    private static final int BATCH = 1000;
+    private static final int INGEST_BATCH = 100;
+    private static final String[] RAW_STORAGE = {
+        "stats.rollups.enabled=false",
+        "stats.unique-index.enabled=false",
+        "stats.hll.enabled=false",
+        "stats.hot-window.enabled=false",
+        "stats.cache.enabled=false",
+        "stats.top.enabled=false",
+        "stats.parallel.threads=1"
+    };
+
+    @Param({"plain", "segments"})
+    private String storage;
+
+    @Param("100000")
+    private int hits;
+
+    @Param("1000")
+    private int queries;
+
+    private final AtomicLong seeds = new AtomicLong();
+    private StatsServerFixture fixture;
+    private StatsService statsService;
+    private LocalDateTime now;
+    private List<Query> pool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        fixture = "segments".equals(storage)
+                ? StatsServerFixture.startEmbedded(RAW_STORAGE)
+                : StatsServerFixture.start(RAW_STORAGE);
+        statsService = fixture.getBean(StatsService.class);
+
+        now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        HitGenerator generator = new HitGenerator(seeds.incrementAndGet(), EVENTS, VISITORS, now.minusDays(DAYS), now);
+        for (int written = 0; written < hits; written += BATCH) {
+            statsService.saveHits(generator.next(Math.min(BATCH, hits - written)));
+        }
+
+        SplittableRandom random = new SplittableRandom(seeds.incrementAndGet());
+        pool = new ArrayList<>(queries);
+        for (int i = 0; i < queries; i++) {
+            long seconds = switch (random.nextInt(4)) {
+                case 0 -> 3600;
+                case 1 -> 86400;
+                case 2 -> 7 * 86400;
+                default -> DAYS * 86400L;
+            };
+            LocalDateTime end = now.minusSeconds(random.nextLong(DAYS * 86400L - seconds + 1));
+            List<String> uris = switch (random.nextInt(3)) {
+                case 0 -> generator.sampleUris(1);
+                case 1 -> generator.sampleUris(10);
+                default -> null;
+            };
+            pool.add(new Query(end.minusSeconds(seconds), end, uris));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        private HitGenerator generator;
+        private SplittableRandom random;
+
+        @Setup(Level.Trial)
+        public void setup(StorageBenchmark benchmark) {
+            long seed = benchmark.seeds.incrementAndGet();
+            generator = new HitGenerator(seed, EVENTS, VISITORS, benchmark.now.minusMinutes(5), benchmark.now);
+            random = new SplittableRandom(seed);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INGEST_BATCH)
+    public List<EndpointHitDto> ingest(Client client) {
+        return statsService.saveHits(client.generator.next(INGEST_BATCH));
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> getStats(Client client) {
+        Query query = pool.get(client.random.nextInt(pool.size()));
+        return statsService.getStats(query.start(), query.end(), query.uris(), false, false);
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> getUniqueStats(Client client) {
+        Query query = pool.get(client.random.nextInt(pool.size()));
+        return statsService.getStats(query.start(), query.end(), query.uris(), true, false);
+    }
+
+    private record Query(LocalDateTime start, LocalDateTime end, List<String> uris) {
+    }
+}
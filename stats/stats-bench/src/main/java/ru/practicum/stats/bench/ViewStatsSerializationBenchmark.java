@@ -0,0 +1,81 @@
+package ru.practicum.stats.bench;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.dto.binary.StatsBinaryFormat;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Ответ GET /stats: List<ViewStatsDto> в JSON тем же ObjectMapper, что строит Spring MVC,
+// и для сравнения - в бинарном формате application/x-stats-binary
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ViewStatsSerializationBenchmark {
+
+    private static final TypeReference<List<ViewStatsDto>> VIEW_STATS_LIST = new TypeReference<>() {
+    };
+
+    @Param({"10", "1000", "100000"})
+    private int size;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private List<ViewStatsDto> stats;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> uris = new HitGenerator(1, Math.max(size, 1), 1, now.minusDays(1), now).popularUris(size);
+        SplittableRandom random = new SplittableRandom(1);
+        stats = new ArrayList<>(size);
+        for (String uri : uris) {
+            stats.add(new ViewStatsDto(HitGenerator.APP, uri, random.nextLong(1, 1_000_000)));
+        }
+        json = objectMapper.writeValueAsBytes(stats);
+        binary = StatsBinaryFormat.writeViewStats(stats);
+    }
+
+    @Benchmark
+    public byte[] writeJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(stats);
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> readJson() throws IOException {
+        return objectMapper.readValue(json, VIEW_STATS_LIST);
+    }
+
+    @Benchmark
+    public byte[] writeBinary() {
+        return StatsBinaryFormat.writeViewStats(stats);
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> readBinary() {
+        return StatsBinaryFormat.readViewStats(binary);
+    }
+}
@@ -0,0 +1,106 @@
+package ru.practicum.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// Размыкатель чтений статистики: после failureThreshold ошибок подряд вызовы openMs отклоняются сразу
+// StatsServerUnavailableException, затем пропускается один пробный вызов. Его успех замыкает цепь,
+// ошибка снова размыкает. Ошибки, после которых сервер здоров (ignored, например 4xx), не считаются.
+// Любой другой выход из action, включая Error, считается ошибкой: пробный вызов всегда завершает HALF_OPEN
+@Slf4j
+class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final Predicate<RuntimeException> ignored;
+    private final Counter rejectedCounter;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+
+    CircuitBreaker(MeterRegistry meterRegistry,
+                   int failureThreshold,
+                   long openMs,
+                   Predicate<RuntimeException> ignored) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+        this.ignored = ignored;
+        this.rejectedCounter = Counter.builder("stats.client.circuit.rejected")
+                .description("Stats reads rejected without a call while the circuit was open")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.circuit.state", this, breaker -> breaker.state().ordinal())
+                .description("Stats read circuit: 0 - closed, 1 - open, 2 - half-open")
+                .register(meterRegistry);
+    }
+
+    <T> T call(Supplier<T> action) {
+        if (!tryAcquire()) {
+            rejectedCounter.increment();
+            throw new StatsServerUnavailableException("Stats server circuit is open");
+        }
+        boolean succeeded = false;
+        try {
+            T result = action.get();
+            succeeded = true;
+            return result;
+        } catch (RuntimeException e) {
+            succeeded = ignored.test(e);
+            throw e;
+        } finally {
+            if (succeeded) {
+                onSuccess();
+            } else {
+                onFailure();
+            }
+        }
+    }
+
+    // Вызовы сейчас отклоняются; пробный вызов после openMs этим не считается
+    synchronized boolean isOpen() {
+        return state == State.OPEN && System.nanoTime() - openedAt < openNanos;
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    private synchronized boolean tryAcquire() {
+        return switch (state) {
+            case CLOSED -> true;
+            case HALF_OPEN -> false;
+            case OPEN -> {
+                if (System.nanoTime() - openedAt < openNanos) {
+                    yield false;
+                }
+                state = State.HALF_OPEN;
+                yield true;
+            }
+        };
+    }
+
+    private synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            log.info("Stats server circuit closed");
+        }
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    private synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || state == State.CLOSED && failures >= failureThreshold) {
+            log.warn("Stats server circuit opened after {} failures", failures);
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package ru.practicum.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.dto.EndpointHitDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Пакетная отправка хитов: хиты копятся в ограниченной очереди, один поток отправляет их пачками
+// по batchSize или раз в flushIntervalMs. Пачка, которую сервер не принял, уходит в журнал на диске,
+// после ошибки сервер считается недоступным retryIntervalMs и новые пачки пишутся сразу в журнал.
+// Когда сервер отвечает, журнал повторяется пачками в промежутках между живыми хитами.
+// Повтор после таймаута может задвоить пачку, которую сервер успел записать
+@Slf4j
+class HitBatchSender {
+
+    private final Consumer<List<EndpointHitDto>> delivery;
+    private final HitSpool spool;
+    private final BlockingQueue<EndpointHitDto> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long retryIntervalNanos;
+    private final Timer deliveryTimer;
+    private final Counter failedCounter;
+    private final Counter droppedCounter;
+    private final Counter spooledCounter;
+    private final Counter replayedCounter;
+    private final Thread senderThread;
+    // offer держит блокировку на чтение, остановка - на запись: после stop() ни один принятый хит
+    // не окажется в очереди позже, чем поток отправки увидит running=false
+    private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+
+    private volatile boolean running = true;
+    // Остановка не дождалась отправки: оставшиеся хиты пишутся в журнал без обращения к серверу
+    private volatile boolean abandoned;
+    // Поток отправки внутри delivery; под монитором this, чтобы stop() прерывал только HTTP-вызов
+    private boolean delivering;
+    private long downUntilNanos;
+    // После ошибки журнала (диск, файл) повтор откладывается на retryIntervalMs
+    private long replayPausedUntilNanos;
+
+    // spool == null - журнал выключен, недоставленные пачки теряются
+    HitBatchSender(Consumer<List<EndpointHitDto>> delivery,
+                   HitSpool spool,
+                   MeterRegistry meterRegistry,
+                   int capacity,
+                   int batchSize,
+                   long flushIntervalMs,
+                   long retryIntervalMs) {
+        this.delivery = delivery;
+        this.spool = spool;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.retryIntervalNanos = TimeUnit.MILLISECONDS.toNanos(retryIntervalMs);
+        this.downUntilNanos = System.nanoTime();
+        this.replayPausedUntilNanos = downUntilNanos;
+        this.deliveryTimer = Timer.builder("stats.client.hit.delivery")
+                .description("Time to deliver one batch of hits to the stats server, outside the caller's request")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("stats.client.hit.failed")
+                .description("Hits in batches the stats server did not accept")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("stats.client.hit.dropped")
+                .description("Hits lost because the buffer or the spool was full")
+                .register(meterRegistry);
+        this.spooledCounter = Counter.builder("stats.client.hit.spooled")
+                .description("Hits written to the local spool")
+                .register(meterRegistry);
+        this.replayedCounter = Counter.builder("stats.client.hit.replayed")
+                .description("Spooled hits delivered after the stats server came back")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.hit.queue.depth", queue, BlockingQueue::size)
+                .description("Hits waiting to be sent to the stats server")
+                .register(meterRegistry);
+        if (spool != null) {
+            Gauge.builder("stats.client.spool.bytes", spool, HitSpool::size)
+                    .description("Size of the local hit spool")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+        this.senderThread = new Thread(this::runSender, "stats-hit-sender");
+        senderThread.setDaemon(true);
+    }
+
+    void start() {
+        senderThread.start();
+    }
+
+    // Не блокирует: при полной очереди хит отбрасывается
+    boolean offer(EndpointHitDto hit) {
+        runningLock.readLock().lock();
+        try {
+            if (running && queue.offer(hit)) {
+                return true;
+            }
+        } finally {
+            runningLock.readLock().unlock();
+        }
+        droppedCounter.increment();
+        return false;
+    }
+
+    // Оставшиеся в очереди хиты отправляются или пишутся в журнал. Если за timeoutMs поток не закончил,
+    // текущая отправка прерывается, а остаток очереди пишется в журнал без отправки
+    void stop(long timeoutMs) throws InterruptedException {
+        runningLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            runningLock.writeLock().unlock();
+        }
+        senderThread.join(timeoutMs);
+        if (senderThread.isAlive()) {
+            log.warn("Hit sender did not stop in {} ms, spooling {} hits left in the buffer",
+                    timeoutMs, queue.size());
+            abandoned = true;
+            interruptDelivery();
+            senderThread.join(timeoutMs);
+            if (senderThread.isAlive()) {
+                log.warn("Hit sender did not spool the buffer in {} ms", timeoutMs);
+            }
+        }
+    }
+
+    private void runSender() {
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                log.warn("Hit sender interrupted while collecting a batch");
+                return;
+            }
+            // Неожиданная ошибка не должна останавливать поток: хиты, принятые после неё, иначе не уйдут
+            if (!batch.isEmpty()) {
+                try {
+                    send(batch);
+                } catch (RuntimeException e) {
+                    droppedCounter.increment(batch.size());
+                    log.error("Failed to send {} hits", batch.size(), e);
+                }
+                batch.clear();
+            }
+            if (running && System.nanoTime() - replayPausedUntilNanos >= 0) {
+                try {
+                    replaySpool();
+                } catch (RuntimeException e) {
+                    replayPausedUntilNanos = System.nanoTime() + retryIntervalNanos;
+                    log.error("Failed to replay the hit spool, next attempt in {} ms",
+                            TimeUnit.NANOSECONDS.toMillis(retryIntervalNanos), e);
+                }
+            }
+        }
+    }
+
+    private void collectBatch(List<EndpointHitDto> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                return;
+            }
+            EndpointHitDto hit = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (hit != null) {
+                batch.add(hit);
+            }
+        }
+    }
+
+    private void send(List<EndpointHitDto> batch) {
+        // Без журнала пачку всё равно пробуем отправить: больше ей деться некуда
+        if (abandoned || spool != null && serverDown()) {
+            spill(batch);
+            return;
+        }
+        if (!deliver(batch)) {
+            spill(batch);
+        }
+    }
+
+    // Пока в очереди меньше пачки, повторяем журнал
+    private void replaySpool() {
+        while (spool != null && !spool.isEmpty() && !serverDown() && queue.size() < batchSize) {
+            List<EndpointHitDto> hits = spool.peek(batchSize);
+            if (!hits.isEmpty() && !deliver(hits)) {
+                return;
+            }
+            spool.commit();
+            replayedCounter.increment(hits.size());
+            log.info("Replayed {} spooled hits, {} bytes left in the spool", hits.size(), spool.pendingBytes());
+        }
+    }
+
+    private boolean deliver(List<EndpointHitDto> hits) {
+        long startNanos = System.nanoTime();
+        synchronized (this) {
+            if (abandoned) {
+                return false;
+            }
+            delivering = true;
+        }
+        try {
+            delivery.accept(hits);
+            return true;
+        } catch (RuntimeException e) {
+            failedCounter.increment(hits.size());
+            downUntilNanos = System.nanoTime() + retryIntervalNanos;
+            log.error("Failed to send {} hits to stats server: {}", hits.size(), e.getMessage());
+            return false;
+        } finally {
+            // Флаг прерывания от stop() снимается здесь: с ним запись в FileChannel журнала закрыла бы его
+            synchronized (this) {
+                delivering = false;
+                Thread.interrupted();
+            }
+            deliveryTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private synchronized void interruptDelivery() {
+        if (delivering) {
+            senderThread.interrupt();
+        }
+    }
+
+    private void spill(List<EndpointHitDto> batch) {
+        int spooled = 0;
+        if (spool != null) {
+            try {
+                spooled = spool.append(batch);
+            } catch (RuntimeException e) {
+                log.error("Failed to spool {} hits", batch.size(), e);
+            }
+        }
+        spooledCounter.increment(spooled);
+        if (spooled < batch.size()) {
+            droppedCounter.increment(batch.size() - spooled);
+            log.warn("Dropped {} hits: the stats server is unavailable and the spool is full",
+                    batch.size() - spooled);
+        }
+    }
+
+    private boolean serverDown() {
+        return System.nanoTime() - downUntilNanos < 0;
+    }
+}
@@ -0,0 +1,249 @@
+package ru.practicum.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.dto.EndpointHitDto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Локальный журнал хитов, не доставленных на stats-server: строки NDJSON дописываются в конец файла,
+// повтор читает их с текущего смещения. Смещение доставленных хитов сохраняется рядом в hits.spool.offset,
+// после перезапуска повтор продолжается с него. Когда журнал дочитан до конца, файл обрезается; когда
+// доставленная часть больше недоставленной, недоставленная переносится в начало файла.
+// Используется только из потока отправки, кроме size()
+@Slf4j
+class HitSpool implements Closeable {
+
+    static final String FILE_NAME = "hits.spool";
+    static final String OFFSET_FILE_NAME = "hits.spool.offset";
+
+    private static final int READ_CHUNK = 64 * 1024;
+
+    private final ObjectMapper objectMapper;
+    private final FileChannel channel;
+    private final FileChannel offsetChannel;
+    private final FileLock lock;
+    private final long maxBytes;
+    private long readOffset;
+    private long pendingOffset;
+    private volatile long size;
+
+    private HitSpool(ObjectMapper objectMapper,
+                     FileChannel channel,
+                     FileChannel offsetChannel,
+                     FileLock lock,
+                     long maxBytes) throws IOException {
+        this.objectMapper = objectMapper;
+        this.channel = channel;
+        this.offsetChannel = offsetChannel;
+        this.lock = lock;
+        this.maxBytes = maxBytes;
+        this.size = channel.size();
+        this.readOffset = readSavedOffset();
+        this.pendingOffset = readOffset;
+    }
+
+    // Файл блокируется: два клиента с одним каталогом журнала повторяли бы одни и те же хиты
+    static HitSpool open(Path dir, long maxBytes, ObjectMapper objectMapper) throws IOException {
+        Files.createDirectories(dir);
+        FileChannel channel = FileChannel.open(dir.resolve(FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Журнал уже открыт в этом же процессе
+            lock = null;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("Hit spool " + dir.resolve(FILE_NAME) + " is used by another process");
+        }
+        try {
+            FileChannel offsetChannel = FileChannel.open(dir.resolve(OFFSET_FILE_NAME),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new HitSpool(objectMapper, channel, offsetChannel, lock, maxBytes);
+        } catch (IOException e) {
+            lock.release();
+            channel.close();
+            throw e;
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    // Байты недоставленных хитов
+    long pendingBytes() {
+        return size - readOffset;
+    }
+
+    boolean isEmpty() {
+        return readOffset >= size;
+    }
+
+    // Дописывает хиты, пока недоставленная часть журнала не превысит maxBytes; возвращает число записанных
+    int append(List<EndpointHitDto> hits) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int appended = 0;
+        try {
+            for (EndpointHitDto hit : hits) {
+                byte[] line = objectMapper.writeValueAsBytes(hit);
+                if (pendingBytes() + out.size() + line.length + 1 > maxBytes) {
+                    break;
+                }
+                out.write(line);
+                out.write('\n');
+                appended++;
+            }
+            if (appended > 0) {
+                ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+                long position = size;
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                channel.force(false);
+                size = position;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return appended;
+    }
+
+    // Читает до limit хитов с текущего смещения; смещение сдвигается только после commit().
+    // Нечитаемые строки (например, недописанная при сбое последняя) пропускаются
+    List<EndpointHitDto> peek(int limit) {
+        List<EndpointHitDto> hits = new ArrayList<>(limit);
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK);
+        long position = readOffset;
+        pendingOffset = readOffset;
+        try {
+            while (hits.size() < limit && position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                buffer.flip();
+                while (buffer.hasRemaining() && hits.size() < limit) {
+                    byte b = buffer.get();
+                    position++;
+                    if (b != '\n') {
+                        line.write(b);
+                        continue;
+                    }
+                    parse(line, hits);
+                    line.reset();
+                    pendingOffset = position;
+                }
+            }
+            if (position >= size && line.size() > 0) {
+                parse(line, hits);
+                pendingOffset = size;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return hits;
+    }
+
+    // Прочитанные peek() хиты доставлены
+    void commit() {
+        readOffset = pendingOffset;
+        try {
+            if (readOffset >= size) {
+                // Сначала обрезка: сохранённое смещение больше размера файла при открытии сбрасывается в 0
+                channel.truncate(0);
+                channel.force(false);
+                size = 0;
+                readOffset = 0;
+            } else if (readOffset > size - readOffset) {
+                compact();
+            }
+            saveOffset(readOffset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        pendingOffset = readOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        offsetChannel.close();
+        lock.release();
+        channel.close();
+    }
+
+    // Недоставленная часть короче доставленной, поэтому копия в начало файла не задевает исходные байты:
+    // при сбое до обрезки файла журнал читается по старому смещению, после обрезки смещение больше размера
+    // файла и чтение начинается с 0
+    private void compact() throws IOException {
+        long pending = size - readOffset;
+        ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK);
+        long copied = 0;
+        while (copied < pending) {
+            buffer.clear();
+            buffer.limit((int) Math.min(READ_CHUNK, pending - copied));
+            int read = channel.read(buffer, readOffset + copied);
+            if (read <= 0) {
+                throw new IOException("Hit spool ended at " + (readOffset + copied) + " of " + size + " bytes");
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                copied += channel.write(buffer, copied);
+            }
+        }
+        channel.force(false);
+        channel.truncate(pending);
+        channel.force(false);
+        size = pending;
+        readOffset = 0;
+    }
+
+    private long readSavedOffset() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        while (buffer.hasRemaining()) {
+            if (offsetChannel.read(buffer, buffer.position()) < 0) {
+                return 0;
+            }
+        }
+        long offset = buffer.flip().getLong();
+        return offset >= 0 && offset <= size ? offset : 0;
+    }
+
+    private void saveOffset(long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(offset).flip();
+        while (buffer.hasRemaining()) {
+            offsetChannel.write(buffer, buffer.position());
+        }
+        offsetChannel.force(false);
+    }
+
+    private void parse(ByteArrayOutputStream line, List<EndpointHitDto> hits) {
+        String json = line.toString(StandardCharsets.UTF_8);
+        if (json.isBlank()) {
+            return;
+        }
+        try {
+            hits.add(objectMapper.readValue(json, EndpointHitDto.class));
+        } catch (IOException e) {
+            log.warn("Skipping unreadable spooled hit: {}", json);
+        }
+    }
+}
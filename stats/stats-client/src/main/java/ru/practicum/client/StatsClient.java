@@ -1,47 +1,411 @@
 package ru.practicum.client;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 import ru.practicum.dto.EndpointHitDto;
 import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.dto.binary.StatsBinaryHttpMessageConverter;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Component
 @Slf4j
 public class StatsClient {
 
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    // Начало окна getViews: раньше хитов нет
+    private static final LocalDateTime VIEWS_START = LocalDateTime.of(2020, 1, 1, 0, 0);
 
-    private final RestTemplate restTemplate;
+    private final RestTemplate hitsTemplate;
+    private final RestTemplate statsTemplate;
     private final String serverUrl;
+    private final ObjectMapper objectMapper;
+    private final boolean binary;
+    private final ExecutorService httpExecutor;
+    private final HitSpool spool;
+    private final HitBatchSender hitSender;
+    private final ViewsCache viewsCache;
+    private final long shutdownTimeoutMs;
+    private final CircuitBreaker statsBreaker;
+    private final boolean hedgeEnabled;
+    private final long hedgeMinDelayMs;
+    private final int chunkMaxLength;
+    private final int fanOut;
+    private final Timer statsTimer;
+    private final Counter hedgedCounter;
+    private final Counter viewsFallbackCounter;
 
-    public StatsClient(@Value("${stats-server.url:http://localhost:9090}") String serverUrl) {
-        this.restTemplate = new RestTemplate();
+    // stats-server.format=binary - хиты и статистика в StatsBinaryFormat вместо JSON.
+    // Соединения держит общий HttpClient (keep-alive, пул соединений JDK, виртуальные потоки).
+    // Хиты отправляет HitBatchSender пачками через /hits; stats-server.spool.max-bytes=0 выключает журнал на диске.
+    // У записи хитов и чтения статистики свои таймауты; чтения идут через размыкатель
+    public StatsClient(ObjectProvider<MeterRegistry> meterRegistry,
+                       @Value("${stats-server.url:http://localhost:9090}") String serverUrl,
+                       @Value("${stats-server.format:json}") String format,
+                       @Value("${stats-server.connect-timeout-ms:1000}") long connectTimeoutMs,
+                       @Value("${stats-server.hits.timeout-ms:5000}") long hitsTimeoutMs,
+                       @Value("${stats-server.stats.timeout-ms:1000}") long statsTimeoutMs,
+                       @Value("${stats-server.stats.circuit.failure-threshold:5}") int circuitFailureThreshold,
+                       @Value("${stats-server.stats.circuit.open-ms:10000}") long circuitOpenMs,
+                       @Value("${stats-server.stats.hedge.enabled:false}") boolean hedgeEnabled,
+                       @Value("${stats-server.stats.hedge.min-delay-ms:50}") long hedgeMinDelayMs,
+                       @Value("${stats-server.stats.chunk-max-length:4000}") int chunkMaxLength,
+                       @Value("${stats-server.stats.fan-out:4}") int fanOut,
+                       @Value("${stats-server.hits.buffer-capacity:10000}") int bufferCapacity,
+                       @Value("${stats-server.hits.batch-size:500}") int batchSize,
+                       @Value("${stats-server.hits.flush-interval-ms:200}") long flushIntervalMs,
+                       @Value("${stats-server.hits.retry-interval-ms:5000}") long retryIntervalMs,
+                       @Value("${stats-server.hits.shutdown-timeout-ms:5000}") long shutdownTimeoutMs,
+                       @Value("${stats-server.spool.dir:${java.io.tmpdir}/ewm-stats-spool}") String spoolDir,
+                       @Value("${stats-server.spool.max-bytes:67108864}") long spoolMaxBytes,
+                       @Value("${stats-server.views.cache.enabled:true}") boolean viewsCacheEnabled,
+                       @Value("${stats-server.views.cache.max-size:100000}") long viewsCacheMaxSize,
+                       @Value("${stats-server.views.cache.ttl-ms:2000}") long viewsCacheTtlMs,
+                       @Value("${stats-server.views.cache.max-stale-ms:60000}") long viewsCacheMaxStaleMs) {
+        this.httpExecutor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("stats-client-", 0).factory());
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(httpExecutor)
+                .build();
+        this.binary = "binary".equalsIgnoreCase(format);
+        this.hitsTemplate = restTemplate(httpClient, hitsTimeoutMs);
+        this.statsTemplate = restTemplate(httpClient, statsTimeoutMs);
         this.serverUrl = serverUrl;
+        this.objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedgeMinDelayMs = hedgeMinDelayMs;
+        this.chunkMaxLength = chunkMaxLength;
+        this.fanOut = Math.max(1, fanOut);
+        this.spool = spoolMaxBytes > 0 ? openSpool(Path.of(spoolDir), spoolMaxBytes) : null;
+        MeterRegistry registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+        // 4xx - ошибка запроса, а не сервера
+        this.statsBreaker = new CircuitBreaker(registry, circuitFailureThreshold, circuitOpenMs,
+                e -> e instanceof HttpClientErrorException);
+        this.statsTimer = Timer.builder("stats.client.stats.latency")
+                .description("Time of one stats read from the stats server")
+                .publishPercentiles(0.95)
+                .register(registry);
+        this.hedgedCounter = Counter.builder("stats.client.stats.hedged")
+                .description("Stats reads duplicated after the p95 delay")
+                .register(registry);
+        this.viewsFallbackCounter = Counter.builder("stats.client.views.fallback")
+                .description("View lookups answered with cached or zero views because the stats server failed")
+                .register(registry);
+        this.hitSender = new HitBatchSender(this::saveHits, spool, registry,
+                bufferCapacity, batchSize, flushIntervalMs, retryIntervalMs);
+        this.viewsCache = viewsCacheEnabled
+                ? new ViewsCache(this::loadViews, httpExecutor, registry,
+                        viewsCacheMaxSize, viewsCacheTtlMs, viewsCacheMaxStaleMs)
+                : null;
     }
 
+    @PostConstruct
+    public void start() {
+        log.info("Starting stats hit sender: spool={}", spool != null ? spool.size() + " bytes" : "disabled");
+        hitSender.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        hitSender.stop(shutdownTimeoutMs);
+        if (spool != null) {
+            spool.close();
+        }
+        httpExecutor.shutdownNow();
+    }
+
+    // Хит ставится в очередь, вызов возвращается сразу. Ошибки доставки только логируются и считаются:
+    // статистика не должна влиять на ответ пользователю
     public void saveHit(EndpointHitDto dto) {
-        log.info("Sending hit to stats server: {}", dto);
-        String url = serverUrl + "/hit";
-        restTemplate.postForEntity(url, dto, Void.class);
+        if (!hitSender.offer(dto)) {
+            log.warn("Hit buffer is full, dropping hit: {}", dto);
+        }
+    }
+
+    public void saveHits(List<EndpointHitDto> dtos) {
+        if (dtos == null || dtos.isEmpty()) {
+            return;
+        }
+        log.info("Sending {} hits to stats server", dtos.size());
+        String url = serverUrl + "/hits";
+        hitsTemplate.postForEntity(url, new HttpEntity<>(dtos, bodyHeaders()), Void.class);
     }
 
     public List<ViewStatsDto> getStats(LocalDateTime start,
                                        LocalDateTime end,
                                        List<String> uris,
                                        Boolean unique) {
+        return getStats(start, end, uris, unique, null);
+    }
+
+    public List<ViewStatsDto> getStats(LocalDateTime start,
+                                       LocalDateTime end,
+                                       List<String> uris,
+                                       Boolean unique,
+                                       Boolean approximate) {
         log.info("Getting stats from stats server");
+        List<List<String>> chunks = chunks(uris);
+        if (chunks.size() <= 1) {
+            return statsBreaker.call(() -> readStats(statsUri(start, end, uris, unique, approximate)));
+        }
+        // Все части - один вызов размыкателя: после паузы пробным вызовом считается весь запрос
+        log.info("Splitting {} uris into {} stats requests", uris.size(), chunks.size());
+        return statsBreaker.call(() -> readChunks(start, end, chunks, unique, approximate));
+    }
+
+    // Просмотры uri за всё время, uri без хитов - 0. С включённым кэшем значение может отставать
+    // от stats-server на ttl-ms (и до max-stale-ms, пока фоновое обновление не удаётся)
+    public Map<String, Long> getViews(List<String> uris, boolean unique) {
+        if (uris.isEmpty()) {
+            return Map.of();
+        }
+        if (statsBreaker.isOpen()) {
+            return fallbackViews(uris, unique);
+        }
+        try {
+            return viewsCache != null ? viewsCache.get(uris, unique) : loadViews(uris, unique);
+        } catch (HttpClientErrorException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            log.warn("Stats server failed, using cached or zero views: {}", e.getMessage());
+            return fallbackViews(uris, unique);
+        }
+    }
+
+    // Потоковый вариант getStats: строки NDJSON передаются в consumer по мере чтения ответа
+    public void streamStats(LocalDateTime start,
+                            LocalDateTime end,
+                            List<String> uris,
+                            Boolean unique,
+                            Consumer<ViewStatsDto> consumer) {
+        log.info("Streaming stats from stats server");
+
+        URI uri = statsUri(start, end, uris, unique, null);
+        statsBreaker.call(() -> statsTemplate.execute(
+                uri,
+                HttpMethod.GET,
+                request -> request.getHeaders().setAccept(List.of(MediaType.APPLICATION_NDJSON)),
+                response -> {
+                    try (BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            if (!line.isBlank()) {
+                                consumer.accept(objectMapper.readValue(line, ViewStatsDto.class));
+                            }
+                        }
+                    }
+                    return null;
+                }));
+    }
+
+    private List<ViewStatsDto> readStats(URI uri) {
+        return hedgeEnabled ? hedged(() -> fetchStats(uri)) : fetchStats(uri);
+    }
+
+    // Длинный список uri не влезает в строку запроса: части запрашиваются параллельно,
+    // не больше fan-out одновременно, и сливаются в ответ одного запроса.
+    // Первая ошибка части отменяет остальные: ждущие разрешения не стартуют, ждущие ответа прерываются
+    private List<ViewStatsDto> readChunks(LocalDateTime start,
+                                          LocalDateTime end,
+                                          List<List<String>> chunks,
+                                          Boolean unique,
+                                          Boolean approximate) {
+        Semaphore permits = new Semaphore(fanOut);
+        CompletionService<List<ViewStatsDto>> completion = new ExecutorCompletionService<>(httpExecutor);
+        List<Future<List<ViewStatsDto>>> parts = chunks.stream()
+                .map(chunk -> completion.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return readStats(statsUri(start, end, chunk, unique, approximate));
+                    } finally {
+                        permits.release();
+                    }
+                }))
+                .toList();
+        try {
+            for (int i = 0; i < parts.size(); i++) {
+                completion.take().get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StatsServerUnavailableException("Interrupted while waiting for stats");
+        } finally {
+            parts.forEach(part -> part.cancel(true));
+        }
+
+        // Шаблоны из разных частей могут вернуть одну строку дважды
+        Map<List<String>, ViewStatsDto> merged = new LinkedHashMap<>();
+        for (Future<List<ViewStatsDto>> part : parts) {
+            List<ViewStatsDto> stats = part.resultNow();
+            if (stats != null) {
+                stats.forEach(stat -> merged.putIfAbsent(List.of(stat.getApp(), stat.getUri()), stat));
+            }
+        }
+        List<ViewStatsDto> result = new ArrayList<>(merged.values());
+        result.sort(Comparator.comparing(ViewStatsDto::getHits).reversed());
+        return result;
+    }
+
+    // Части списка uri, у каждой длина параметра uris не больше chunk-max-length (uri длиннее - отдельной частью)
+    private List<List<String>> chunks(List<String> uris) {
+        if (uris == null || uris.isEmpty()) {
+            return List.of();
+        }
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> chunk = new ArrayList<>();
+        int length = 0;
+        for (String uri : new LinkedHashSet<>(uris)) {
+            if (!chunk.isEmpty() && length + 1 + uri.length() > chunkMaxLength) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                length = 0;
+            }
+            length += (chunk.isEmpty() ? 0 : 1) + uri.length();
+            chunk.add(uri);
+        }
+        chunks.add(chunk);
+        return chunks;
+    }
+
+    private List<ViewStatsDto> fetchStats(URI uri) {
+        return statsTimer.record(() -> statsTemplate.exchange(
+                uri,
+                HttpMethod.GET,
+                new HttpEntity<>(statsHeaders()),
+                new ParameterizedTypeReference<List<ViewStatsDto>>() {}
+        ).getBody());
+    }
+
+    // Если ответа нет дольше p95 последних чтений (но не меньше min-delay-ms), уходит второй такой же запрос,
+    // возвращается первый успешный ответ. Отставший запрос не прерывается и завершается по своему таймауту
+    private <T> T hedged(Supplier<T> fetch) {
+        CompletableFuture<T> primary = CompletableFuture.supplyAsync(fetch, httpExecutor);
+        try {
+            return primary.get(hedgeDelayMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            hedgedCounter.increment();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StatsServerUnavailableException("Interrupted while waiting for stats");
+        }
+
+        CompletableFuture<T> secondary = CompletableFuture.supplyAsync(fetch, httpExecutor);
+        CompletableFuture<T> first = new CompletableFuture<>();
+        AtomicInteger failed = new AtomicInteger();
+        for (CompletableFuture<T> attempt : List.of(primary, secondary)) {
+            attempt.whenComplete((result, e) -> {
+                if (e == null) {
+                    first.complete(result);
+                } else if (failed.incrementAndGet() == 2) {
+                    first.completeExceptionally(e);
+                }
+            });
+        }
+        try {
+            return first.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private long hedgeDelayMs() {
+        for (ValueAtPercentile percentile : statsTimer.takeSnapshot().percentileValues()) {
+            if (percentile.percentile() == 0.95) {
+                return Math.max(hedgeMinDelayMs, (long) percentile.value(TimeUnit.MILLISECONDS));
+            }
+        }
+        return hedgeMinDelayMs;
+    }
+
+    private RestTemplate restTemplate(HttpClient httpClient, long timeoutMs) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(timeoutMs));
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        if (binary) {
+            restTemplate.getMessageConverters().add(new StatsBinaryHttpMessageConverter());
+        }
+        return restTemplate;
+    }
 
+    private HttpHeaders bodyHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(binary ? StatsBinaryHttpMessageConverter.MEDIA_TYPE : MediaType.APPLICATION_JSON);
+        return headers;
+    }
+
+    // JSON остаётся допустимым: в нём приходят ошибки сервера
+    private HttpHeaders statsHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        if (binary) {
+            headers.setAccept(List.of(StatsBinaryHttpMessageConverter.MEDIA_TYPE, MediaType.APPLICATION_JSON));
+        }
+        return headers;
+    }
+
+    private URI statsUri(LocalDateTime start,
+                         LocalDateTime end,
+                         List<String> uris,
+                         Boolean unique,
+                         Boolean approximate) {
         // ✅ УБРАЛИ URLEncoder.encode - UriComponentsBuilder сам кодирует!
         String startStr = start.format(FORMATTER);
         String endStr = end.format(FORMATTER);
@@ -58,13 +422,44 @@ public class StatsClient {
             builder.queryParam("unique", unique);
         }
 
-        ResponseEntity<List<ViewStatsDto>> response = restTemplate.exchange(
-                builder.build().toUri(),
-                HttpMethod.GET,
-                HttpEntity.EMPTY,
-                new ParameterizedTypeReference<>() {}
-        );
+        if (approximate != null) {
+            builder.queryParam("approximate", approximate);
+        }
+
+        return builder.build().toUri();
+    }
 
-        return response.getBody();
+    // Сервер недоступен или не ответил вовремя: что есть в кэше, остальное - 0
+    private Map<String, Long> fallbackViews(List<String> uris, boolean unique) {
+        viewsFallbackCounter.increment();
+        Map<String, Long> views = viewsCache != null ? viewsCache.getCached(uris, unique) : new HashMap<>();
+        for (String uri : uris) {
+            views.putIfAbsent(uri, 0L);
+        }
+        return views;
+    }
+
+    private Map<String, Long> loadViews(Collection<String> uris, Boolean unique) {
+        List<ViewStatsDto> stats = getStats(VIEWS_START, LocalDateTime.now().plusDays(1), List.copyOf(uris), unique);
+        Map<String, Long> views = new HashMap<>();
+        for (String uri : uris) {
+            views.put(uri, 0L);
+        }
+        if (stats != null) {
+            for (ViewStatsDto stat : stats) {
+                views.merge(stat.getUri(), stat.getHits(), Long::sum);
+            }
+        }
+        return views;
+    }
+
+    // Без журнала клиент работает, только недоставленные хиты теряются
+    private HitSpool openSpool(Path dir, long maxBytes) {
+        try {
+            return HitSpool.open(dir, maxBytes, objectMapper);
+        } catch (IOException e) {
+            log.error("Hit spool in {} is unavailable, undelivered hits will be dropped", dir, e);
+            return null;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package ru.practicum.client;
+
+// Чтение статистики не выполнялось: stats-server признан недоступным
+public class StatsServerUnavailableException extends RuntimeException {
+
+    public StatsServerUnavailableException(String message) {
+        super(message);
+    }
+}
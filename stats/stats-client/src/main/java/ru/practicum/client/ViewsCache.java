@@ -0,0 +1,126 @@
+package ru.practicum.client;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+// Кэш просмотров по (uri, unique). Промахи загружаются одним запросом на все недостающие uri вызова,
+// одновременные промахи по одному ключу ждут одну загрузку (AsyncCache хранит её незавершённой).
+// Запись старше ttl отдаётся сразу, а все такие ключи вызова обновляются в фоне одним запросом.
+// Дольше max-stale запись не живёт, и тогда вызов ждёт загрузку
+@Slf4j
+class ViewsCache {
+
+    private final AsyncCache<Key, Views> cache;
+    private final BiFunction<Collection<String>, Boolean, Map<String, Long>> loader;
+    private final Executor executor;
+    private final long ttlNanos;
+    private final Set<Key> refreshing = ConcurrentHashMap.newKeySet();
+    private final Counter refreshFailedCounter;
+
+    ViewsCache(BiFunction<Collection<String>, Boolean, Map<String, Long>> loader,
+               Executor executor,
+               MeterRegistry meterRegistry,
+               long maxSize,
+               long ttlMs,
+               long maxStaleMs) {
+        this.loader = loader;
+        this.executor = executor;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Math.max(ttlMs, maxStaleMs), TimeUnit.MILLISECONDS)
+                .executor(executor)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "stats.client.views");
+        this.refreshFailedCounter = Counter.builder("stats.client.views.refresh.failed")
+                .description("Background view refreshes that failed and kept serving stale views")
+                .register(meterRegistry);
+    }
+
+    // Ошибка загрузки промахов пробрасывается вызывающему; ошибка фонового обновления - нет
+    Map<String, Long> get(Collection<String> uris, boolean unique) {
+        List<Key> keys = uris.stream()
+                .distinct()
+                .map(uri -> new Key(uri, unique))
+                .toList();
+        Map<Key, Views> views;
+        try {
+            views = cache.getAll(keys, (missing, exec) -> CompletableFuture.supplyAsync(() -> load(missing), exec))
+                    .join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+
+        long now = System.nanoTime();
+        List<Key> stale = views.entrySet().stream()
+                .filter(entry -> now - entry.getValue().loadedAt() > ttlNanos)
+                .map(Map.Entry::getKey)
+                .filter(refreshing::add)
+                .toList();
+        if (!stale.isEmpty()) {
+            refresh(stale);
+        }
+
+        Map<String, Long> result = new HashMap<>();
+        views.forEach((key, value) -> result.put(key.uri(), value.hits()));
+        return result;
+    }
+
+    // Только готовые записи, без загрузки; uri без записи в результате нет
+    Map<String, Long> getCached(Collection<String> uris, boolean unique) {
+        List<Key> keys = uris.stream()
+                .map(uri -> new Key(uri, unique))
+                .toList();
+        Map<String, Long> result = new HashMap<>();
+        cache.synchronous().getAllPresent(keys).forEach((key, value) -> result.put(key.uri(), value.hits()));
+        return result;
+    }
+
+    private void refresh(List<Key> keys) {
+        CompletableFuture.supplyAsync(() -> load(keys), executor)
+                .whenComplete((views, e) -> {
+                    keys.forEach(refreshing::remove);
+                    if (e != null) {
+                        refreshFailedCounter.increment();
+                        log.warn("Failed to refresh views for {} uris: {}", keys.size(), e.getMessage());
+                        return;
+                    }
+                    views.forEach((key, value) -> cache.put(key, CompletableFuture.completedFuture(value)));
+                });
+    }
+
+    // Ключи одного вызова - с одним unique
+    private Map<Key, Views> load(Collection<? extends Key> keys) {
+        boolean unique = keys.iterator().next().unique();
+        Map<String, Long> hits = loader.apply(keys.stream().map(Key::uri).toList(), unique);
+        long loadedAt = System.nanoTime();
+        Map<Key, Views> views = new HashMap<>();
+        for (Key key : keys) {
+            views.put(key, new Views(hits.getOrDefault(key.uri(), 0L), loadedAt));
+        }
+        return views;
+    }
+
+    private record Key(String uri, boolean unique) {
+    }
+
+    private record Views(long hits, long loadedAt) {
+    }
+}
@@ -0,0 +1,98 @@
+package ru.practicum.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.practicum.dto.EndpointHitDto;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class HitBatchSenderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void stopDeliversBufferedHits() throws Exception {
+        List<EndpointHitDto> delivered = new CopyOnWriteArrayList<>();
+        try (HitSpool spool = open()) {
+            HitBatchSender sender = sender(delivered::addAll, spool);
+            sender.start();
+            HitSpoolTest.hits(0, 25).forEach(sender::offer);
+
+            sender.stop(5000);
+
+            assertThat(delivered).isEqualTo(HitSpoolTest.hits(0, 25));
+            assertThat(spool.isEmpty()).isTrue();
+            assertThat(sender.offer(HitSpoolTest.hit(25))).isFalse();
+        }
+    }
+
+    // Остановка не дождалась зависшей отправки: пачка и остаток буфера уходят в журнал
+    @Test
+    void stopSpoolsBufferWhenDeliveryHangs() throws Exception {
+        CountDownLatch delivering = new CountDownLatch(1);
+        Consumer<List<EndpointHitDto>> hanging = hits -> {
+            delivering.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException("Delivery interrupted", e);
+            }
+        };
+        try (HitSpool spool = open()) {
+            HitBatchSender sender = sender(hanging, spool);
+            sender.start();
+            HitSpoolTest.hits(0, 25).forEach(sender::offer);
+            assertThat(delivering.await(5, TimeUnit.SECONDS)).isTrue();
+
+            sender.stop(200);
+
+            List<EndpointHitDto> spooled = new ArrayList<>();
+            while (!spool.isEmpty()) {
+                spooled.addAll(spool.peek(100));
+                spool.commit();
+            }
+            assertThat(spooled).containsExactlyInAnyOrderElementsOf(HitSpoolTest.hits(0, 25));
+        }
+    }
+
+    // Ошибка чтения журнала не останавливает поток отправки: живые хиты продолжают уходить
+    @Test
+    void spoolFailureDoesNotStopSender() throws Exception {
+        List<EndpointHitDto> delivered = new CopyOnWriteArrayList<>();
+        HitSpool spool = open();
+        spool.append(HitSpoolTest.hits(0, 5));
+        // Закрытый файл: peek() бросает UncheckedIOException
+        spool.close();
+        HitBatchSender sender = sender(delivered::addAll, spool);
+        sender.start();
+
+        HitSpoolTest.hits(5, 3).forEach(sender::offer);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> delivered.size() == 3);
+        HitSpoolTest.hits(8, 3).forEach(sender::offer);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> delivered.size() == 6);
+        sender.stop(5000);
+
+        assertThat(delivered).isEqualTo(HitSpoolTest.hits(5, 6));
+    }
+
+    private HitSpool open() throws IOException {
+        return HitSpool.open(dir, 1 << 20, Jackson2ObjectMapperBuilder.json().build());
+    }
+
+    private static HitBatchSender sender(Consumer<List<EndpointHitDto>> delivery, HitSpool spool) {
+        return new HitBatchSender(delivery, spool, new SimpleMeterRegistry(), 100, 10, 50, 60_000);
+    }
+}
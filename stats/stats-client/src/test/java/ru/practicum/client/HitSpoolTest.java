@@ -0,0 +1,242 @@
+package ru.practicum.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.practicum.dto.EndpointHitDto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HitSpoolTest {
+
+    private static final ObjectMapper MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
+    @TempDir
+    Path dir;
+
+    private final List<HitSpool> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeSpools() throws IOException {
+        for (HitSpool spool : opened) {
+            spool.close();
+        }
+    }
+
+    @Test
+    void peekAndCommitReplayHitsInOrder() throws IOException {
+        HitSpool spool = open(1 << 20);
+        List<EndpointHitDto> hits = hits(0, 10);
+
+        assertThat(spool.append(hits)).isEqualTo(10);
+        assertThat(spool.isEmpty()).isFalse();
+
+        assertThat(spool.peek(4)).isEqualTo(hits.subList(0, 4));
+        spool.commit();
+        assertThat(spool.peek(4)).isEqualTo(hits.subList(4, 8));
+        spool.commit();
+        assertThat(spool.peek(4)).isEqualTo(hits.subList(8, 10));
+        spool.commit();
+
+        // Дочитанный журнал обрезается
+        assertThat(spool.isEmpty()).isTrue();
+        assertThat(spool.size()).isZero();
+        assertThat(Files.size(dir.resolve(HitSpool.FILE_NAME))).isZero();
+    }
+
+    // Без commit (отправка не удалась) следующий peek читает те же хиты
+    @Test
+    void peekWithoutCommitRereadsHits() throws IOException {
+        HitSpool spool = open(1 << 20);
+        List<EndpointHitDto> hits = hits(0, 5);
+        spool.append(hits);
+
+        assertThat(spool.peek(3)).isEqualTo(hits.subList(0, 3));
+        assertThat(spool.peek(3)).isEqualTo(hits.subList(0, 3));
+        spool.commit();
+        spool.append(hits(5, 2));
+
+        assertThat(spool.peek(10)).isEqualTo(List.of(hits.get(3), hits.get(4), hit(5), hit(6)));
+    }
+
+    @Test
+    void appendStopsAtMaxBytes() throws IOException {
+        long lineBytes = MAPPER.writeValueAsBytes(hit(0)).length + 1;
+        HitSpool spool = open(lineBytes * 3 + lineBytes / 2);
+
+        assertThat(spool.append(hits(0, 2))).isEqualTo(2);
+        assertThat(spool.append(hits(2, 5))).isEqualTo(1);
+        assertThat(spool.append(hits(7, 1))).isZero();
+        assertThat(spool.size()).isEqualTo(lineBytes * 3);
+        assertThat(spool.peek(10)).isEqualTo(hits(0, 3));
+    }
+
+    // Недописанная при сбое последняя строка пропускается, остальные хиты читаются
+    @Test
+    void truncatedLastLineIsSkipped() throws IOException {
+        Path file = dir.resolve(HitSpool.FILE_NAME);
+        byte[] last = MAPPER.writeValueAsBytes(hit(2));
+        Files.write(file, lines(hits(0, 2)));
+        Files.write(file, new byte[] {'\n', ' ', '\n'}, StandardOpenOption.APPEND);
+        Files.write(file, Arrays.copyOf(last, last.length / 2), StandardOpenOption.APPEND);
+        HitSpool spool = open(1 << 20);
+
+        assertThat(spool.peek(10)).isEqualTo(hits(0, 2));
+        spool.commit();
+
+        assertThat(spool.isEmpty()).isTrue();
+        assertThat(Files.size(file)).isZero();
+    }
+
+    @Test
+    void garbageLinesAreSkipped() throws IOException {
+        Path file = dir.resolve(HitSpool.FILE_NAME);
+        Files.write(file, lines(hits(0, 1)));
+        Files.writeString(file, "{\"app\":\"ewm\",\"timestamp\":\"not a date\"}\n\u0000\u0000\n",
+                StandardOpenOption.APPEND);
+        Files.write(file, lines(hits(1, 1)), StandardOpenOption.APPEND);
+
+        assertThat(open(1 << 20).peek(10)).isEqualTo(hits(0, 2));
+    }
+
+    // Последняя строка без перевода строки, но целая, читается
+    @Test
+    void unterminatedLastLineIsRead() throws IOException {
+        Path file = dir.resolve(HitSpool.FILE_NAME);
+        Files.write(file, lines(hits(0, 2)));
+        Files.write(file, MAPPER.writeValueAsBytes(hit(2)), StandardOpenOption.APPEND);
+        HitSpool spool = open(1 << 20);
+
+        assertThat(spool.peek(10)).isEqualTo(hits(0, 3));
+        spool.commit();
+        assertThat(spool.isEmpty()).isTrue();
+    }
+
+    @Test
+    void peekCrossesReadChunks() throws IOException {
+        HitSpool spool = open(1 << 24);
+        List<EndpointHitDto> hits = hits(0, 3000);
+        spool.append(hits);
+        assertThat(spool.size()).isGreaterThan(2 * 64 * 1024);
+
+        List<EndpointHitDto> replayed = new ArrayList<>();
+        while (!spool.isEmpty()) {
+            replayed.addAll(spool.peek(700));
+            spool.commit();
+        }
+
+        assertThat(replayed).isEqualTo(hits);
+    }
+
+    // Смещение доставленных хитов сохраняется: после перезапуска повтор продолжается с него
+    @Test
+    void reopenContinuesFromCommittedOffset() throws IOException {
+        HitSpool spool = open(1 << 20);
+        spool.append(hits(0, 10));
+        spool.peek(3);
+        spool.commit();
+        spool.peek(2);
+        close(spool);
+
+        HitSpool reopened = open(1 << 20);
+
+        assertThat(reopened.peek(10)).isEqualTo(hits(3, 7));
+    }
+
+    // Доставленная часть больше недоставленной: остаток переносится в начало файла
+    @Test
+    void commitCompactsDeliveredPrefix() throws IOException {
+        long lineBytes = MAPPER.writeValueAsBytes(hit(0)).length + 1;
+        HitSpool spool = open(1 << 20);
+        spool.append(hits(0, 10));
+        spool.peek(4);
+        spool.commit();
+        assertThat(spool.size()).isEqualTo(lineBytes * 10);
+
+        spool.peek(2);
+        spool.commit();
+
+        assertThat(spool.size()).isEqualTo(lineBytes * 4);
+        assertThat(Files.size(dir.resolve(HitSpool.FILE_NAME))).isEqualTo(lineBytes * 4);
+        spool.append(hits(10, 1));
+        close(spool);
+        assertThat(open(1 << 20).peek(10)).isEqualTo(hits(6, 5));
+    }
+
+    // Лимит - на недоставленные байты: доставленные, но ещё не обрезанные строки место не занимают
+    @Test
+    void deliveredBytesDoNotCountAgainstMaxBytes() throws IOException {
+        long lineBytes = MAPPER.writeValueAsBytes(hit(0)).length + 1;
+        HitSpool spool = open(lineBytes * 4);
+        assertThat(spool.append(hits(0, 4))).isEqualTo(4);
+        spool.peek(1);
+        spool.commit();
+
+        assertThat(spool.pendingBytes()).isEqualTo(lineBytes * 3);
+        assertThat(spool.append(hits(4, 2))).isEqualTo(1);
+        assertThat(spool.peek(10)).isEqualTo(hits(1, 4));
+    }
+
+    // Сбой после обрезки файла, но до записи смещения: смещение за концом файла сбрасывается в 0
+    @Test
+    void savedOffsetBeyondFileIsReset() throws IOException {
+        Files.write(dir.resolve(HitSpool.OFFSET_FILE_NAME), ByteBuffer.allocate(Long.BYTES).putLong(1 << 16).array());
+        Files.write(dir.resolve(HitSpool.FILE_NAME), lines(hits(0, 2)));
+
+        assertThat(open(1 << 20).peek(10)).isEqualTo(hits(0, 2));
+    }
+
+    @Test
+    void secondOpenOfSameDirectoryFails() throws IOException {
+        open(1 << 20);
+
+        assertThatThrownBy(() -> HitSpool.open(dir, 1 << 20, MAPPER))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("is used by another process");
+    }
+
+    private HitSpool open(long maxBytes) throws IOException {
+        HitSpool spool = HitSpool.open(dir, maxBytes, MAPPER);
+        opened.add(spool);
+        return spool;
+    }
+
+    private void close(HitSpool spool) throws IOException {
+        opened.remove(spool);
+        spool.close();
+    }
+
+    private static byte[] lines(List<EndpointHitDto> hits) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (EndpointHitDto hit : hits) {
+            lines.append(MAPPER.writeValueAsString(hit)).append('\n');
+        }
+        return lines.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static List<EndpointHitDto> hits(int from, int count) {
+        return IntStream.range(from, from + count)
+                .mapToObj(HitSpoolTest::hit)
+                .toList();
+    }
+
+    static EndpointHitDto hit(int i) {
+        return new EndpointHitDto(null, "ewm-main-service", "/events/" + i, "192.168.0." + i % 256,
+                LocalDateTime.of(2024, 3, 1, 12, 0).plusSeconds(i));
+    }
+}
@@ -0,0 +1,27 @@
+package ru.practicum.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Просмотры (app, uri) за один бакет временного ряда; бакет задаётся временем начала
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ViewStatsBucketDto {
+    private String app;
+    private String uri;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime bucket;
+
+    private Long hits;
+
+    // Только для unique=true
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long uniqueHits;
+}
@@ -1,5 +1,6 @@
 package ru.practicum.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -11,4 +12,12 @@ public class ViewStatsDto {
     private String app;
     private String uri;
     private Long hits;
+
+    // true, если hits - оценка (approximate=true), а не точное значение
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean approximate;
+
+    public ViewStatsDto(String app, String uri, Long hits) {
+        this(app, uri, hits, null);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,325 @@
+package ru.practicum.dto.binary;
+
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStatsDto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Бинарный формат хитов и статистики (application/x-stats-binary):
+// версия (byte), вид сообщения (byte), словарь строк, записи.
+// Словарь: число строк и строки; каждая строка app/uri/ip передаётся один раз, записи ссылаются на неё номером.
+// Строка словаря - длина общего с предыдущей строкой префикса в символах, длина и UTF-8 остатка
+// (uri вида /events/123 идут подряд и сжимаются до нескольких байт).
+// Запись: длина + поля; читатель пропускает незнакомые поля в конце записи.
+// Все числа - varint, ссылки на строки и nullable-числа сдвинуты на 1 (0 - null).
+public final class StatsBinaryFormat {
+
+    public static final String MEDIA_TYPE = "application/x-stats-binary";
+
+    private static final byte VERSION = 1;
+    private static final byte HITS = 1;
+    private static final byte VIEW_STATS = 2;
+    private static final long MIN_SECONDS = LocalDateTime.MIN.toEpochSecond(ZoneOffset.UTC);
+    private static final long MAX_SECONDS = LocalDateTime.MAX.toEpochSecond(ZoneOffset.UTC);
+
+    private StatsBinaryFormat() {
+    }
+
+    public static byte[] writeHits(List<EndpointHitDto> hits) {
+        Writer writer = new Writer(HITS);
+        for (EndpointHitDto hit : hits) {
+            Buffer record = writer.startRecord();
+            record.writeVarLong(hit.getId() == null ? 0 : hit.getId() + 1);
+            record.writeVarInt(writer.stringRef(hit.getApp()));
+            record.writeVarInt(writer.stringRef(hit.getUri()));
+            record.writeVarInt(writer.stringRef(hit.getIp()));
+            LocalDateTime timestamp = hit.getTimestamp();
+            if (timestamp == null) {
+                record.writeByte(0);
+            } else {
+                record.writeByte(1);
+                record.writeVarLong(zigZag(timestamp.toEpochSecond(ZoneOffset.UTC)));
+                record.writeVarInt(timestamp.getNano());
+            }
+            writer.endRecord();
+        }
+        return writer.toByteArray();
+    }
+
+    public static List<EndpointHitDto> readHits(byte[] message) {
+        Reader reader = new Reader(message, HITS);
+        List<EndpointHitDto> hits = new ArrayList<>(reader.records);
+        for (int i = 0; i < reader.records; i++) {
+            int end = reader.startRecord();
+            long id = reader.buffer.readVarLong();
+            String app = reader.string();
+            String uri = reader.string();
+            String ip = reader.string();
+            LocalDateTime timestamp = null;
+            if (reader.buffer.readByte() != 0) {
+                long seconds = unZigZag(reader.buffer.readVarLong());
+                timestamp = timestamp(seconds, reader.buffer.readVarInt());
+            }
+            hits.add(new EndpointHitDto(id == 0 ? null : id - 1, app, uri, ip, timestamp));
+            reader.endRecord(end);
+        }
+        return hits;
+    }
+
+    public static byte[] writeViewStats(List<ViewStatsDto> stats) {
+        Writer writer = new Writer(VIEW_STATS);
+        for (ViewStatsDto row : stats) {
+            Buffer record = writer.startRecord();
+            record.writeVarInt(writer.stringRef(row.getApp()));
+            record.writeVarInt(writer.stringRef(row.getUri()));
+            record.writeVarLong(row.getHits() == null ? 0 : row.getHits() + 1);
+            record.writeByte(row.getApproximate() == null ? 0 : row.getApproximate() ? 2 : 1);
+            writer.endRecord();
+        }
+        return writer.toByteArray();
+    }
+
+    public static List<ViewStatsDto> readViewStats(byte[] message) {
+        Reader reader = new Reader(message, VIEW_STATS);
+        List<ViewStatsDto> stats = new ArrayList<>(reader.records);
+        for (int i = 0; i < reader.records; i++) {
+            int end = reader.startRecord();
+            String app = reader.string();
+            String uri = reader.string();
+            long hits = reader.buffer.readVarLong();
+            int approximate = reader.buffer.readByte();
+            stats.add(new ViewStatsDto(app, uri, hits == 0 ? null : hits - 1,
+                    approximate == 0 ? null : approximate == 2));
+            reader.endRecord(end);
+        }
+        return stats;
+    }
+
+    // Вне диапазона LocalDateTime бросил бы DateTimeException, а испорченное сообщение - IllegalArgumentException
+    private static LocalDateTime timestamp(long seconds, int nanos) {
+        if (seconds < MIN_SECONDS || seconds > MAX_SECONDS) {
+            throw new IllegalArgumentException("Timestamp seconds out of range: " + seconds);
+        }
+        if (nanos < 0 || nanos > 999_999_999) {
+            throw new IllegalArgumentException("Timestamp nanos out of range: " + nanos);
+        }
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+
+    // Без разрыва суррогатной пары: остаток должен кодироваться в UTF-8 сам по себе
+    private static int sharedPrefix(String previous, String value) {
+        int limit = Math.min(previous.length(), value.length());
+        int shared = 0;
+        while (shared < limit && previous.charAt(shared) == value.charAt(shared)) {
+            shared++;
+        }
+        if (shared > 0 && Character.isHighSurrogate(value.charAt(shared - 1))) {
+            shared--;
+        }
+        return shared;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Writer {
+
+        private final byte kind;
+        private final Map<String, Integer> refs = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final Buffer records = new Buffer(256);
+        private final Buffer record = new Buffer(64);
+        private int count;
+
+        Writer(byte kind) {
+            this.kind = kind;
+        }
+
+        int stringRef(String value) {
+            if (value == null) {
+                return 0;
+            }
+            return refs.computeIfAbsent(value, v -> {
+                strings.add(v);
+                return strings.size();
+            });
+        }
+
+        Buffer startRecord() {
+            record.size = 0;
+            return record;
+        }
+
+        void endRecord() {
+            records.writeVarInt(record.size);
+            records.write(record.bytes, 0, record.size);
+            count++;
+        }
+
+        byte[] toByteArray() {
+            Buffer message = new Buffer(records.size + strings.size() * 16 + 16);
+            message.writeByte(VERSION);
+            message.writeByte(kind);
+            message.writeVarInt(strings.size());
+            String previous = "";
+            for (String value : strings) {
+                int shared = sharedPrefix(previous, value);
+                byte[] suffix = value.substring(shared).getBytes(StandardCharsets.UTF_8);
+                message.writeVarInt(shared);
+                message.writeVarInt(suffix.length);
+                message.write(suffix, 0, suffix.length);
+                previous = value;
+            }
+            message.writeVarInt(count);
+            message.write(records.bytes, 0, records.size);
+            return Arrays.copyOf(message.bytes, message.size);
+        }
+    }
+
+    private static final class Reader {
+
+        private final Buffer buffer;
+        private final String[] strings;
+        private final int records;
+
+        Reader(byte[] message, byte kind) {
+            buffer = new Buffer(message);
+            int version = buffer.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported stats binary format version: " + version);
+            }
+            int actualKind = buffer.readByte();
+            if (actualKind != kind) {
+                throw new IllegalArgumentException("Unexpected stats binary message kind: " + actualKind);
+            }
+            strings = new String[buffer.readCount()];
+            String previous = "";
+            for (int i = 0; i < strings.length; i++) {
+                int shared = buffer.readVarInt();
+                if (shared > previous.length()) {
+                    throw new IllegalArgumentException("Invalid shared prefix length: " + shared);
+                }
+                int length = buffer.readCount();
+                strings[i] = previous.substring(0, shared)
+                        + new String(buffer.bytes, buffer.position, length, StandardCharsets.UTF_8);
+                buffer.position += length;
+                previous = strings[i];
+            }
+            records = buffer.readCount();
+        }
+
+        String string() {
+            int ref = buffer.readVarInt();
+            if (ref > strings.length) {
+                throw new IllegalArgumentException("Invalid string reference: " + ref);
+            }
+            return ref == 0 ? null : strings[ref - 1];
+        }
+
+        int startRecord() {
+            int length = buffer.readCount();
+            return buffer.position + length;
+        }
+
+        void endRecord(int end) {
+            if (buffer.position > end) {
+                throw new IllegalArgumentException("Record overruns its length");
+            }
+            buffer.position = end;
+        }
+    }
+
+    private static final class Buffer {
+
+        private byte[] bytes;
+        private int size;
+        private int position;
+
+        Buffer(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        Buffer(byte[] bytes) {
+            this.bytes = bytes;
+            this.size = bytes.length;
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void write(byte[] source, int offset, int length) {
+            ensure(length);
+            System.arraycopy(source, offset, bytes, size, length);
+            size += length;
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        int readByte() {
+            if (position >= size) {
+                throw new IllegalArgumentException("Unexpected end of stats binary message");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        int readVarInt() {
+            long value = readVarLong();
+            if (value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Value out of int range: " + value);
+            }
+            return (int) value;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        // Длина или число элементов: не больше оставшихся байт сообщения
+        int readCount() {
+            int count = readVarInt();
+            if (count > size - position) {
+                throw new IllegalArgumentException("Length exceeds the message size: " + count);
+            }
+            return count;
+        }
+
+        private void ensure(int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package ru.practicum.dto.binary;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStatsDto;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+// EndpointHitDto, List<EndpointHitDto> и List<ViewStatsDto> в формате StatsBinaryFormat.
+// Регистрируется после JSON-конвертера: без явного Accept/Content-Type формат остаётся JSON
+public class StatsBinaryHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(StatsBinaryFormat.MEDIA_TYPE);
+
+    public StatsBinaryHttpMessageConverter() {
+        super(MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return EndpointHitDto.class == clazz || List.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return payloadType(type) != null && canRead(mediaType);
+    }
+
+    // Тип элементов списка в теле запроса RestTemplate неизвестен, он определяется при записи
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        boolean supported = type == null || type instanceof Class<?> ? supports(clazz) : payloadType(type) != null;
+        return supported && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return read(payloadType(type), inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(payloadType(clazz), inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object body, Type type, HttpOutputMessage outputMessage) throws IOException {
+        byte[] message;
+        if (body instanceof EndpointHitDto hit) {
+            message = StatsBinaryFormat.writeHits(List.of(hit));
+        } else if (body instanceof List<?> list && isListOf(list, type, ViewStatsDto.class)) {
+            message = StatsBinaryFormat.writeViewStats(castList(list));
+        } else if (body instanceof List<?> list && isListOf(list, type, EndpointHitDto.class)) {
+            message = StatsBinaryFormat.writeHits(castList(list));
+        } else {
+            throw new HttpMessageNotWritableException("Unsupported body for " + MEDIA_TYPE + ": " + type);
+        }
+        outputMessage.getHeaders().setContentLength(message.length);
+        outputMessage.getBody().write(message);
+    }
+
+    private Object read(Payload payload, HttpInputMessage inputMessage) throws IOException {
+        if (payload == null) {
+            throw new HttpMessageNotReadableException("Unsupported type for " + MEDIA_TYPE, inputMessage);
+        }
+        byte[] message = inputMessage.getBody().readAllBytes();
+        try {
+            return switch (payload) {
+                case HIT -> {
+                    List<EndpointHitDto> hits = StatsBinaryFormat.readHits(message);
+                    if (hits.size() != 1) {
+                        throw new IllegalArgumentException("Expected a single hit, got " + hits.size());
+                    }
+                    yield hits.get(0);
+                }
+                case HITS -> StatsBinaryFormat.readHits(message);
+                case VIEW_STATS -> StatsBinaryFormat.readViewStats(message);
+            };
+        } catch (IllegalArgumentException e) {
+            throw new HttpMessageNotReadableException("Malformed " + MEDIA_TYPE + " body: " + e.getMessage(), e,
+                    inputMessage);
+        }
+    }
+
+    private static Payload payloadType(Type type) {
+        ResolvableType resolvable = ResolvableType.forType(type);
+        if (resolvable.resolve() == EndpointHitDto.class) {
+            return Payload.HIT;
+        }
+        if (resolvable.asCollection() == ResolvableType.NONE) {
+            return null;
+        }
+        Class<?> element = resolvable.asCollection().resolveGeneric(0);
+        if (element == EndpointHitDto.class) {
+            return Payload.HITS;
+        }
+        if (element == ViewStatsDto.class) {
+            return Payload.VIEW_STATS;
+        }
+        return null;
+    }
+
+    private static boolean isListOf(List<?> list, Type type, Class<?> element) {
+        if (type != null && !(type instanceof Class<?>)) {
+            Class<?> declared = ResolvableType.forType(type).asCollection().resolveGeneric(0);
+            return declared == element;
+        }
+        return list.isEmpty() ? element == EndpointHitDto.class : element.isInstance(list.get(0));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> castList(List<?> list) {
+        return (List<T>) list;
+    }
+
+    private enum Payload {
+        HIT, HITS, VIEW_STATS
+    }
+}
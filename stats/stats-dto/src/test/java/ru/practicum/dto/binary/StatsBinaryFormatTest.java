@@ -0,0 +1,152 @@
+package ru.practicum.dto.binary;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStatsDto;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StatsBinaryFormatTest {
+
+    @Test
+    void hitsRoundTrip() {
+        List<EndpointHitDto> hits = List.of(
+                new EndpointHitDto(1L, "ewm", "/events/1", "192.168.0.1", LocalDateTime.of(2024, 3, 1, 12, 0, 5)),
+                new EndpointHitDto(null, "ewm", "/events/12", "::1",
+                        LocalDateTime.of(2024, 3, 1, 12, 0, 5, 999_999_999)),
+                new EndpointHitDto(0L, "ewm", "/events/12", "192.168.0.1", LocalDateTime.of(1960, 1, 1, 0, 0, 0, 1)),
+                new EndpointHitDto(Long.MAX_VALUE - 1, null, null, null, null));
+
+        assertThat(StatsBinaryFormat.readHits(StatsBinaryFormat.writeHits(hits))).isEqualTo(hits);
+    }
+
+    // Общий префикс не разрывает суррогатную пару: остаток строки должен кодироваться в UTF-8 отдельно
+    @Test
+    void stringsWithSharedPrefixesRoundTrip() {
+        List<String> uris = List.of("/события/😀a", "/события/😁b", "/события/😁",
+                "/", "", "/events/1", "/events/10", "/events/2");
+        List<ViewStatsDto> stats = uris.stream()
+                .map(uri -> new ViewStatsDto("ewm", uri, 1L))
+                .toList();
+
+        assertThat(StatsBinaryFormat.readViewStats(StatsBinaryFormat.writeViewStats(stats))).isEqualTo(stats);
+    }
+
+    @Test
+    void viewStatsRoundTrip() {
+        List<ViewStatsDto> stats = List.of(
+                new ViewStatsDto("ewm", "/events/1", 10L, true),
+                new ViewStatsDto("ewm", "/events/2", 0L, false),
+                new ViewStatsDto("ewm", "/events/3", null, null),
+                new ViewStatsDto("ewm", "/events/4", Long.MAX_VALUE - 1));
+
+        assertThat(StatsBinaryFormat.readViewStats(StatsBinaryFormat.writeViewStats(stats))).isEqualTo(stats);
+    }
+
+    @Test
+    void emptyListsRoundTrip() {
+        assertThat(StatsBinaryFormat.readHits(StatsBinaryFormat.writeHits(List.of()))).isEmpty();
+        assertThat(StatsBinaryFormat.readViewStats(StatsBinaryFormat.writeViewStats(List.of()))).isEmpty();
+    }
+
+    // Каждая строка передаётся один раз, соседние uri сжимаются до нескольких байт
+    @Test
+    void repeatedAndSequentialStringsAreCompact() {
+        List<ViewStatsDto> stats = IntStream.range(0, 1000)
+                .mapToObj(i -> new ViewStatsDto("ewm-main-service", "/events/" + (100_000 + i), (long) i))
+                .toList();
+
+        byte[] message = StatsBinaryFormat.writeViewStats(stats);
+
+        assertThat(message.length).isLessThan(stats.size() * 12);
+        assertThat(StatsBinaryFormat.readViewStats(message)).isEqualTo(stats);
+    }
+
+    // Читатель пропускает незнакомые поля в конце записи
+    @Test
+    void unknownTrailingFieldsAreSkipped() {
+        byte[] message = {
+                1, 2,               // версия, вид: статистика
+                1, 0, 1, 'a',       // словарь: одна строка "a"
+                2,                  // две записи
+                6, 1, 1, 6, 0, 42, 43,
+                4, 1, 1, 3, 2
+        };
+
+        assertThat(StatsBinaryFormat.readViewStats(message)).containsExactly(
+                new ViewStatsDto("a", "a", 5L, null),
+                new ViewStatsDto("a", "a", 2L, true));
+    }
+
+    @Test
+    void everyTruncatedMessageIsRejected() {
+        byte[] message = StatsBinaryFormat.writeHits(List.of(
+                new EndpointHitDto(7L, "ewm", "/events/1", "10.0.0.1", LocalDateTime.of(2024, 3, 1, 12, 0)),
+                new EndpointHitDto(8L, "ewm", "/events/2", "10.0.0.2", LocalDateTime.of(2024, 3, 1, 12, 1))));
+
+        for (int length = 0; length < message.length; length++) {
+            byte[] truncated = Arrays.copyOf(message, length);
+            assertThatThrownBy(() -> StatsBinaryFormat.readHits(truncated))
+                    .as("length %d", length)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void unsupportedVersionIsRejected() {
+        byte[] message = StatsBinaryFormat.writeHits(List.of());
+        message[0] = 2;
+
+        assertThatThrownBy(() -> StatsBinaryFormat.readHits(message))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("version");
+    }
+
+    @Test
+    void messageOfOtherKindIsRejected() {
+        byte[] message = StatsBinaryFormat.writeViewStats(List.of(new ViewStatsDto("ewm", "/events/1", 1L)));
+
+        assertThatThrownBy(() -> StatsBinaryFormat.readHits(message))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("kind");
+    }
+
+    @Test
+    void invalidStringReferenceIsRejected() {
+        byte[] message = {1, 2, 1, 0, 1, 'a', 1, 4, 1, 5, 1, 0};
+
+        assertThatThrownBy(() -> StatsBinaryFormat.readViewStats(message))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("reference");
+    }
+
+    @Test
+    void timestampOutOfRangeIsRejected() {
+        // Хит без id, app/uri/ip - null, время: 0 секунд и 10^9 наносекунд
+        byte[] badNanos = {1, 1, 0, 1, 11, 0, 0, 0, 0, 1, 0, -128, -108, -21, -36, 3};
+        // 2^62 секунд - за пределами LocalDateTime
+        byte[] badSeconds = {1, 1, 0, 1, 16, 0, 0, 0, 0, 1, -128, -128, -128, -128, -128, -128, -128, -128, -128, 1, 0};
+
+        assertThatThrownBy(() -> StatsBinaryFormat.readHits(badNanos))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("nanos");
+        assertThatThrownBy(() -> StatsBinaryFormat.readHits(badSeconds))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("seconds");
+    }
+
+    @Test
+    void recordOverrunningItsLengthIsRejected() {
+        byte[] message = {1, 2, 1, 0, 1, 'a', 1, 2, 1, 1, 6, 0};
+
+        assertThatThrownBy(() -> StatsBinaryFormat.readViewStats(message))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("overruns");
+    }
+}
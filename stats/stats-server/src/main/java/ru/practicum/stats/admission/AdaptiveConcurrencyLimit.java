@@ -0,0 +1,81 @@
+package ru.practicum.stats.admission;
+
+// Лимит одновременных запросов, подстраивающийся под задержку (по мотивам алгоритма Gradient):
+// пока сглаженная задержка близка к базовой (минимальной за окно), лимит растёт на sqrt(limit),
+// когда она превышает базовую больше чем в tolerance раз - лимит уменьшается пропорционально.
+// Лимит не выходит за [minLimit, maxLimit]; maxLimit - жёсткая граница числа запросов в работе.
+public class AdaptiveConcurrencyLimit {
+
+    private static final double SHORT_RTT_WEIGHT = 0.2;
+    private static final double SMOOTHING = 0.2;
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final long baselineWindowNanos;
+
+    private int inFlight;
+    private double limit;
+    private double shortRtt;
+    private double baselineRtt;
+    private long baselineResetAt;
+
+    public AdaptiveConcurrencyLimit(int minLimit, int maxLimit, double tolerance, long baselineWindowNanos) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid concurrency limits: " + minLimit + ".." + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.baselineWindowNanos = baselineWindowNanos;
+        this.limit = maxLimit;
+    }
+
+    public synchronized Admission tryAcquire() {
+        if (inFlight >= maxLimit) {
+            return Admission.REJECTED_CAPACITY;
+        }
+        if (inFlight >= (int) limit) {
+            return Admission.REJECTED_LATENCY;
+        }
+        inFlight++;
+        return Admission.ACCEPTED;
+    }
+
+    // Завершение принятого запроса с наблюдавшейся задержкой
+    public synchronized void release(long rttNanos) {
+        int observedInFlight = inFlight--;
+        long now = System.nanoTime();
+        shortRtt = shortRtt == 0 ? rttNanos : shortRtt * (1 - SHORT_RTT_WEIGHT) + rttNanos * SHORT_RTT_WEIGHT;
+        if (baselineRtt == 0 || now - baselineResetAt > baselineWindowNanos) {
+            baselineRtt = shortRtt;
+            baselineResetAt = now;
+        } else {
+            baselineRtt = Math.min(baselineRtt, shortRtt);
+        }
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * baselineRtt / shortRtt));
+        double target = limit * gradient + Math.sqrt(limit);
+        // Рост только при реальной нагрузке: иначе после простоя лимит был бы ничем не подтверждён
+        if (target > limit && observedInFlight * 2 < limit) {
+            return;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public enum Admission {
+        ACCEPTED,
+        // Достигнут жёсткий предел maxLimit
+        REJECTED_CAPACITY,
+        // Лимит снижен из-за роста задержки
+        REJECTED_LATENCY
+    }
+}
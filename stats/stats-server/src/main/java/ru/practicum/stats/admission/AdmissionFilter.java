@@ -0,0 +1,162 @@
+package ru.practicum.stats.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Контроль допуска: у записи хитов (/hit, /hits) и запросов статистики (/stats/**) отдельные лимиты
+// одновременных запросов, поэтому тяжёлое чтение не занимает потоки Tomcat, нужные записи.
+// Сверх лимита запрос сразу получает 429 (достигнут жёсткий предел) или 503 (лимит снижен из-за роста
+// задержки) с Retry-After, не дожидаясь БД.
+@Component
+@ConditionalOnProperty(name = "stats.admission.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private final Map<Budget, AdaptiveConcurrencyLimit> limits = new EnumMap<>(Budget.class);
+    private final Map<Budget, Counter> shedForCapacity = new EnumMap<>(Budget.class);
+    private final Map<Budget, Counter> shedForLatency = new EnumMap<>(Budget.class);
+    private final String retryAfterSeconds;
+
+    public AdmissionFilter(MeterRegistry meterRegistry,
+                           @Value("${stats.admission.ingest.min-limit:10}") int ingestMinLimit,
+                           @Value("${stats.admission.ingest.max-in-flight:150}") int ingestMaxInFlight,
+                           @Value("${stats.admission.query.min-limit:4}") int queryMinLimit,
+                           @Value("${stats.admission.query.max-in-flight:40}") int queryMaxInFlight,
+                           @Value("${stats.admission.latency-tolerance:2.0}") double latencyTolerance,
+                           @Value("${stats.admission.baseline-window:30s}") Duration baselineWindow,
+                           @Value("${stats.admission.retry-after-seconds:1}") int retryAfterSeconds) {
+        limits.put(Budget.INGEST, new AdaptiveConcurrencyLimit(ingestMinLimit, ingestMaxInFlight,
+                latencyTolerance, baselineWindow.toNanos()));
+        limits.put(Budget.QUERY, new AdaptiveConcurrencyLimit(queryMinLimit, queryMaxInFlight,
+                latencyTolerance, baselineWindow.toNanos()));
+        this.retryAfterSeconds = String.valueOf(retryAfterSeconds);
+        for (Budget budget : Budget.values()) {
+            String tag = budget.tag;
+            AdaptiveConcurrencyLimit limit = limits.get(budget);
+            Gauge.builder("stats.admission.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                    .tag("budget", tag)
+                    .description("Current adaptive concurrency limit")
+                    .register(meterRegistry);
+            Gauge.builder("stats.admission.in-flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                    .tag("budget", tag)
+                    .description("Requests currently admitted")
+                    .register(meterRegistry);
+            shedForCapacity.put(budget, Counter.builder("stats.admission.shed")
+                    .tag("budget", tag)
+                    .tag("reason", "capacity")
+                    .description("Requests rejected by admission control")
+                    .register(meterRegistry));
+            shedForLatency.put(budget, Counter.builder("stats.admission.shed")
+                    .tag("budget", tag)
+                    .tag("reason", "latency")
+                    .description("Requests rejected by admission control")
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        Budget budget = budgetOf(request);
+        if (budget == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        AdaptiveConcurrencyLimit limit = limits.get(budget);
+        switch (limit.tryAcquire()) {
+            case REJECTED_CAPACITY -> {
+                shedForCapacity.get(budget).increment();
+                reject(response, HttpStatus.TOO_MANY_REQUESTS, budget);
+                return;
+            }
+            case REJECTED_LATENCY -> {
+                shedForLatency.get(budget).increment();
+                reject(response, HttpStatus.SERVICE_UNAVAILABLE, budget);
+                return;
+            }
+            case ACCEPTED -> {
+            }
+        }
+        long startedAt = System.nanoTime();
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            async = request.isAsyncStarted();
+        } finally {
+            if (async) {
+                // Потоковый ответ (NDJSON) занимает ресурсы до завершения асинхронной обработки
+                request.getAsyncContext().addListener(new ReleaseListener(limit, startedAt));
+            } else {
+                limit.release(System.nanoTime() - startedAt);
+            }
+        }
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, Budget budget) throws IOException {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"Too many concurrent " + budget.tag + " requests\"}");
+    }
+
+    private static Budget budgetOf(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.equals("/hit") || path.equals("/hits")) {
+            return Budget.INGEST;
+        }
+        if (path.equals("/stats") || path.startsWith("/stats/")) {
+            return Budget.QUERY;
+        }
+        return null;
+    }
+
+    private enum Budget {
+        INGEST("ingest"),
+        QUERY("query");
+
+        private final String tag;
+
+        Budget(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private record ReleaseListener(AdaptiveConcurrencyLimit limit, long startedAt) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            limit.release(System.nanoTime() - startedAt);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package ru.practicum.stats.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.practicum.dto.binary.StatsBinaryHttpMessageConverter;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    // В конец списка: при Accept */* ответ остаётся JSON, бинарный формат - только по явному заголовку
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new StatsBinaryHttpMessageConverter());
+    }
+}
@@ -1,15 +1,24 @@
 package ru.practicum.stats.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStatsBucketDto;
 import ru.practicum.dto.ViewStatsDto;
 import ru.practicum.stats.service.StatsService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -19,6 +28,7 @@ import java.util.List;
 public class StatsController {
 
     private final StatsService service;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
@@ -27,14 +37,69 @@ public class StatsController {
         return service.saveHit(dto);
     }
 
+    @PostMapping("/hits")
+    @ResponseStatus(HttpStatus.CREATED)
+    public List<EndpointHitDto> saveHits(@RequestBody @NotEmpty List<@Valid EndpointHitDto> dtos) {
+        log.info("POST /hits: {} hits", dtos.size());
+        return service.saveHits(dtos);
+    }
+
     @GetMapping("/stats")
     public List<ViewStatsDto> getStats(
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
             @RequestParam(required = false) List<String> uris,
+            @RequestParam(defaultValue = "false") Boolean unique,
+            @RequestParam(defaultValue = "false") Boolean approximate) {
+
+        log.info("GET /stats: start={}, end={}, uris={}, unique={}, approximate={}",
+                start, end, uris, unique, approximate);
+        return service.getStats(start, end, uris, unique, approximate);
+    }
+
+    // Accept: application/x-ndjson - по одному ViewStatsDto на строку, результат не материализуется в памяти
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamStats(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+            @RequestParam(required = false) List<String> uris,
+            @RequestParam(defaultValue = "false") Boolean unique) {
+
+        log.info("GET /stats (ndjson): start={}, end={}, uris={}, unique={}", start, end, uris, unique);
+        service.checkRange(start, end);
+        StreamingResponseBody body = out -> service.streamStats(start, end, uris, unique, stats -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(stats));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @GetMapping("/stats/top")
+    public List<ViewStatsDto> getTop(
+            @RequestParam(defaultValue = "10") @Positive Integer n,
+            @RequestParam(defaultValue = "1h") String window,
+            @RequestParam(defaultValue = "false") Boolean exact) {
+
+        log.info("GET /stats/top: n={}, window={}, exact={}", n, window, exact);
+        return service.getTop(n, window, exact);
+    }
+
+    @GetMapping("/stats/timeseries")
+    public List<ViewStatsBucketDto> getTimeSeries(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+            @RequestParam(required = false) List<String> uris,
+            @RequestParam(defaultValue = "hour") String bucket,
             @RequestParam(defaultValue = "false") Boolean unique) {
 
-        log.info("GET /stats: start={}, end={}, uris={}, unique={}", start, end, uris, unique);
-        return service.getStats(start, end, uris, unique);
+        log.info("GET /stats/timeseries: start={}, end={}, uris={}, bucket={}, unique={}",
+                start, end, uris, bucket, unique);
+        return service.getTimeSeries(start, end, uris, bucket, unique);
     }
 }
\ No newline at end of file
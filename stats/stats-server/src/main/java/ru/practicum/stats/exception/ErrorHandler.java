@@ -1,12 +1,17 @@
 package ru.practicum.stats.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.HandlerMethodValidationException;
 
 import java.util.Map;
 
@@ -14,11 +19,13 @@ import java.util.Map;
 @Slf4j
 public class ErrorHandler {
 
+    // Тип ответа задан явно: ошибка должна уйти JSON-ом и на запрос с Accept: application/x-ndjson
     @ExceptionHandler
-    @ResponseStatus(HttpStatus.BAD_REQUEST)
-    public Map<String, String> handleValidation(ValidationException e) {
+    public ResponseEntity<Map<String, String>> handleValidation(ValidationException e) {
         log.error("Validation error: {}", e.getMessage());
-        return Map.of("error", e.getMessage());
+        return ResponseEntity.badRequest()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("error", e.getMessage()));
     }
 
     @ExceptionHandler
@@ -28,6 +35,13 @@ public class ErrorHandler {
         return Map.of("error", "Validation failed: " + e.getBindingResult().getAllErrors());
     }
 
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleHandlerMethodValidation(HandlerMethodValidationException e) {
+        log.error("Validation error: {}", e.getMessage());
+        return Map.of("error", "Validation failed: " + e.getAllErrors());
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, String> handleMissingServletRequestParameter(MissingServletRequestParameterException e) {
@@ -35,6 +49,20 @@ public class ErrorHandler {
         return Map.of("error", "Required parameter '" + e.getParameterName() + "' is missing");
     }
 
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleHttpMessageNotReadable(HttpMessageNotReadableException e) {
+        log.error("Unreadable request body: {}", e.getMessage());
+        return Map.of("error", "Malformed request body: " + e.getMessage());
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleDataIntegrityViolation(DataIntegrityViolationException e) {
+        log.error("Data integrity violation: {}", e.getMessage());
+        return Map.of("error", "Invalid data: " + e.getMostSpecificCause().getMessage());
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public Map<String, String> handleThrowable(Throwable e) {
@@ -0,0 +1,177 @@
+package ru.practicum.stats.index;
+
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.model.RollupGranularity;
+import ru.practicum.stats.model.RollupSegment;
+import ru.practicum.stats.model.UriFilter;
+import ru.practicum.stats.model.Visitor;
+import ru.practicum.stats.repository.StatsRepository;
+import ru.practicum.stats.service.HitCompactionService;
+import ru.practicum.stats.service.RangeSplitExecutor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Основа индексов уникальных посетителей: одна структура B на (app, uri, день).
+// Полные дни диапазона объединяются, посетители неполных дней по краям дочитываются из сырых хитов.
+// До границы уплотнения сырых хитов нет, и посетители дня относятся к его началу: неполный день
+// на краю диапазона учитывается целиком, если его начало попадает в диапазон.
+// Полные дни делятся по месяцам, части и края считаются параллельно (RangeSplitExecutor) в отдельные
+// объединения, которые затем сливаются - битмапы и HyperLogLog объединяются без потери точности.
+public abstract class DailyVisitorIndex<B> implements HitIndex {
+
+    private final StatsRepository repository;
+    private final HitCompactionService compactionService;
+    private final RangeSplitExecutor rangeSplitExecutor;
+
+    // uri -> app -> день -> посетители за день
+    protected final Map<String, Map<String, NavigableMap<LocalDate, B>>> buckets = new ConcurrentHashMap<>();
+
+    protected DailyVisitorIndex(StatsRepository repository,
+                                HitCompactionService compactionService,
+                                RangeSplitExecutor rangeSplitExecutor) {
+        this.repository = repository;
+        this.compactionService = compactionService;
+        this.rangeSplitExecutor = rangeSplitExecutor;
+    }
+
+    protected abstract B newBucket();
+
+    protected abstract void addVisitor(B bucket, String ip);
+
+    protected abstract void merge(B target, B source);
+
+    protected abstract long count(B bucket);
+
+    @Override
+    public void add(String app, String uri, String ip, LocalDateTime timestamp) {
+        B bucket = buckets.computeIfAbsent(uri, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(app, k -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(timestamp.toLocalDate(), k -> newBucket());
+        synchronized (bucket) {
+            addVisitor(bucket, ip);
+        }
+    }
+
+    @Override
+    public void addCompacted(String app, String uri, String ip, LocalDate day) {
+        add(app, uri, ip, day.atStartOfDay());
+    }
+
+    @Override
+    public void evictBefore(LocalDateTime time) {
+        LocalDate firstKept = RollupGranularity.DAY.ceil(time).toLocalDate();
+        buckets.values().forEach(byApp -> byApp.values().forEach(days -> days.headMap(firstKept).clear()));
+    }
+
+    protected List<ViewStatsDto> countVisitors(LocalDateTime start, LocalDateTime end, UriFilter uris) {
+        LocalDateTime endExclusive = end.truncatedTo(ChronoUnit.MICROS).plus(1, ChronoUnit.MICROS);
+        LocalDateTime firstDay = RollupGranularity.DAY.ceil(start);
+        LocalDateTime lastDay = RollupGranularity.DAY.floor(endExclusive);
+
+        // Полные дни - сегменты DAY, неполные края - сырые сегменты
+        List<RollupSegment> parts = new ArrayList<>();
+        if (firstDay.isBefore(lastDay)) {
+            parts.addAll(rangeSplitExecutor.split(new RollupSegment(RollupGranularity.DAY, firstDay, lastDay)));
+            parts.add(new RollupSegment(null, start, firstDay));
+            parts.add(new RollupSegment(null, lastDay, endExclusive));
+        } else {
+            parts.add(new RollupSegment(null, start, endExclusive));
+        }
+        parts.removeIf(part -> !part.from().isBefore(part.to()));
+
+        // uri -> app -> объединение за часть диапазона
+        List<Map<String, Map<String, B>>> partial = rangeSplitExecutor.map(parts, part -> {
+            Map<String, Map<String, B>> union = new HashMap<>();
+            if (part.isRaw()) {
+                addPartial(union, part.from(), part.to(), uris);
+            } else {
+                addDays(union, part.from(), part.to(), uris);
+            }
+            return union;
+        });
+        Map<String, Map<String, B>> visitors = new HashMap<>();
+        for (Map<String, Map<String, B>> union : partial) {
+            union.forEach((uri, byApp) -> byApp.forEach((app, bucket) ->
+                    visitors.computeIfAbsent(uri, k -> new HashMap<>())
+                            .merge(app, bucket, (target, source) -> {
+                                merge(target, source);
+                                return target;
+                            })));
+        }
+
+        List<ViewStatsDto> result = new ArrayList<>();
+        visitors.forEach((uri, byApp) -> byApp.forEach((app, union) ->
+                result.add(new ViewStatsDto(app, uri, count(union)))));
+        result.sort(Comparator.comparing(ViewStatsDto::getHits).reversed());
+        return result;
+    }
+
+    // Дни [from, to), from и to - начала дней
+    private void addDays(Map<String, Map<String, B>> visitors,
+                         LocalDateTime from,
+                         LocalDateTime to,
+                         UriFilter uris) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        Collection<String> keys = uris == null ? buckets.keySet()
+                : uris.prefixes().isEmpty() ? uris.uris()
+                : buckets.keySet().stream().filter(uris::matches).toList();
+        for (String uri : keys) {
+            Map<String, NavigableMap<LocalDate, B>> byApp = buckets.get(uri);
+            if (byApp == null) {
+                continue;
+            }
+            byApp.forEach((app, days) -> {
+                Collection<B> range = days.subMap(from.toLocalDate(), true, to.toLocalDate(), false).values();
+                if (!range.isEmpty()) {
+                    B union = visitors.computeIfAbsent(uri, k -> new HashMap<>())
+                            .computeIfAbsent(app, k -> newBucket());
+                    for (B day : range) {
+                        synchronized (day) {
+                            merge(union, day);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    // Неполные дни: уплотнённая часть - дни, начало которых попадает в [from, to), остальное - по сырым хитам
+    private void addPartial(Map<String, Map<String, B>> visitors,
+                            LocalDateTime from,
+                            LocalDateTime to,
+                            UriFilter uris) {
+        LocalDateTime split = compactionService.getCompactedBefore()
+                .filter(from::isBefore)
+                .map(boundary -> boundary.isBefore(to) ? boundary : to)
+                .orElse(from);
+        addDays(visitors, RollupGranularity.DAY.ceil(from), RollupGranularity.DAY.ceil(split), uris);
+        addRaw(visitors, split, to, uris);
+    }
+
+    private void addRaw(Map<String, Map<String, B>> visitors,
+                        LocalDateTime from,
+                        LocalDateTime to,
+                        UriFilter uris) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        for (Visitor visitor : repository.getVisitorsInRange(from, to, uris)) {
+            B union = visitors.computeIfAbsent(visitor.uri(), k -> new HashMap<>())
+                    .computeIfAbsent(visitor.app(), k -> newBucket());
+            addVisitor(union, visitor.ip());
+        }
+    }
+}
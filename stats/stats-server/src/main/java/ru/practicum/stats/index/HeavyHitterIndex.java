@@ -0,0 +1,106 @@
+package ru.practicum.stats.index;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.ViewStatsDto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Самые просматриваемые (app, uri) за последние минуты/часы: сводка Space-Saving на каждую минуту
+// последнего часа и на каждый час последней недели. Запрос сливает не больше 169 сводок
+// независимо от числа хитов: текущую неполную минуту (час) и ещё окно, округлённое вверх до целых минут
+// (до часа) или часов, так что окно расширяется до границ сводок, но не укорачивается.
+@Component
+@ConditionalOnProperty(name = "stats.top.enabled", havingValue = "true", matchIfMissing = true)
+public class HeavyHitterIndex implements HitIndex {
+
+    public static final Duration MAX_WINDOW = Duration.ofDays(7);
+
+    private final int capacity;
+    // На одну сводку больше окна: под часовое окно попадают и текущая неполная минута, и 60 предыдущих
+    private final Tier minutes = new Tier(ChronoUnit.MINUTES, 60 + 1);
+    private final Tier hours = new Tier(ChronoUnit.HOURS, (int) MAX_WINDOW.toHours() + 1);
+
+    public HeavyHitterIndex(@Value("${stats.top.capacity:1000}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void add(String app, String uri, String ip, LocalDateTime timestamp) {
+        LocalDateTime now = LocalDateTime.now();
+        Endpoint endpoint = new Endpoint(app, uri);
+        minutes.add(endpoint, timestamp, now);
+        hours.add(endpoint, timestamp, now);
+    }
+
+    public List<ViewStatsDto> getTop(int n, Duration window) {
+        Tier tier = window.compareTo(Duration.ofHours(1)) <= 0 ? minutes : hours;
+        long unitSeconds = tier.unit.getDuration().getSeconds();
+        int slots = (int) Math.min(tier.slotIds.length, (window.getSeconds() + unitSeconds - 1) / unitSeconds + 1);
+        SpaceSaving<Endpoint> merged = tier.merge(slots, LocalDateTime.now());
+        List<ViewStatsDto> result = new ArrayList<>();
+        merged.top(n).forEach(entry -> result.add(
+                new ViewStatsDto(entry.getKey().app(), entry.getKey().uri(), entry.getValue(), true)));
+        return result;
+    }
+
+    private record Endpoint(String app, String uri) {
+    }
+
+    private final class Tier {
+
+        private final ChronoUnit unit;
+        private final long[] slotIds;
+        private final List<SpaceSaving<Endpoint>> slots;
+
+        Tier(ChronoUnit unit, int slotCount) {
+            this.unit = unit;
+            this.slotIds = new long[slotCount];
+            Arrays.fill(slotIds, Long.MIN_VALUE);
+            this.slots = new ArrayList<>(slotCount);
+            for (int i = 0; i < slotCount; i++) {
+                slots.add(null);
+            }
+        }
+
+        synchronized void add(Endpoint endpoint, LocalDateTime timestamp, LocalDateTime now) {
+            long id = slotId(timestamp);
+            long current = slotId(now);
+            if (id > current || id <= current - slotIds.length) {
+                return;
+            }
+            int slot = (int) Math.floorMod(id, (long) slotIds.length);
+            if (slotIds[slot] != id) {
+                if (slotIds[slot] > id) {
+                    return;
+                }
+                slotIds[slot] = id;
+                slots.set(slot, new SpaceSaving<>(capacity));
+            }
+            slots.get(slot).add(endpoint, 1);
+        }
+
+        synchronized SpaceSaving<Endpoint> merge(int count, LocalDateTime now) {
+            SpaceSaving<Endpoint> merged = new SpaceSaving<>(capacity);
+            long current = slotId(now);
+            for (long id = current - count + 1; id <= current; id++) {
+                int slot = (int) Math.floorMod(id, (long) slotIds.length);
+                if (slotIds[slot] == id) {
+                    merged.merge(slots.get(slot));
+                }
+            }
+            return merged;
+        }
+
+        private long slotId(LocalDateTime time) {
+            return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), unit.getDuration().getSeconds());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ru.practicum.stats.index;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// In-memory индекс по хитам: заполняется HitIndexLoader при старте и после каждой записи в БД
+public interface HitIndex {
+
+    void add(String app, String uri, String ip, LocalDateTime timestamp);
+
+    // Посетитель уплотнённого дня (HitCompactionService): сырых хитов за этот день уже нет
+    default void addCompacted(String app, String uri, String ip, LocalDate day) {
+    }
+
+    default void loaded() {
+    }
+
+    // Сырые хиты до time удалены (retention), индекс может освободить память
+    default void evictBefore(LocalDateTime time) {
+    }
+}
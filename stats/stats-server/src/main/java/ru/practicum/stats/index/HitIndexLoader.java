@@ -0,0 +1,64 @@
+package ru.practicum.stats.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.model.HitRow;
+import ru.practicum.stats.model.HitsSavedEvent;
+import ru.practicum.stats.repository.HitCompactionRepository;
+import ru.practicum.stats.repository.StatsRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Один проход по endpoint_hits и посетителям уплотнённых дней при старте заполняет все индексы,
+// дальше они получают хиты после коммита
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HitIndexLoader {
+
+    private final List<HitIndex> indexes;
+    private final StatsRepository repository;
+    private final Optional<HitCompactionRepository> compactionRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void load() {
+        if (indexes.isEmpty()) {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        AtomicLong rows = new AtomicLong();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<HitRow> hits = repository.streamAllHits()) {
+                hits.forEach(hit -> {
+                    indexes.forEach(index -> index.add(hit.app(), hit.uri(), hit.ip(), hit.timestamp()));
+                    rows.incrementAndGet();
+                });
+            }
+            compactionRepository.ifPresent(compacted -> compacted.forEach(visitors -> visitors.forEachIp(ip ->
+                    indexes.forEach(index -> index.addCompacted(visitors.getApp(), visitors.getUri(), ip,
+                            visitors.getDay())))));
+        });
+        indexes.forEach(HitIndex::loaded);
+        log.info("Loaded {} hit indexes from {} hits in {} ms",
+                indexes.size(), rows.get(), System.currentTimeMillis() - startedAt);
+    }
+
+    @TransactionalEventListener
+    public void onHitsSaved(HitsSavedEvent event) {
+        event.hits().forEach(hit -> indexes.forEach(index ->
+                index.add(hit.getApp(), hit.getUri(), hit.getIp(), hit.getTimestamp())));
+    }
+
+    public void evictBefore(LocalDateTime time) {
+        indexes.forEach(index -> index.evictBefore(time));
+    }
+}
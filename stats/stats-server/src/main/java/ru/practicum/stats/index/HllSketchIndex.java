@@ -0,0 +1,64 @@
+package ru.practicum.stats.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.model.UriFilter;
+import ru.practicum.stats.repository.StatsRepository;
+import ru.practicum.stats.service.HitCompactionService;
+import ru.practicum.stats.service.RangeSplitExecutor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Приблизительные уникальные просмотры: HyperLogLog на каждый (app, uri, день). Скетч разреженный, пока
+// посетителей мало, и занимает 2^precision байт только после перехода на плотные регистры
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "stats.hll.enabled", havingValue = "true", matchIfMissing = true)
+public class HllSketchIndex extends DailyVisitorIndex<HyperLogLog> {
+
+    private final int precision;
+
+    public HllSketchIndex(StatsRepository repository,
+                          HitCompactionService compactionService,
+                          RangeSplitExecutor rangeSplitExecutor,
+                          @Value("${stats.hll.precision:11}") int precision) {
+        super(repository, compactionService, rangeSplitExecutor);
+        this.precision = precision;
+    }
+
+    public List<ViewStatsDto> getApproximateUniqueStats(LocalDateTime start, LocalDateTime end, UriFilter uris) {
+        List<ViewStatsDto> result = countVisitors(start, end, uris);
+        result.forEach(stats -> stats.setApproximate(true));
+        return result;
+    }
+
+    @Override
+    public void loaded() {
+        log.info("HyperLogLog index ready: precision={}, standard error {}%",
+                precision, String.format("%.2f", HyperLogLog.standardError(precision) * 100));
+    }
+
+    @Override
+    protected HyperLogLog newBucket() {
+        return new HyperLogLog(precision);
+    }
+
+    @Override
+    protected void addVisitor(HyperLogLog bucket, String ip) {
+        bucket.add(ip);
+    }
+
+    @Override
+    protected void merge(HyperLogLog target, HyperLogLog source) {
+        target.merge(source);
+    }
+
+    @Override
+    protected long count(HyperLogLog bucket) {
+        return bucket.estimate();
+    }
+}
@@ -0,0 +1,359 @@
+package ru.practicum.stats.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.model.HitRow;
+import ru.practicum.stats.model.HitsSavedEvent;
+import ru.practicum.stats.model.UriFilter;
+import ru.practicum.stats.repository.StatsRepository;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+
+// Последние хиты в памяти по колонкам: время в микросекундах, id приложения, uri и IP.
+// Кольцевой буфер в порядке поступления. Окно гарантированно содержит все хиты с timestamp >= windowStart:
+// при вытеснении хита (по размеру или возрасту) windowStart сдвигается за его время,
+// хиты старше windowStart в окно не добавляются.
+// Индекс по минутам: для каждой минуты и (app, uri) - порядковые номера её хитов в буфере. Запрос читает
+// только минуты своего диапазона и свои uri; время хитов проверяется лишь в двух крайних неполных минутах.
+// Минута, в которой хит уже вытеснен, начинается раньше windowStart и бывает только крайней.
+// Имена app и uri и адреса IP хранятся, пока в окне есть их хиты
+@Component
+@ConditionalOnProperty(name = "stats.hot-window.enabled", havingValue = "true")
+@Slf4j
+public class HotHitWindow {
+
+    private static final long MINUTE_MICROS = 60_000_000L;
+
+    private final StatsRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxAgeHours;
+
+    private final long[] timestamps;
+    private final int[] appIds;
+    private final int[] uriIds;
+    private final int[] ipIds;
+    private final NameIds apps = new NameIds();
+    private final NameIds uris = new NameIds();
+    private final NameIds ips = new NameIds();
+    private final NavigableMap<Long, Minute> minutes = new TreeMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int head;
+    private int size;
+    // Порядковый номер хита в голове буфера: хит с номером seq лежит в ячейке seq % capacity
+    private long headSeq;
+    private long windowStart;
+
+    public HotHitWindow(StatsRepository repository,
+                        TransactionTemplate transactionTemplate,
+                        MeterRegistry meterRegistry,
+                        @Value("${stats.hot-window.max-hits:1000000}") int maxHits,
+                        @Value("${stats.hot-window.max-age-hours:72}") long maxAgeHours) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.maxAgeHours = maxAgeHours;
+        this.timestamps = new long[maxHits];
+        this.appIds = new int[maxHits];
+        this.uriIds = new int[maxHits];
+        this.ipIds = new int[maxHits];
+        Gauge.builder("stats.hot-window.size", this, HotHitWindow::size)
+                .description("Hits held in the in-memory hot window")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        long startedAt = System.currentTimeMillis();
+        LocalDateTime from = LocalDateTime.now().minusHours(maxAgeHours);
+        windowStart = toMicros(from);
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<HitRow> hits = repository.streamHitsSince(from)) {
+                hits.forEach(hit -> add(hit.app(), hit.uri(), hit.ip(), hit.timestamp()));
+            }
+        });
+        log.info("Hot window loaded: {} hits since {} in {} ms",
+                size, fromMicros(windowStart), System.currentTimeMillis() - startedAt);
+    }
+
+    @TransactionalEventListener
+    public void onHitsSaved(HitsSavedEvent event) {
+        event.hits().forEach(hit -> add(hit.getApp(), hit.getUri(), hit.getIp(), hit.getTimestamp()));
+    }
+
+    @Scheduled(fixedDelayString = "${stats.hot-window.evict-interval-ms:60000}")
+    public void evictExpired() {
+        lock.writeLock().lock();
+        try {
+            windowStart = Math.max(windowStart, toMicros(LocalDateTime.now().minusHours(maxAgeHours)));
+            while (size > 0 && timestamps[head] < windowStart) {
+                evictHead();
+            }
+            minutes.headMap(minuteOf(windowStart)).clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Окно отвечает за любой диапазон, начинающийся не раньше windowStart
+    public boolean covers(LocalDateTime start) {
+        lock.readLock().lock();
+        try {
+            return toMicros(start) >= windowStart;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, boolean unique) {
+        long from = toMicros(start);
+        long to = toMicros(end);
+        Map<Long, long[]> hits = new HashMap<>();
+        Map<Long, RoaringBitmap> visitors = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            List<Long> keys = uriFilter == null || !uriFilter.prefixes().isEmpty() ? null : keys(uriFilter);
+            for (Map.Entry<Long, Minute> entry : minutes.subMap(minuteOf(from), true, minuteOf(to), true).entrySet()) {
+                long minuteStart = entry.getKey() * MINUTE_MICROS;
+                boolean full = minuteStart >= Math.max(from, windowStart) && minuteStart + MINUTE_MICROS - 1 <= to;
+                Map<Long, Postings> postings = entry.getValue().postings;
+                if (keys != null) {
+                    for (Long key : keys) {
+                        Postings seqs = postings.get(key);
+                        if (seqs != null) {
+                            collect(key, seqs, full, from, to, unique, hits, visitors);
+                        }
+                    }
+                    continue;
+                }
+                // В крайней минуте ключ может остаться от вытесненных хитов, а его uri - забыт
+                postings.forEach((key, seqs) -> {
+                    String uri = uris.name((int) (long) key);
+                    if (uri != null && (uriFilter == null || uriFilter.matches(uri))) {
+                        collect(key, seqs, full, from, to, unique, hits, visitors);
+                    }
+                });
+            }
+            List<ViewStatsDto> result = new ArrayList<>();
+            if (unique) {
+                visitors.forEach((key, bitmap) -> result.add(toDto(key, bitmap.getLongCardinality())));
+            } else {
+                hits.forEach((key, count) -> result.add(toDto(key, count[0])));
+            }
+            result.sort(Comparator.comparing(ViewStatsDto::getHits).reversed());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(String app, String uri, String ip, LocalDateTime timestamp) {
+        long ts = toMicros(timestamp);
+        lock.writeLock().lock();
+        try {
+            if (ts < windowStart) {
+                return;
+            }
+            if (size == timestamps.length) {
+                evictHead();
+                if (ts < windowStart) {
+                    return;
+                }
+            }
+            long seq = headSeq + size;
+            int i = (int) (seq % timestamps.length);
+            timestamps[i] = ts;
+            appIds[i] = apps.acquire(app);
+            uriIds[i] = uris.acquire(uri);
+            ipIds[i] = ips.acquire(ip);
+            size++;
+            minutes.computeIfAbsent(minuteOf(ts), minute -> new Minute())
+                    .add(key(appIds[i], uriIds[i]), seq);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void evictHead() {
+        windowStart = Math.max(windowStart, timestamps[head] + 1);
+        apps.release(appIds[head]);
+        uris.release(uriIds[head]);
+        ips.release(ipIds[head]);
+        head = head + 1 == timestamps.length ? 0 : head + 1;
+        headSeq++;
+        size--;
+        minutes.headMap(minuteOf(windowStart)).clear();
+    }
+
+    // В полной минуте все хиты на месте и в диапазоне; в крайней вытесненные и лежащие вне [from, to] пропускаются
+    private void collect(long key,
+                         Postings seqs,
+                         boolean full,
+                         long from,
+                         long to,
+                         boolean unique,
+                         Map<Long, long[]> hits,
+                         Map<Long, RoaringBitmap> visitors) {
+        if (full && !unique) {
+            hits.computeIfAbsent(key, k -> new long[1])[0] += seqs.size;
+            return;
+        }
+        int capacity = timestamps.length;
+        long count = 0;
+        RoaringBitmap ips = null;
+        for (int n = 0; n < seqs.size; n++) {
+            long seq = seqs.seqs[n];
+            int i = (int) (seq % capacity);
+            if (!full && (seq < headSeq || timestamps[i] < from || timestamps[i] > to)) {
+                continue;
+            }
+            if (!unique) {
+                count++;
+                continue;
+            }
+            if (ips == null) {
+                ips = visitors.computeIfAbsent(key, k -> new RoaringBitmap());
+            }
+            ips.add(ipIds[i]);
+        }
+        if (!unique && count > 0) {
+            hits.computeIfAbsent(key, k -> new long[1])[0] += count;
+        }
+    }
+
+    // Ключи (app, uri) для списка uri без шаблонов: приложений в окне единицы
+    private List<Long> keys(UriFilter uriFilter) {
+        List<Long> keys = new ArrayList<>();
+        for (String uri : uriFilter.uris()) {
+            Integer uriId = uris.idOf(uri);
+            if (uriId != null) {
+                apps.forEachId(appId -> keys.add(key(appId, uriId)));
+            }
+        }
+        return keys;
+    }
+
+    private ViewStatsDto toDto(long key, long hits) {
+        return new ViewStatsDto(apps.name((int) (key >>> 32)), uris.name((int) key), hits);
+    }
+
+    private static long key(int appId, int uriId) {
+        return (long) appId << 32 | uriId;
+    }
+
+    private static long minuteOf(long micros) {
+        return Math.floorDiv(micros, MINUTE_MICROS);
+    }
+
+    private static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1000, ZoneOffset.UTC);
+    }
+
+    // Порядковые номера хитов одного (app, uri) за минуту, в порядке поступления
+    private static class Postings {
+
+        private long[] seqs = new long[2];
+        private int size;
+
+        private void add(long seq) {
+            if (size == seqs.length) {
+                seqs = Arrays.copyOf(seqs, size * 2);
+            }
+            seqs[size++] = seq;
+        }
+    }
+
+    private static class Minute {
+
+        private final Map<Long, Postings> postings = new HashMap<>();
+
+        private void add(long key, long seq) {
+            postings.computeIfAbsent(key, k -> new Postings()).add(seq);
+        }
+    }
+
+    // Id имён со счётчиком хитов в окне: имя без хитов забывается, его id переиспользуется
+    private static class NameIds {
+
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final Deque<Integer> free = new ArrayDeque<>();
+        private int[] refs = new int[16];
+
+        private int acquire(String name) {
+            Integer id = ids.get(name);
+            if (id == null) {
+                id = free.isEmpty() ? names.size() : free.pop();
+                if (id == names.size()) {
+                    names.add(name);
+                } else {
+                    names.set(id, name);
+                }
+                if (id == refs.length) {
+                    refs = Arrays.copyOf(refs, refs.length * 2);
+                }
+                ids.put(name, id);
+            }
+            refs[id]++;
+            return id;
+        }
+
+        private void release(int id) {
+            if (--refs[id] == 0) {
+                ids.remove(names.get(id));
+                names.set(id, null);
+                free.push(id);
+            }
+        }
+
+        private Integer idOf(String name) {
+            return ids.get(name);
+        }
+
+        private String name(int id) {
+            return names.get(id);
+        }
+
+        private void forEachId(IntConsumer action) {
+            ids.values().forEach(action::accept);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ru.practicum.stats.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Плотные целочисленные id для IP-адресов, нужны для битмапов уникальных посетителей.
+// Id не освобождаются: словарь растёт с числом различных адресов за всю историю (метрика stats.unique-index.ips)
+@Component
+@ConditionalOnProperty(name = "stats.unique-index.enabled", havingValue = "true")
+public class IpDictionary {
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    public IpDictionary(MeterRegistry meterRegistry) {
+        Gauge.builder("stats.unique-index.ips", this, IpDictionary::size)
+                .description("Distinct IP addresses in the unique visitor index dictionary")
+                .register(meterRegistry);
+    }
+
+    public int idOf(String ip) {
+        return ids.computeIfAbsent(ip, key -> nextId.getAndIncrement());
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
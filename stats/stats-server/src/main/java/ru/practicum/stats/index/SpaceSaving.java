@@ -0,0 +1,77 @@
+package ru.practicum.stats.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Space-Saving: не больше capacity счётчиков. Новый ключ при заполненной структуре вытесняет ключ
+// с минимальным счётчиком и наследует его значение, поэтому счёт может быть завышен не больше чем на этот минимум.
+// Любой ключ с частотой больше total / capacity гарантированно присутствует.
+// Не потокобезопасен.
+public class SpaceSaving<K> {
+
+    private final int capacity;
+    private final Map<K, Long> counters = new HashMap<>();
+    private final TreeMap<Long, Set<K>> byCount = new TreeMap<>();
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Space-Saving capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    public void add(K key, long count) {
+        Long current = counters.get(key);
+        long base;
+        if (current != null) {
+            unlink(key, current);
+            base = current;
+        } else if (counters.size() == capacity) {
+            Map.Entry<Long, Set<K>> min = byCount.firstEntry();
+            K evicted = min.getValue().iterator().next();
+            unlink(evicted, min.getKey());
+            counters.remove(evicted);
+            base = min.getKey();
+        } else {
+            base = 0;
+        }
+        long updated = base + count;
+        counters.put(key, updated);
+        byCount.computeIfAbsent(updated, c -> new LinkedHashSet<>()).add(key);
+    }
+
+    // Слияние сводок: счётчики другой сводки добавляются по убыванию, одинаковые ключи складываются
+    public void merge(SpaceSaving<K> other) {
+        List<Map.Entry<K, Long>> entries = new ArrayList<>(other.counters.entrySet());
+        entries.sort(Map.Entry.<K, Long>comparingByValue().reversed());
+        for (Map.Entry<K, Long> entry : entries) {
+            add(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public List<Map.Entry<K, Long>> top(int n) {
+        List<Map.Entry<K, Long>> result = new ArrayList<>(Math.min(n, counters.size()));
+        for (Set<K> keys : byCount.descendingMap().values()) {
+            for (K key : keys) {
+                if (result.size() == n) {
+                    return result;
+                }
+                result.add(Map.entry(key, counters.get(key)));
+            }
+        }
+        return result;
+    }
+
+    private void unlink(K key, long count) {
+        Set<K> keys = byCount.get(count);
+        keys.remove(key);
+        if (keys.isEmpty()) {
+            byCount.remove(count);
+        }
+    }
+}
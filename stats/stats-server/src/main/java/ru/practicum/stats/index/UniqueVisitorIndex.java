@@ -0,0 +1,87 @@
+package ru.practicum.stats.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.model.UriFilter;
+import ru.practicum.stats.repository.StatsRepository;
+import ru.practicum.stats.service.HitCompactionService;
+import ru.practicum.stats.service.RangeSplitExecutor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+// Точный подсчёт уникальных IP: битмап плотных id адресов на каждый (app, uri, день).
+// Индекс строится по всей истории и держит её в памяти, поэтому включается явно
+@Component
+@ConditionalOnProperty(name = "stats.unique-index.enabled", havingValue = "true")
+public class UniqueVisitorIndex extends DailyVisitorIndex<RoaringBitmap> {
+
+    private final IpDictionary ipDictionary;
+
+    public UniqueVisitorIndex(StatsRepository repository,
+                              HitCompactionService compactionService,
+                              RangeSplitExecutor rangeSplitExecutor,
+                              IpDictionary ipDictionary,
+                              MeterRegistry meterRegistry) {
+        super(repository, compactionService, rangeSplitExecutor);
+        this.ipDictionary = ipDictionary;
+        Gauge.builder("stats.unique-index.bytes", this, UniqueVisitorIndex::sizeInBytes)
+                .description("Serialized size of the unique visitor bitmaps, close to their heap usage")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public List<ViewStatsDto> getUniqueStats(LocalDateTime start, LocalDateTime end, UriFilter uris) {
+        return countVisitors(start, end, uris);
+    }
+
+    @Override
+    public void loaded() {
+        buckets.values().forEach(byApp -> byApp.values().forEach(days -> days.values().forEach(bitmap -> {
+            synchronized (bitmap) {
+                bitmap.runOptimize();
+            }
+        })));
+    }
+
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (Map<String, NavigableMap<LocalDate, RoaringBitmap>> byApp : buckets.values()) {
+            for (NavigableMap<LocalDate, RoaringBitmap> days : byApp.values()) {
+                for (RoaringBitmap bitmap : days.values()) {
+                    synchronized (bitmap) {
+                        bytes += bitmap.getLongSizeInBytes();
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    protected RoaringBitmap newBucket() {
+        return new RoaringBitmap();
+    }
+
+    @Override
+    protected void addVisitor(RoaringBitmap bucket, String ip) {
+        bucket.add(ipDictionary.idOf(ip));
+    }
+
+    @Override
+    protected void merge(RoaringBitmap target, RoaringBitmap source) {
+        target.or(source);
+    }
+
+    @Override
+    protected long count(RoaringBitmap bucket) {
+        return bucket.getLongCardinality();
+    }
+}
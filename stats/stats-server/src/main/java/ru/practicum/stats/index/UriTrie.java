@@ -0,0 +1,124 @@
+package ru.practicum.stats.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.model.UriFilter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Префиксное дерево всех известных uri. Шаблон раскрывается обходом только поддерева
+// его литерального префикса (части до первого '*'), результат - в лексикографическом порядке
+@Component
+@ConditionalOnProperty(name = "stats.uri-trie.enabled", havingValue = "true", matchIfMissing = true)
+public class UriTrie implements HitIndex {
+
+    private final Node root = new Node();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size;
+
+    public UriTrie(MeterRegistry meterRegistry) {
+        Gauge.builder("stats.uri-trie.size", this, UriTrie::size)
+                .description("Distinct uris in the uri trie")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void add(String app, String uri, String ip, LocalDateTime timestamp) {
+        lock.readLock().lock();
+        try {
+            Node node = find(uri);
+            if (node != null && node.terminal) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < uri.length(); i++) {
+                node = node.children.computeIfAbsent(uri.charAt(i), c -> new Node());
+            }
+            if (!node.terminal) {
+                node.terminal = true;
+                size++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void addCompacted(String app, String uri, String ip, LocalDate day) {
+        add(app, uri, ip, day.atStartOfDay());
+    }
+
+    public boolean containsPrefix(String prefix) {
+        lock.readLock().lock();
+        try {
+            return find(prefix) != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Все известные uri, подходящие под шаблон
+    public List<String> match(String pattern) {
+        int wildcard = pattern.indexOf(UriFilter.WILDCARD);
+        String prefix = wildcard < 0 ? pattern : pattern.substring(0, wildcard);
+        List<String> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Node node = find(prefix);
+            if (node != null) {
+                collect(node, new StringBuilder(prefix), pattern, result);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Node find(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        return node;
+    }
+
+    private static void collect(Node node, StringBuilder path, String pattern, List<String> result) {
+        if (node.terminal && UriFilter.matchesPattern(pattern, path.toString())) {
+            result.add(path.toString());
+        }
+        for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+            path.append(child.getKey().charValue());
+            collect(child.getValue(), path, pattern, result);
+            path.setLength(path.length() - 1);
+        }
+    }
+
+    private static final class Node {
+
+        private final Map<Character, Node> children = new TreeMap<>();
+        private boolean terminal;
+    }
+}
@@ -0,0 +1,290 @@
+package ru.practicum.stats.journal;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.JournalPosition;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Журнал хитов: сегменты фиксированного размера, отображённые в память, пишутся только в конец.
+// Запись: длина данных (int), CRC32C данных (int), данные: время в микросекундах (long),
+// app и uri (длина unsigned short + UTF-8), ip (длина byte + UTF-8). Нулевая длина - конец данных сегмента.
+// После рестарта запись всегда начинается с нового сегмента, старые только читаются.
+@Component
+@ConditionalOnProperty(name = "stats.ingest.mode", havingValue = "journal")
+@Slf4j
+public class HitJournal {
+
+    private static final String SEGMENT_PREFIX = "hits-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int RECORD_HEADER = 8;
+    private static final int MAX_STRING = 0xFFFF;
+    private static final int MAX_IP = 0xFF;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean forceOnWrite;
+
+    private MappedByteBuffer writeBuffer;
+    // Граница записанных данных; volatile-запись после записи в буфер делает данные видимыми читателю
+    private volatile JournalPosition head;
+
+    // Состояние читателя, используется только потоком загрузки
+    private long readSegment = -1;
+    private MappedByteBuffer readBuffer;
+
+    public HitJournal(@Value("${stats.journal.dir:data/journal}") String directory,
+                      @Value("${stats.journal.segment-size-mb:64}") int segmentSizeMb,
+                      @Value("${stats.journal.force-on-write:false}") boolean forceOnWrite) {
+        this.directory = Path.of(directory);
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+        this.forceOnWrite = forceOnWrite;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        long last = lastSegment().orElse(0);
+        openSegment(last + 1);
+        log.info("Hit journal opened in {}: writing segment {}, segment size {} MB",
+                directory.toAbsolutePath(), last + 1, segmentSize / 1024 / 1024);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        writeBuffer.force();
+    }
+
+    // Хиты считаются принятыми после возврата: они в page cache и переживут падение процесса,
+    // с force-on-write=true - и падение ОС
+    public synchronized void append(List<EndpointHit> hits) {
+        for (EndpointHit hit : hits) {
+            byte[] record = encode(hit);
+            if (writeBuffer.remaining() < record.length + Integer.BYTES) {
+                roll();
+            }
+            writeBuffer.put(record);
+        }
+        if (forceOnWrite) {
+            writeBuffer.force();
+        }
+        head = new JournalPosition(head.segment(), writeBuffer.position());
+    }
+
+    public JournalPosition head() {
+        return head;
+    }
+
+    // Первая позиция для чтения: начало самого старого сегмента
+    public JournalPosition start() {
+        return new JournalPosition(firstSegment().orElse(head.segment()), 0);
+    }
+
+    // Читает до max хитов начиная с from; возвращает хиты и позицию сразу за ними
+    public Batch read(JournalPosition from, int max) {
+        List<EndpointHit> hits = new ArrayList<>();
+        JournalPosition position = from;
+        while (hits.size() < max) {
+            JournalPosition current = head;
+            boolean sealed = position.segment() < current.segment();
+            ByteBuffer buffer = mapForRead(position.segment());
+            if (buffer == null) {
+                if (!sealed) {
+                    break;
+                }
+                position = nextSegment(position.segment());
+                continue;
+            }
+            int limit = sealed ? buffer.capacity() : current.offset();
+            int offset = readRecords(buffer, position.offset(), limit, max - hits.size(), hits);
+            position = new JournalPosition(position.segment(), offset);
+            if (!sealed || hits.size() >= max) {
+                break;
+            }
+            // Запечатанный сегмент дочитан до конца данных (или до повреждённой записи)
+            position = nextSegment(position.segment());
+        }
+        return new Batch(hits, position);
+    }
+
+    // Удаляет сегменты, полностью перенесённые в БД
+    public void deleteBefore(long segment) {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                OptionalLong id = segmentId(file);
+                if (id.isPresent() && id.getAsLong() < segment && id.getAsLong() < head.segment()) {
+                    Files.deleteIfExists(file);
+                    log.info("Deleted loaded journal segment {}", file.getFileName());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long segmentCount() {
+        return segments().count();
+    }
+
+    private int readRecords(ByteBuffer buffer, int offset, int limit, int max, List<EndpointHit> hits) {
+        CRC32C crc = new CRC32C();
+        int read = 0;
+        while (read < max && offset + RECORD_HEADER <= limit) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + RECORD_HEADER + length > limit) {
+                break;
+            }
+            ByteBuffer payload = buffer.slice(offset + RECORD_HEADER, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(offset + Integer.BYTES)) {
+                log.warn("Corrupted journal record in segment {} at offset {}, skipping the rest of the segment",
+                        readSegment, offset);
+                break;
+            }
+            hits.add(decode(payload));
+            offset += RECORD_HEADER + length;
+            read++;
+        }
+        return offset;
+    }
+
+    private JournalPosition nextSegment(long segment) {
+        long next = segments()
+                .filter(id -> id > segment)
+                .min()
+                .orElse(head.segment());
+        return new JournalPosition(next, 0);
+    }
+
+    private ByteBuffer mapForRead(long segment) {
+        if (segment != readSegment) {
+            Path file = segmentPath(segment);
+            if (!Files.exists(file)) {
+                return null;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                readBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                readSegment = segment;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return readBuffer;
+    }
+
+    private void roll() {
+        writeBuffer.force();
+        openSegment(head.segment() + 1);
+    }
+
+    private void openSegment(long segment) {
+        Path file = segmentPath(segment);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            writeBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        head = new JournalPosition(segment, 0);
+    }
+
+    private static byte[] encode(EndpointHit hit) {
+        byte[] app = hit.getApp().getBytes(StandardCharsets.UTF_8);
+        byte[] uri = hit.getUri().getBytes(StandardCharsets.UTF_8);
+        byte[] ip = hit.getIp().getBytes(StandardCharsets.UTF_8);
+        if (app.length > MAX_STRING || uri.length > MAX_STRING || ip.length > MAX_IP) {
+            throw new IllegalArgumentException("Hit does not fit the journal record format: " + hit);
+        }
+        int length = Long.BYTES + Short.BYTES + app.length + Short.BYTES + uri.length + Byte.BYTES + ip.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + length);
+        record.putInt(length).putInt(0);
+        LocalDateTime timestamp = hit.getTimestamp();
+        record.putLong(timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + timestamp.getNano() / 1000);
+        record.putShort((short) app.length).put(app);
+        record.putShort((short) uri.length).put(uri);
+        record.put((byte) ip.length).put(ip);
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), RECORD_HEADER, length);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+        return record.array();
+    }
+
+    private static EndpointHit decode(ByteBuffer payload) {
+        long micros = payload.getLong();
+        String app = readString(payload, Short.toUnsignedInt(payload.getShort()));
+        String uri = readString(payload, Short.toUnsignedInt(payload.getShort()));
+        String ip = readString(payload, Byte.toUnsignedInt(payload.get()));
+        LocalDateTime timestamp = LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1000, ZoneOffset.UTC);
+        return new EndpointHit(null, app, uri, ip, timestamp);
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private OptionalLong firstSegment() {
+        return segments().min();
+    }
+
+    private OptionalLong lastSegment() {
+        return segments().max();
+    }
+
+    private LongStream segments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            long[] ids = files.map(HitJournal::segmentId)
+                    .filter(OptionalLong::isPresent)
+                    .mapToLong(OptionalLong::getAsLong)
+                    .toArray();
+            return Arrays.stream(ids);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%019d", segment) + SEGMENT_SUFFIX);
+    }
+
+    private static OptionalLong segmentId(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return OptionalLong.empty();
+        }
+        try {
+            return OptionalLong.of(Long.parseLong(
+                    name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+        } catch (NumberFormatException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    public record Batch(List<EndpointHit> hits, JournalPosition next) {
+    }
+}
@@ -0,0 +1,87 @@
+package ru.practicum.stats.model;
+
+import lombok.Getter;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+// Уникальные посетители (app, uri) за уплотнённый день: IPv4 в каноническом виде - битмапом адресов как 32-битных
+// чисел, остальные строки IP (IPv6 и прочее) - списком. Адрес восстанавливается в исходную строку без потерь
+@Getter
+public class DailyVisitors {
+
+    private final LocalDate day;
+    private final String app;
+    private final String uri;
+    private final RoaringBitmap ipv4;
+    private final Set<String> otherIps;
+
+    public DailyVisitors(LocalDate day, String app, String uri) {
+        this(day, app, uri, new RoaringBitmap(), new TreeSet<>());
+    }
+
+    public DailyVisitors(LocalDate day, String app, String uri, RoaringBitmap ipv4, Set<String> otherIps) {
+        this.day = day;
+        this.app = app;
+        this.uri = uri;
+        this.ipv4 = ipv4;
+        this.otherIps = otherIps;
+    }
+
+    public void add(String ip) {
+        long address = parseIpv4(ip);
+        if (address >= 0) {
+            ipv4.add((int) address);
+        } else {
+            otherIps.add(ip);
+        }
+    }
+
+    public void merge(DailyVisitors other) {
+        ipv4.or(other.ipv4);
+        otherIps.addAll(other.otherIps);
+    }
+
+    public void forEachIp(Consumer<String> consumer) {
+        ipv4.forEach((int address) -> consumer.accept(formatIpv4(address)));
+        otherIps.forEach(consumer);
+    }
+
+    // -1, если строка не IPv4 в каноническом виде (четыре десятичных октета без ведущих нулей)
+    public static long parseIpv4(String ip) {
+        long address = 0;
+        int octets = 0;
+        int start = 0;
+        while (start <= ip.length()) {
+            int end = ip.indexOf('.', start);
+            if (end < 0) {
+                end = ip.length();
+            }
+            int length = end - start;
+            if (length == 0 || length > 3 || length > 1 && ip.charAt(start) == '0' || ++octets > 4) {
+                return -1;
+            }
+            int octet = 0;
+            for (int i = start; i < end; i++) {
+                char c = ip.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                octet = octet * 10 + (c - '0');
+            }
+            if (octet > 255) {
+                return -1;
+            }
+            address = address << 8 | octet;
+            start = end + 1;
+        }
+        return octets == 4 ? address : -1;
+    }
+
+    static String formatIpv4(int address) {
+        return (address >>> 24) + "." + (address >>> 16 & 0xFF) + "." + (address >>> 8 & 0xFF) + "." + (address & 0xFF);
+    }
+}
@@ -0,0 +1,6 @@
+package ru.practicum.stats.model;
+
+import java.time.LocalDateTime;
+
+public record HitRow(String app, String uri, String ip, LocalDateTime timestamp) {
+}
@@ -0,0 +1,6 @@
+package ru.practicum.stats.model;
+
+import java.util.List;
+
+public record HitsSavedEvent(List<EndpointHit> hits) {
+}
@@ -0,0 +1,5 @@
+package ru.practicum.stats.model;
+
+// Позиция в журнале хитов: номер сегмента и смещение внутри него
+public record JournalPosition(long segment, int offset) {
+}
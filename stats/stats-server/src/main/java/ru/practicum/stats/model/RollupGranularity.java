@@ -0,0 +1,37 @@
+package ru.practicum.stats.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+@Getter
+@RequiredArgsConstructor
+public enum RollupGranularity {
+    MINUTE("endpoint_hits_minutely", "minute", ChronoUnit.MINUTES),
+    HOUR("endpoint_hits_hourly", "hour", ChronoUnit.HOURS),
+    DAY("endpoint_hits_daily", "day", ChronoUnit.DAYS);
+
+    private final String table;
+    private final String truncUnit;
+    private final ChronoUnit unit;
+
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? floor : floor.plus(1, unit);
+    }
+
+    // Следующая более мелкая гранулярность, null - сырые хиты
+    public RollupGranularity finer() {
+        return switch (this) {
+            case DAY -> HOUR;
+            case HOUR -> MINUTE;
+            case MINUTE -> null;
+        };
+    }
+}
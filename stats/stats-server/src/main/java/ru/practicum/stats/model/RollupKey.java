@@ -0,0 +1,16 @@
+package ru.practicum.stats.model;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+public record RollupKey(LocalDateTime bucket, String app, String uri) implements Comparable<RollupKey> {
+
+    private static final Comparator<RollupKey> ORDER = Comparator.comparing(RollupKey::bucket)
+            .thenComparing(RollupKey::app)
+            .thenComparing(RollupKey::uri);
+
+    @Override
+    public int compareTo(RollupKey other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,11 @@
+package ru.practicum.stats.model;
+
+import java.time.LocalDateTime;
+
+// Полуинтервал [from, to) в роллапе заданной гранулярности, granularity == null - сырые хиты
+public record RollupSegment(RollupGranularity granularity, LocalDateTime from, LocalDateTime to) {
+
+    public boolean isRaw() {
+        return granularity == null;
+    }
+}
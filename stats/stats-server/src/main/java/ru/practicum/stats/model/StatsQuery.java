@@ -0,0 +1,22 @@
+package ru.practicum.stats.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Параметры getStats как ключ кэша: uris без повторов и по порядку (null - все uri),
+// approximate учитывается только для уникальных просмотров
+public record StatsQuery(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique, boolean approximate) {
+
+    public static StatsQuery of(LocalDateTime start,
+                                LocalDateTime end,
+                                List<String> uris,
+                                Boolean unique,
+                                Boolean approximate) {
+        List<String> normalized = uris == null ? null : uris.stream()
+                .distinct()
+                .sorted()
+                .toList();
+        boolean isUnique = Boolean.TRUE.equals(unique);
+        return new StatsQuery(start, end, normalized, isUnique, isUnique && Boolean.TRUE.equals(approximate));
+    }
+}
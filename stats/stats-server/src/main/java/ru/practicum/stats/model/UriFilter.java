@@ -0,0 +1,57 @@
+package ru.practicum.stats.model;
+
+import java.util.List;
+import java.util.Set;
+
+// Фильтр статистики по uri: точные значения и префиксы (из шаблонов вида /events/*).
+// Вместо фильтра null - все uri
+public record UriFilter(Set<String> uris, List<String> prefixes) {
+
+    public static final char WILDCARD = '*';
+
+    public boolean isEmpty() {
+        return uris.isEmpty() && prefixes.isEmpty();
+    }
+
+    public boolean matches(String uri) {
+        if (uris.contains(uri)) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (uri.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean isPattern(String uri) {
+        return uri.indexOf(WILDCARD) >= 0;
+    }
+
+    // '*' - любая, в том числе пустая, последовательность символов
+    public static boolean matchesPattern(String pattern, String uri) {
+        int p = 0;
+        int u = 0;
+        int star = -1;
+        int starMatch = 0;
+        while (u < uri.length()) {
+            if (p < pattern.length() && pattern.charAt(p) == WILDCARD) {
+                star = p++;
+                starMatch = u;
+            } else if (p < pattern.length() && pattern.charAt(p) == uri.charAt(u)) {
+                p++;
+                u++;
+            } else if (star >= 0) {
+                p = star + 1;
+                u = ++starMatch;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == WILDCARD) {
+            p++;
+        }
+        return p == pattern.length();
+    }
+}
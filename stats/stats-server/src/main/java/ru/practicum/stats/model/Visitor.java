@@ -0,0 +1,4 @@
+package ru.practicum.stats.model;
+
+public record Visitor(String app, String uri, String ip) {
+}
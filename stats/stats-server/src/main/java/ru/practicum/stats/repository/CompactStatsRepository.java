@@ -0,0 +1,224 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.model.DailyVisitors;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.HitRow;
+import ru.practicum.stats.model.UriFilter;
+import ru.practicum.stats.model.Visitor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+// Компактное хранение: app и uri заменены id из словарей, IPv4 в каноническом виде хранится как inet.
+// Остальные строки IP (IPv6 и не адреса) - как есть в ip_text: host(inet) вернул бы их в другой записи
+@Repository
+@ConditionalOnProperty(name = "stats.storage.mode", havingValue = "compact")
+@Profile("!embedded")
+@RequiredArgsConstructor
+public class CompactStatsRepository implements StatsRepository, SqlStatsRepository {
+
+    private static final int STREAM_FETCH_SIZE = 10000;
+    private static final String IP = "COALESCE(host(ip), ip_text)";
+    // Строка попадает либо в ip, либо в ip_text, поэтому множества не пересекаются
+    private static final String UNIQUE_IPS = "COUNT(DISTINCT ip) + COUNT(DISTINCT ip_text)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final HitDictionary dictionary;
+
+    @Override
+    public List<EndpointHit> saveAll(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return hits;
+        }
+        List<Long> ids = jdbcTemplate.getJdbcTemplate().queryForList(
+                "SELECT nextval('endpoint_hits_compact_id_seq') FROM generate_series(1, ?)", Long.class, hits.size());
+        Map<String, Integer> appIds = dictionary.appIds(hits.stream().map(EndpointHit::getApp).toList());
+        Map<String, Integer> uriIds = dictionary.uriIds(hits.stream().map(EndpointHit::getUri).toList());
+        SqlParameterSource[] batch = new SqlParameterSource[hits.size()];
+        for (int i = 0; i < hits.size(); i++) {
+            EndpointHit hit = hits.get(i);
+            hit.setId(ids.get(i));
+            boolean inet = DailyVisitors.parseIpv4(hit.getIp()) >= 0;
+            batch[i] = new MapSqlParameterSource()
+                    .addValue("id", hit.getId())
+                    .addValue("appId", appIds.get(hit.getApp()))
+                    .addValue("uriId", uriIds.get(hit.getUri()))
+                    .addValue("ip", inet ? hit.getIp() : null)
+                    .addValue("ipText", inet ? null : hit.getIp())
+                    .addValue("timestamp", hit.getTimestamp());
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO endpoint_hits_compact (id, app_id, uri_id, ip, ip_text, timestamp) " +
+                "VALUES (:id, :appId, :uriId, CAST(:ip AS inet), :ipText, :timestamp)", batch);
+        return hits;
+    }
+
+    @Override
+    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, UriFilter uris) {
+        return aggregate("COUNT(*)", "timestamp BETWEEN :from AND :to", start, end, uris, true);
+    }
+
+    @Override
+    public List<ViewStatsDto> getUniqueStats(LocalDateTime start, LocalDateTime end, UriFilter uris) {
+        return aggregate(UNIQUE_IPS, "timestamp BETWEEN :from AND :to", start, end, uris, true);
+    }
+
+    @Override
+    public Stream<ViewStatsDto> streamStats(LocalDateTime start, LocalDateTime end, UriFilter uris, boolean unique) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = aggregateSql(unique ? UNIQUE_IPS : "COUNT(*)", "timestamp BETWEEN :from AND :to",
+                start, end, uris, true, params);
+        if (sql == null) {
+            return Stream.empty();
+        }
+        return new NamedParameterJdbcTemplate(streamingTemplate()).queryForStream(sql, params, this::mapStats);
+    }
+
+    @Override
+    public List<ViewStatsDto> getStatsInRange(LocalDateTime from, LocalDateTime to, UriFilter uris) {
+        return aggregate("COUNT(*)", "timestamp >= :from AND timestamp < :to", from, to, uris, false);
+    }
+
+    @Override
+    public List<Visitor> getVisitorsInRange(LocalDateTime from, LocalDateTime to, UriFilter uris) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        String sql = "SELECT DISTINCT app_id, uri_id, " + IP + " AS ip FROM endpoint_hits_compact " +
+                "WHERE timestamp >= :from AND timestamp < :to";
+        if (uris != null) {
+            String uriCondition = uriCondition(uris, params);
+            if (uriCondition == null) {
+                return new ArrayList<>();
+            }
+            sql += " AND " + uriCondition;
+        }
+        return jdbcTemplate.query(sql, params, (rs, rowNum) ->
+                new Visitor(dictionary.app(rs.getInt("app_id")), dictionary.uri(rs.getInt("uri_id")), rs.getString("ip")));
+    }
+
+    @Override
+    public Stream<HitRow> streamAllHits() {
+        return streamHits("SELECT app_id, uri_id, " + IP + " AS ip, timestamp FROM endpoint_hits_compact");
+    }
+
+    @Override
+    public Stream<HitRow> streamHitsSince(LocalDateTime from) {
+        return streamHits("SELECT app_id, uri_id, " + IP + " AS ip, timestamp FROM endpoint_hits_compact " +
+                "WHERE timestamp >= ? ORDER BY timestamp", from);
+    }
+
+    @Override
+    public List<HitRow> deleteHitsBefore(LocalDateTime before, int limit) {
+        return jdbcTemplate.getJdbcTemplate().query("DELETE FROM endpoint_hits_compact WHERE (id, timestamp) IN " +
+                        "(SELECT id, timestamp FROM endpoint_hits_compact WHERE timestamp < ? ORDER BY timestamp LIMIT ?) " +
+                        "RETURNING app_id, uri_id, " + IP + " AS ip, timestamp",
+                this::mapHit, before, limit);
+    }
+
+    @Override
+    public String getHitsRelation() {
+        return "endpoint_hits_decoded";
+    }
+
+    private List<ViewStatsDto> aggregate(String count,
+                                         String timeCondition,
+                                         LocalDateTime from,
+                                         LocalDateTime to,
+                                         UriFilter uris,
+                                         boolean sorted) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = aggregateSql(count, timeCondition, from, to, uris, sorted, params);
+        if (sql == null) {
+            return new ArrayList<>();
+        }
+        return jdbcTemplate.query(sql, params, this::mapStats);
+    }
+
+    // null, если ни одного uri из списка нет в словаре и результат заведомо пуст
+    private String aggregateSql(String count,
+                                String timeCondition,
+                                LocalDateTime from,
+                                LocalDateTime to,
+                                UriFilter uris,
+                                boolean sorted,
+                                MapSqlParameterSource params) {
+        params.addValue("from", from).addValue("to", to);
+        String sql = "SELECT app_id, uri_id, " + count + " AS hits FROM endpoint_hits_compact WHERE " + timeCondition;
+        if (uris != null) {
+            String uriCondition = uriCondition(uris, params);
+            if (uriCondition == null) {
+                return null;
+            }
+            sql += " AND " + uriCondition;
+        }
+        sql += " GROUP BY app_id, uri_id";
+        if (sorted) {
+            sql += " ORDER BY hits DESC";
+        }
+        return sql;
+    }
+
+    private ViewStatsDto mapStats(ResultSet rs, int rowNum) throws SQLException {
+        return new ViewStatsDto(dictionary.app(rs.getInt("app_id")), dictionary.uri(rs.getInt("uri_id")), rs.getLong("hits"));
+    }
+
+    private Stream<HitRow> streamHits(String sql, Object... args) {
+        return streamingTemplate().queryForStream(sql, this::mapHit, args);
+    }
+
+    private HitRow mapHit(ResultSet rs, int rowNum) throws SQLException {
+        return new HitRow(dictionary.app(rs.getInt("app_id")), dictionary.uri(rs.getInt("uri_id")),
+                rs.getString("ip"), rs.getObject("timestamp", LocalDateTime.class));
+    }
+
+    private JdbcTemplate streamingTemplate() {
+        JdbcTemplate streamingTemplate = new JdbcTemplate(Objects.requireNonNull(jdbcTemplate.getJdbcTemplate().getDataSource()));
+        streamingTemplate.setFetchSize(STREAM_FETCH_SIZE);
+        return streamingTemplate;
+    }
+
+    // Точные uri - id из словаря, префиксы - диапазоном по индексу hit_uris(uri COLLATE "C");
+    // null, если под фильтр заведомо ничего не попадает.
+    // Uri, которого нет в кэше, ищется в hit_uris: кэш пополняется только после фиксации записи
+    private String uriCondition(UriFilter uris, MapSqlParameterSource params) {
+        List<String> conditions = new ArrayList<>();
+        List<Integer> uriIds = new ArrayList<>();
+        List<String> uncached = new ArrayList<>();
+        for (String uri : uris.uris()) {
+            Integer id = dictionary.findUriId(uri);
+            if (id != null) {
+                uriIds.add(id);
+            } else {
+                uncached.add(uri);
+            }
+        }
+        if (!uriIds.isEmpty()) {
+            conditions.add("uri_id IN (:uriIds)");
+            params.addValue("uriIds", uriIds);
+        }
+        if (!uncached.isEmpty()) {
+            conditions.add("uri_id IN (SELECT id FROM hit_uris WHERE uri IN (:uncachedUris))");
+            params.addValue("uncachedUris", uncached);
+        }
+        if (!uris.prefixes().isEmpty()) {
+            conditions.add("uri_id IN (SELECT id FROM hit_uris WHERE " +
+                    UriFilterSql.prefixRanges("uri", uris.prefixes(), params) + ")");
+        }
+        return conditions.isEmpty() ? null : "(" + String.join(" OR ", conditions) + ")";
+    }
+}
@@ -0,0 +1,90 @@
+package ru.practicum.stats.repository;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.HitRow;
+import ru.practicum.stats.model.Visitor;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public interface EndpointHitRepository extends JpaRepository<EndpointHit, Long> {
+
+    @Query("SELECT new ru.practicum.dto.ViewStatsDto(h.app, h.uri, COUNT(h.ip)) " +
+            "FROM EndpointHit h " +
+            "WHERE h.timestamp BETWEEN :start AND :end " +
+            "AND (:uris IS NULL OR h.uri IN :uris) " +
+            "GROUP BY h.app, h.uri " +
+            "ORDER BY COUNT(h.ip) DESC")
+    List<ViewStatsDto> getStats(@Param("start") LocalDateTime start,
+                                @Param("end") LocalDateTime end,
+                                @Param("uris") Collection<String> uris);
+
+    @Query("SELECT new ru.practicum.dto.ViewStatsDto(h.app, h.uri, COUNT(DISTINCT h.ip)) " +
+            "FROM EndpointHit h " +
+            "WHERE h.timestamp BETWEEN :start AND :end " +
+            "AND (:uris IS NULL OR h.uri IN :uris) " +
+            "GROUP BY h.app, h.uri " +
+            "ORDER BY COUNT(DISTINCT h.ip) DESC")
+    List<ViewStatsDto> getUniqueStats(@Param("start") LocalDateTime start,
+                                      @Param("end") LocalDateTime end,
+                                      @Param("uris") Collection<String> uris);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new ru.practicum.dto.ViewStatsDto(h.app, h.uri, COUNT(h.ip)) " +
+            "FROM EndpointHit h " +
+            "WHERE h.timestamp BETWEEN :start AND :end " +
+            "AND (:uris IS NULL OR h.uri IN :uris) " +
+            "GROUP BY h.app, h.uri " +
+            "ORDER BY COUNT(h.ip) DESC")
+    Stream<ViewStatsDto> streamStats(@Param("start") LocalDateTime start,
+                                     @Param("end") LocalDateTime end,
+                                     @Param("uris") Collection<String> uris);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new ru.practicum.dto.ViewStatsDto(h.app, h.uri, COUNT(DISTINCT h.ip)) " +
+            "FROM EndpointHit h " +
+            "WHERE h.timestamp BETWEEN :start AND :end " +
+            "AND (:uris IS NULL OR h.uri IN :uris) " +
+            "GROUP BY h.app, h.uri " +
+            "ORDER BY COUNT(DISTINCT h.ip) DESC")
+    Stream<ViewStatsDto> streamUniqueStats(@Param("start") LocalDateTime start,
+                                           @Param("end") LocalDateTime end,
+                                           @Param("uris") Collection<String> uris);
+
+    @Query("SELECT new ru.practicum.dto.ViewStatsDto(h.app, h.uri, COUNT(h.ip)) " +
+            "FROM EndpointHit h " +
+            "WHERE h.timestamp >= :from AND h.timestamp < :to " +
+            "AND (:uris IS NULL OR h.uri IN :uris) " +
+            "GROUP BY h.app, h.uri")
+    List<ViewStatsDto> getStatsInRange(@Param("from") LocalDateTime from,
+                                       @Param("to") LocalDateTime to,
+                                       @Param("uris") Collection<String> uris);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000"))
+    @Query("SELECT new ru.practicum.stats.model.HitRow(h.app, h.uri, h.ip, h.timestamp) FROM EndpointHit h")
+    Stream<HitRow> streamAllHits();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000"))
+    @Query("SELECT new ru.practicum.stats.model.HitRow(h.app, h.uri, h.ip, h.timestamp) FROM EndpointHit h " +
+            "WHERE h.timestamp >= :from ORDER BY h.timestamp")
+    Stream<HitRow> streamHitsSince(@Param("from") LocalDateTime from);
+
+    @Query("SELECT DISTINCT new ru.practicum.stats.model.Visitor(h.app, h.uri, h.ip) " +
+            "FROM EndpointHit h " +
+            "WHERE h.timestamp >= :from AND h.timestamp < :to " +
+            "AND (:uris IS NULL OR h.uri IN :uris)")
+    List<Visitor> getVisitorsInRange(@Param("from") LocalDateTime from,
+                                     @Param("to") LocalDateTime to,
+                                     @Param("uris") Collection<String> uris);
+}
\ No newline at end of file
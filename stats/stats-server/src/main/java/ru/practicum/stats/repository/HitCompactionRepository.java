@@ -0,0 +1,117 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.model.DailyVisitors;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+// Граница уплотнения и уникальные посетители уплотнённых дней
+@Repository
+@Profile("!embedded")
+@RequiredArgsConstructor
+public class HitCompactionRepository {
+
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public Optional<LocalDateTime> findCompactedBefore() {
+        List<LocalDateTime> boundaries = jdbcTemplate.query("SELECT compacted_before FROM hit_compaction WHERE id = 1",
+                (rs, rowNum) -> rs.getObject("compacted_before", LocalDateTime.class));
+        return boundaries.stream().findFirst();
+    }
+
+    public void saveCompactedBefore(LocalDateTime compactedBefore) {
+        jdbcTemplate.update("INSERT INTO hit_compaction (id, compacted_before) VALUES (1, ?) " +
+                "ON CONFLICT (id) DO UPDATE SET compacted_before = EXCLUDED.compacted_before", compactedBefore);
+    }
+
+    // Уже сохранённые посетители для тех же (day, app, uri), строки блокируются до конца транзакции
+    public List<DailyVisitors> findForUpdate(Collection<DailyVisitors> keys) {
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT v.day, v.app, v.uri, v.ipv4, v.other_ips FROM endpoint_hits_daily_visitors v " +
+                            "JOIN unnest(?, ?, ?) AS k(day, app, uri) " +
+                            "ON v.day = k.day AND v.app = k.app AND v.uri = k.uri FOR UPDATE OF v");
+            statement.setArray(1, connection.createArrayOf("date",
+                    keys.stream().map(key -> Date.valueOf(key.getDay())).toArray()));
+            statement.setArray(2, connection.createArrayOf("varchar",
+                    keys.stream().map(DailyVisitors::getApp).toArray()));
+            statement.setArray(3, connection.createArrayOf("varchar",
+                    keys.stream().map(DailyVisitors::getUri).toArray()));
+            return statement;
+        }, this::mapVisitors);
+    }
+
+    public void saveAll(Collection<DailyVisitors> visitors) {
+        List<DailyVisitors> rows = new ArrayList<>(visitors);
+        jdbcTemplate.batchUpdate("INSERT INTO endpoint_hits_daily_visitors (day, app, uri, ipv4, other_ips) " +
+                        "VALUES (?, ?, ?, ?, ?) ON CONFLICT (day, app, uri) " +
+                        "DO UPDATE SET ipv4 = EXCLUDED.ipv4, other_ips = EXCLUDED.other_ips",
+                rows, rows.size(), (statement, row) -> {
+                    RoaringBitmap ipv4 = row.getIpv4();
+                    ipv4.runOptimize();
+                    ByteBuffer buffer = ByteBuffer.allocate(ipv4.serializedSizeInBytes());
+                    ipv4.serialize(buffer);
+                    statement.setObject(1, row.getDay());
+                    statement.setString(2, row.getApp());
+                    statement.setString(3, row.getUri());
+                    statement.setBytes(4, buffer.array());
+                    statement.setArray(5, textArray(statement.getConnection(), row.getOtherIps()));
+                });
+    }
+
+    // Курсор по всем уплотнённым дням, вызывать внутри транзакции
+    public void forEach(Consumer<DailyVisitors> consumer) {
+        JdbcTemplate streamingTemplate = new JdbcTemplate(Objects.requireNonNull(jdbcTemplate.getDataSource()));
+        streamingTemplate.setFetchSize(STREAM_FETCH_SIZE);
+        streamingTemplate.query("SELECT day, app, uri, ipv4, other_ips FROM endpoint_hits_daily_visitors",
+                (RowCallbackHandler) rs -> consumer.accept(mapVisitors(rs, 0)));
+    }
+
+    public int deleteBefore(LocalDate day) {
+        return jdbcTemplate.update("DELETE FROM endpoint_hits_daily_visitors WHERE day < ?", day);
+    }
+
+    private DailyVisitors mapVisitors(ResultSet rs, int rowNum) throws SQLException {
+        RoaringBitmap ipv4 = new RoaringBitmap();
+        try {
+            ipv4.deserialize(ByteBuffer.wrap(rs.getBytes("ipv4")));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Array otherIps = rs.getArray("other_ips");
+        return new DailyVisitors(rs.getObject("day", LocalDate.class), rs.getString("app"), rs.getString("uri"),
+                ipv4, new TreeSet<>(Arrays.asList((String[]) otherIps.getArray())));
+    }
+
+    private static Array textArray(Connection connection, Collection<String> values) throws SQLException {
+        return connection.createArrayOf("text", values.toArray());
+    }
+}
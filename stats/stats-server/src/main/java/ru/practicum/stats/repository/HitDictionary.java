@@ -0,0 +1,136 @@
+package ru.practicum.stats.repository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Кэш словарей app и uri для компактного хранения: id ищутся в памяти, в БД идём только за новыми значениями.
+// Новые значения пачки вставляются одним запросом в транзакции записи хитов, на том же соединении,
+// а в кэш попадают только после её фиксации: откат не оставит в кэше id, которого нет в БД
+@Component
+@ConditionalOnProperty(name = "stats.storage.mode", havingValue = "compact")
+@Profile("!embedded")
+@Slf4j
+public class HitDictionary {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Dictionary apps = new Dictionary("hit_apps", "name");
+    private final Dictionary uris = new Dictionary("hit_uris", "uri");
+
+    public HitDictionary(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void load() {
+        apps.load();
+        uris.load();
+        log.info("Hit dictionaries loaded: {} apps, {} uris", apps.ids.size(), uris.ids.size());
+    }
+
+    // id всех значений; отсутствующие в словаре добавляются в текущей транзакции
+    public Map<String, Integer> appIds(Collection<String> values) {
+        return apps.intern(values);
+    }
+
+    public Map<String, Integer> uriIds(Collection<String> values) {
+        return uris.intern(values);
+    }
+
+    public Integer findUriId(String uri) {
+        return uris.ids.get(uri);
+    }
+
+    public String app(int id) {
+        return apps.value(id);
+    }
+
+    public String uri(int id) {
+        return uris.value(id);
+    }
+
+    private class Dictionary {
+
+        private final String table;
+        private final String column;
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private final Map<Integer, String> values = new ConcurrentHashMap<>();
+
+        Dictionary(String table, String column) {
+            this.table = table;
+            this.column = column;
+        }
+
+        void load() {
+            jdbcTemplate.query("SELECT id, " + column + " FROM " + table,
+                    rs -> {
+                        put(rs.getString(2), rs.getInt(1));
+                    });
+        }
+
+        Map<String, Integer> intern(Collection<String> values) {
+            Map<String, Integer> result = new HashMap<>();
+            Set<String> missing = new LinkedHashSet<>();
+            for (String value : values) {
+                Integer id = ids.get(value);
+                if (id != null) {
+                    result.put(value, id);
+                } else {
+                    missing.add(value);
+                }
+            }
+            if (missing.isEmpty()) {
+                return result;
+            }
+            String[] array = missing.toArray(String[]::new);
+            // Вставка по порядку значений: параллельные пачки ждут друг друга на уникальном индексе без взаимоблокировок
+            jdbcTemplate.update("INSERT INTO " + table + " (" + column + ") " +
+                    "SELECT value FROM unnest(?::text[]) AS value ORDER BY value " +
+                    "ON CONFLICT (" + column + ") DO NOTHING", (Object) array);
+            Map<String, Integer> created = new HashMap<>();
+            jdbcTemplate.query("SELECT id, " + column + " FROM " + table + " WHERE " + column + " = ANY(?::text[])",
+                    rs -> {
+                        created.put(rs.getString(2), rs.getInt(1));
+                    }, (Object) array);
+            result.putAll(created);
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        created.forEach(Dictionary.this::put);
+                    }
+                });
+            } else {
+                created.forEach(this::put);
+            }
+            return result;
+        }
+
+        String value(int id) {
+            String value = values.get(id);
+            if (value == null) {
+                value = jdbcTemplate.queryForObject("SELECT " + column + " FROM " + table + " WHERE id = ?",
+                        String.class, id);
+                put(value, id);
+            }
+            return value;
+        }
+
+        private void put(String value, Integer id) {
+            ids.put(value, id);
+            values.put(id, value);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Objects;
+
+@Repository
+@Profile("!embedded")
+@RequiredArgsConstructor
+@Slf4j
+public class HitPartitionRepository {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean isPartitioned() {
+        String kind = jdbcTemplate.queryForObject(
+                "SELECT relkind::text FROM pg_class WHERE oid = 'endpoint_hits'::regclass", String.class);
+        return "p".equals(kind);
+    }
+
+    // Перенос таблицы старого формата: переименовываем, создаём секционированную и копируем строки
+    @Transactional
+    public long migrateLegacyTable() {
+        jdbcTemplate.execute("ALTER TABLE endpoint_hits RENAME TO endpoint_hits_legacy");
+        jdbcTemplate.execute("ALTER SEQUENCE endpoint_hits_id_seq OWNED BY NONE");
+        jdbcTemplate.execute("ALTER TABLE endpoint_hits_legacy DROP CONSTRAINT IF EXISTS endpoint_hits_pkey");
+        jdbcTemplate.execute("DROP INDEX IF EXISTS idx_timestamp");
+        jdbcTemplate.execute("DROP INDEX IF EXISTS idx_uri_timestamp");
+        jdbcTemplate.execute("DROP INDEX IF EXISTS idx_uri_c_timestamp");
+        jdbcTemplate.execute("CREATE TABLE endpoint_hits (LIKE endpoint_hits_legacy INCLUDING DEFAULTS, " +
+                "PRIMARY KEY (id, timestamp)) PARTITION BY RANGE (timestamp)");
+        jdbcTemplate.execute("CREATE INDEX idx_timestamp ON endpoint_hits(timestamp)");
+        jdbcTemplate.execute("CREATE INDEX idx_uri_timestamp ON endpoint_hits(uri, timestamp)");
+        jdbcTemplate.execute("CREATE INDEX idx_uri_c_timestamp ON endpoint_hits((uri COLLATE \"C\"), timestamp)");
+        createDefaultPartition("endpoint_hits");
+        List<YearMonth> months = jdbcTemplate.queryForList(
+                        "SELECT DISTINCT date_trunc('month', timestamp) FROM endpoint_hits_legacy", Timestamp.class)
+                .stream()
+                .map(month -> YearMonth.from(month.toLocalDateTime()))
+                .toList();
+        months.forEach(month -> createPartition("endpoint_hits", month));
+        long rows = jdbcTemplate.update("INSERT INTO endpoint_hits (id, app, uri, ip, timestamp) " +
+                "SELECT id, app, uri, ip, timestamp FROM endpoint_hits_legacy");
+        jdbcTemplate.execute("DROP TABLE endpoint_hits_legacy");
+        return rows;
+    }
+
+    public void createDefaultPartition(String table) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + defaultPartition(table) + " PARTITION OF " + table + " DEFAULT");
+    }
+
+    public List<YearMonth> findPartitions(String table) {
+        String prefix = partitionPrefix(table);
+        return jdbcTemplate.queryForList(
+                        "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                                "WHERE i.inhparent = ?::regclass AND c.relname LIKE ?",
+                        String.class, table, prefix + "%")
+                .stream()
+                .map(name -> YearMonth.parse(name.substring(prefix.length()), SUFFIX))
+                .sorted()
+                .toList();
+    }
+
+    public List<YearMonth> findMonthsInDefaultPartition(String table) {
+        return jdbcTemplate.queryForList(
+                        "SELECT DISTINCT date_trunc('month', timestamp) FROM " + defaultPartition(table), Timestamp.class)
+                .stream()
+                .filter(Objects::nonNull)
+                .map(month -> YearMonth.from(month.toLocalDateTime()))
+                .toList();
+    }
+
+    // Строки месяца, попавшие в секцию по умолчанию, переносятся в новую секцию до её подключения
+    @Transactional
+    public void createPartition(String table, YearMonth month) {
+        String name = partitionPrefix(table) + month.format(SUFFIX);
+        String defaultPartition = defaultPartition(table);
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        String bounds = "FOR VALUES FROM ('" + from + "') TO ('" + to + "')";
+
+        jdbcTemplate.execute("LOCK TABLE " + defaultPartition + " IN EXCLUSIVE MODE");
+        Boolean hasRows = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM " + defaultPartition +
+                " WHERE timestamp >= ? AND timestamp < ?)", Boolean.class, from, to);
+        if (!Boolean.TRUE.equals(hasRows)) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + table + " " + bounds);
+            return;
+        }
+        jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE " + table + " INCLUDING DEFAULTS)");
+        int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + defaultPartition +
+                " WHERE timestamp >= ? AND timestamp < ? RETURNING *) INSERT INTO " + name +
+                " SELECT * FROM moved", from, to);
+        jdbcTemplate.execute("ALTER TABLE " + table + " ATTACH PARTITION " + name + " " + bounds);
+        log.info("Moved {} hits from default partition to {}", moved, name);
+    }
+
+    public void dropPartition(String table, YearMonth month) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + partitionPrefix(table) + month.format(SUFFIX));
+    }
+
+    private static String defaultPartition(String table) {
+        return table + "_default";
+    }
+
+    private static String partitionPrefix(String table) {
+        return table + "_p";
+    }
+}
@@ -0,0 +1,92 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import ru.practicum.dto.ViewStatsBucketDto;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.model.RollupGranularity;
+import ru.practicum.stats.model.RollupKey;
+import ru.practicum.stats.model.UriFilter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@Profile("!embedded")
+@RequiredArgsConstructor
+public class HitRollupRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void increment(RollupGranularity granularity, Map<RollupKey, Long> counts) {
+        String sql = "INSERT INTO " + granularity.getTable() + " (bucket, app, uri, hits) " +
+                "VALUES (:bucket, :app, :uri, :hits) " +
+                "ON CONFLICT (bucket, app, uri) DO UPDATE SET hits = " + granularity.getTable() + ".hits + EXCLUDED.hits";
+        SqlParameterSource[] batch = counts.entrySet().stream()
+                .map(e -> new MapSqlParameterSource()
+                        .addValue("bucket", e.getKey().bucket())
+                        .addValue("app", e.getKey().app())
+                        .addValue("uri", e.getKey().uri())
+                        .addValue("hits", e.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(sql, batch);
+    }
+
+    public List<ViewStatsDto> getStats(RollupGranularity granularity,
+                                       LocalDateTime from,
+                                       LocalDateTime to,
+                                       UriFilter uris) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        String sql = "SELECT app, uri, SUM(hits) AS hits FROM " + granularity.getTable() + " " +
+                "WHERE bucket >= :from AND bucket < :to ";
+        if (uris != null) {
+            sql += "AND " + UriFilterSql.condition("uri", uris, params) + " ";
+        }
+        sql += "GROUP BY app, uri";
+        return jdbcTemplate.query(sql, params, (rs, rowNum) ->
+                new ViewStatsDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+    }
+
+    public List<ViewStatsBucketDto> getBuckets(RollupGranularity granularity,
+                                               LocalDateTime from,
+                                               LocalDateTime to,
+                                               UriFilter uris) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        String sql = "SELECT bucket, app, uri, hits FROM " + granularity.getTable() + " " +
+                "WHERE bucket >= :from AND bucket < :to";
+        if (uris != null) {
+            sql += " AND " + UriFilterSql.condition("uri", uris, params);
+        }
+        return jdbcTemplate.query(sql, params, (rs, rowNum) -> new ViewStatsBucketDto(rs.getString("app"),
+                rs.getString("uri"), rs.getObject("bucket", LocalDateTime.class), rs.getLong("hits"), null));
+    }
+
+    public boolean isEmpty(RollupGranularity granularity) {
+        Boolean exists = jdbcTemplate.getJdbcTemplate().queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + granularity.getTable() + ")", Boolean.class);
+        return !Boolean.TRUE.equals(exists);
+    }
+
+    // Бакеты до from, для удаления вместе с секциями сырых хитов
+    public int deleteBefore(RollupGranularity granularity, LocalDateTime from) {
+        return jdbcTemplate.update("DELETE FROM " + granularity.getTable() + " WHERE bucket < :from",
+                new MapSqlParameterSource("from", from));
+    }
+
+    public int rebuild(RollupGranularity granularity, String hitsRelation) {
+        jdbcTemplate.getJdbcTemplate().update("TRUNCATE " + granularity.getTable());
+        return jdbcTemplate.getJdbcTemplate().update(
+                "INSERT INTO " + granularity.getTable() + " (bucket, app, uri, hits) " +
+                        "SELECT date_trunc('" + granularity.getTruncUnit() + "', timestamp), app, uri, COUNT(*) " +
+                        "FROM " + hitsRelation + " GROUP BY 1, 2, 3");
+    }
+}
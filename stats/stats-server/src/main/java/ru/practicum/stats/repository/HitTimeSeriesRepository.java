@@ -0,0 +1,19 @@
+package ru.practicum.stats.repository;
+
+import ru.practicum.dto.ViewStatsBucketDto;
+import ru.practicum.stats.model.RollupGranularity;
+import ru.practicum.stats.model.UriFilter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Временной ряд по сырым хитам. uris == null - все uri
+public interface HitTimeSeriesRepository {
+
+    // [from, to), бакеты без сортировки; uniqueHits заполняется только при unique
+    List<ViewStatsBucketDto> getTimeSeries(RollupGranularity granularity,
+                                           LocalDateTime from,
+                                           LocalDateTime to,
+                                           UriFilter uris,
+                                           boolean unique);
+}
@@ -0,0 +1,44 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.dto.ViewStatsBucketDto;
+import ru.practicum.stats.model.RollupGranularity;
+import ru.practicum.stats.model.UriFilter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Временной ряд одним проходом по сырым хитам с группировкой по date_trunc
+@Repository
+@Profile("!embedded")
+@RequiredArgsConstructor
+public class JdbcHitTimeSeriesRepository implements HitTimeSeriesRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final SqlStatsRepository sqlStatsRepository;
+
+    @Override
+    public List<ViewStatsBucketDto> getTimeSeries(RollupGranularity granularity,
+                                                  LocalDateTime from,
+                                                  LocalDateTime to,
+                                                  UriFilter uris,
+                                                  boolean unique) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        String sql = "SELECT date_trunc('" + granularity.getTruncUnit() + "', timestamp) AS bucket, app, uri, " +
+                "COUNT(*) AS hits" + (unique ? ", COUNT(DISTINCT ip) AS unique_hits " : " ") +
+                "FROM " + sqlStatsRepository.getHitsRelation() + " WHERE timestamp >= :from AND timestamp < :to";
+        if (uris != null) {
+            sql += " AND " + UriFilterSql.condition("uri", uris, params);
+        }
+        sql += " GROUP BY 1, 2, 3";
+        return jdbcTemplate.query(sql, params, (rs, rowNum) -> new ViewStatsBucketDto(rs.getString("app"),
+                rs.getString("uri"), rs.getObject("bucket", LocalDateTime.class), rs.getLong("hits"),
+                unique ? rs.getLong("unique_hits") : null));
+    }
+}
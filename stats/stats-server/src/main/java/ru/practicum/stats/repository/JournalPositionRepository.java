@@ -0,0 +1,32 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.model.JournalPosition;
+
+import java.util.List;
+import java.util.Optional;
+
+// Позиция, до которой журнал хитов перенесён в БД. Сохраняется в одной транзакции с хитами
+@Repository
+@Profile("!embedded")
+@RequiredArgsConstructor
+public class JournalPositionRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public Optional<JournalPosition> find() {
+        List<JournalPosition> positions = jdbcTemplate.query(
+                "SELECT segment, position FROM hit_journal_position WHERE id = 1",
+                (rs, rowNum) -> new JournalPosition(rs.getLong("segment"), rs.getInt("position")));
+        return positions.stream().findFirst();
+    }
+
+    public void save(JournalPosition position) {
+        jdbcTemplate.update("INSERT INTO hit_journal_position (id, segment, position) VALUES (1, ?, ?) " +
+                        "ON CONFLICT (id) DO UPDATE SET segment = EXCLUDED.segment, position = EXCLUDED.position",
+                position.segment(), position.offset());
+    }
+}
@@ -0,0 +1,145 @@
+package ru.practicum.stats.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.stereotype.Repository;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.HitRow;
+import ru.practicum.stats.model.UriFilter;
+import ru.practicum.stats.model.Visitor;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Фильтр с префиксами uri не выражается статическим JPQL, такие запросы собираются динамически
+@Repository
+@ConditionalOnProperty(name = "stats.storage.mode", havingValue = "plain", matchIfMissing = true)
+@Profile("!embedded")
+@RequiredArgsConstructor
+public class JpaStatsRepository implements StatsRepository, SqlStatsRepository {
+
+    private static final String STATS = "SELECT new ru.practicum.dto.ViewStatsDto(h.app, h.uri, %s) FROM EndpointHit h ";
+    private static final String CLOSED_RANGE = "WHERE h.timestamp BETWEEN :from AND :to ";
+    private static final String HALF_OPEN_RANGE = "WHERE h.timestamp >= :from AND h.timestamp < :to ";
+
+    private final EndpointHitRepository hitRepository;
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<EndpointHit> saveAll(List<EndpointHit> hits) {
+        return hitRepository.saveAll(hits);
+    }
+
+    @Override
+    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, UriFilter uris) {
+        if (hasPrefixes(uris)) {
+            return statsQuery("COUNT(h.ip)", CLOSED_RANGE, start, end, uris, true).getResultList();
+        }
+        return hitRepository.getStats(start, end, exact(uris));
+    }
+
+    @Override
+    public List<ViewStatsDto> getUniqueStats(LocalDateTime start, LocalDateTime end, UriFilter uris) {
+        if (hasPrefixes(uris)) {
+            return statsQuery("COUNT(DISTINCT h.ip)", CLOSED_RANGE, start, end, uris, true).getResultList();
+        }
+        return hitRepository.getUniqueStats(start, end, exact(uris));
+    }
+
+    @Override
+    public Stream<ViewStatsDto> streamStats(LocalDateTime start, LocalDateTime end, UriFilter uris, boolean unique) {
+        if (hasPrefixes(uris)) {
+            return statsQuery(unique ? "COUNT(DISTINCT h.ip)" : "COUNT(h.ip)", CLOSED_RANGE, start, end, uris, true)
+                    .setHint(HibernateHints.HINT_FETCH_SIZE, 1000)
+                    .getResultStream();
+        }
+        return unique
+                ? hitRepository.streamUniqueStats(start, end, exact(uris))
+                : hitRepository.streamStats(start, end, exact(uris));
+    }
+
+    @Override
+    public List<ViewStatsDto> getStatsInRange(LocalDateTime from, LocalDateTime to, UriFilter uris) {
+        if (hasPrefixes(uris)) {
+            return statsQuery("COUNT(h.ip)", HALF_OPEN_RANGE, from, to, uris, false).getResultList();
+        }
+        return hitRepository.getStatsInRange(from, to, exact(uris));
+    }
+
+    @Override
+    public List<Visitor> getVisitorsInRange(LocalDateTime from, LocalDateTime to, UriFilter uris) {
+        if (hasPrefixes(uris)) {
+            MapSqlParameterSource params = new MapSqlParameterSource();
+            String jpql = "SELECT DISTINCT new ru.practicum.stats.model.Visitor(h.app, h.uri, h.ip) FROM EndpointHit h " +
+                    HALF_OPEN_RANGE + "AND " + UriFilterSql.jpqlCondition("h.uri", uris, params);
+            return bind(entityManager.createQuery(jpql, Visitor.class), from, to, params).getResultList();
+        }
+        return hitRepository.getVisitorsInRange(from, to, exact(uris));
+    }
+
+    @Override
+    public Stream<HitRow> streamAllHits() {
+        return hitRepository.streamAllHits();
+    }
+
+    @Override
+    public Stream<HitRow> streamHitsSince(LocalDateTime from) {
+        return hitRepository.streamHitsSince(from);
+    }
+
+    @Override
+    public List<HitRow> deleteHitsBefore(LocalDateTime before, int limit) {
+        return jdbcTemplate.query("DELETE FROM endpoint_hits WHERE (id, timestamp) IN " +
+                        "(SELECT id, timestamp FROM endpoint_hits WHERE timestamp < ? ORDER BY timestamp LIMIT ?) " +
+                        "RETURNING app, uri, ip, timestamp",
+                (rs, rowNum) -> new HitRow(rs.getString("app"), rs.getString("uri"), rs.getString("ip"),
+                        rs.getObject("timestamp", LocalDateTime.class)), before, limit);
+    }
+
+    @Override
+    public String getHitsRelation() {
+        return "endpoint_hits";
+    }
+
+    private TypedQuery<ViewStatsDto> statsQuery(String count,
+                                                String timeCondition,
+                                                LocalDateTime from,
+                                                LocalDateTime to,
+                                                UriFilter uris,
+                                                boolean sorted) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String jpql = String.format(STATS, count) + timeCondition +
+                "AND " + UriFilterSql.jpqlCondition("h.uri", uris, params) + " GROUP BY h.app, h.uri";
+        if (sorted) {
+            jpql += " ORDER BY " + count + " DESC";
+        }
+        return bind(entityManager.createQuery(jpql, ViewStatsDto.class), from, to, params);
+    }
+
+    private static <T> TypedQuery<T> bind(TypedQuery<T> query,
+                                          LocalDateTime from,
+                                          LocalDateTime to,
+                                          MapSqlParameterSource params) {
+        query.setParameter("from", from).setParameter("to", to);
+        params.getValues().forEach(query::setParameter);
+        return query;
+    }
+
+    private static boolean hasPrefixes(UriFilter uris) {
+        return uris != null && !uris.prefixes().isEmpty();
+    }
+
+    private static Collection<String> exact(UriFilter uris) {
+        return uris == null ? null : uris.uris();
+    }
+}
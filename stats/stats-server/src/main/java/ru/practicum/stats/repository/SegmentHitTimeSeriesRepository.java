@@ -0,0 +1,62 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import ru.practicum.dto.ViewStatsBucketDto;
+import ru.practicum.stats.model.RollupGranularity;
+import ru.practicum.stats.model.UriFilter;
+import ru.practicum.stats.segment.HitRecord;
+import ru.practicum.stats.segment.SegmentStore;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Временной ряд одним проходом по хитам встроенного хранилища; бакет - время, округлённое вниз до гранулярности
+@Repository
+@Profile("embedded")
+@RequiredArgsConstructor
+public class SegmentHitTimeSeriesRepository implements HitTimeSeriesRepository {
+
+    private final SegmentStore store;
+
+    @Override
+    public List<ViewStatsBucketDto> getTimeSeries(RollupGranularity granularity,
+                                                  LocalDateTime from,
+                                                  LocalDateTime to,
+                                                  UriFilter uris,
+                                                  boolean unique) {
+        long unitMicros = granularity.getUnit().getDuration().toNanos() / 1000;
+        Map<Key, Bucket> buckets = new HashMap<>();
+        store.scan(HitRecord.ceilMicros(from), HitRecord.ceilMicros(to), uris, hit -> {
+            Key key = new Key(hit.app(), hit.uri(), Math.floorDiv(hit.micros(), unitMicros) * unitMicros);
+            Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket(unique ? new HashSet<>() : null));
+            bucket.hits++;
+            if (unique) {
+                bucket.ips.add(hit.ip());
+            }
+        });
+        List<ViewStatsBucketDto> result = new ArrayList<>(buckets.size());
+        buckets.forEach((key, bucket) -> result.add(new ViewStatsBucketDto(key.app(), key.uri(),
+                HitRecord.fromMicros(key.bucket()), bucket.hits, unique ? (long) bucket.ips.size() : null)));
+        return result;
+    }
+
+    private record Key(String app, String uri, long bucket) {
+    }
+
+    private static final class Bucket {
+
+        private final Set<String> ips;
+        private long hits;
+
+        Bucket(Set<String> ips) {
+            this.ips = ips;
+        }
+    }
+}
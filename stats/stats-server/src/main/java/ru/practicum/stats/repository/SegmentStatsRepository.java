@@ -0,0 +1,138 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.HitRow;
+import ru.practicum.stats.model.UriFilter;
+import ru.practicum.stats.model.Visitor;
+import ru.practicum.stats.segment.HitRecord;
+import ru.practicum.stats.segment.SegmentStore;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Хиты во встроенном хранилище SegmentStore (профиль embedded, без PostgreSQL). Агрегаты считаются
+// одним проходом по записям, отобранным по (uri, время); различные ip - по строке, как в режиме plain.
+// Уплотнения и SQL-пересчётов нет
+@Repository
+@Profile("embedded")
+@RequiredArgsConstructor
+public class SegmentStatsRepository implements StatsRepository {
+
+    private final SegmentStore store;
+
+    @Override
+    public List<EndpointHit> saveAll(List<EndpointHit> hits) {
+        return store.append(hits);
+    }
+
+    @Override
+    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, UriFilter uris) {
+        return sorted(count(HitRecord.ceilMicros(start), closedEnd(end), uris));
+    }
+
+    @Override
+    public List<ViewStatsDto> getUniqueStats(LocalDateTime start, LocalDateTime end, UriFilter uris) {
+        Map<Key, Set<String>> ips = new HashMap<>();
+        store.scan(HitRecord.ceilMicros(start), closedEnd(end), uris, new Consumer<>() {
+
+            private Key last;
+            private Set<String> lastIps;
+
+            @Override
+            public void accept(HitRecord hit) {
+                if (last == null || !last.matches(hit)) {
+                    last = new Key(hit.app(), hit.uri());
+                    lastIps = ips.computeIfAbsent(last, key -> new HashSet<>());
+                }
+                lastIps.add(hit.ip());
+            }
+        });
+        List<ViewStatsDto> result = new ArrayList<>(ips.size());
+        ips.forEach((key, set) -> result.add(new ViewStatsDto(key.app(), key.uri(), (long) set.size())));
+        return sorted(result);
+    }
+
+    @Override
+    public Stream<ViewStatsDto> streamStats(LocalDateTime start, LocalDateTime end, UriFilter uris, boolean unique) {
+        return (unique ? getUniqueStats(start, end, uris) : getStats(start, end, uris)).stream();
+    }
+
+    @Override
+    public List<ViewStatsDto> getStatsInRange(LocalDateTime from, LocalDateTime to, UriFilter uris) {
+        return count(HitRecord.ceilMicros(from), HitRecord.ceilMicros(to), uris);
+    }
+
+    @Override
+    public List<Visitor> getVisitorsInRange(LocalDateTime from, LocalDateTime to, UriFilter uris) {
+        Set<Visitor> visitors = new HashSet<>();
+        store.scan(HitRecord.ceilMicros(from), HitRecord.ceilMicros(to), uris,
+                hit -> visitors.add(new Visitor(hit.app(), hit.uri(), hit.ip())));
+        return new ArrayList<>(visitors);
+    }
+
+    @Override
+    public Stream<HitRow> streamAllHits() {
+        return store.stream()
+                .map(HitRecord::toRow);
+    }
+
+    @Override
+    public Stream<HitRow> streamHitsSince(LocalDateTime from) {
+        List<HitRecord> hits = new ArrayList<>();
+        store.scan(HitRecord.ceilMicros(from), Long.MAX_VALUE, null, hits::add);
+        hits.sort(Comparator.comparingLong(HitRecord::micros));
+        return hits.stream()
+                .map(HitRecord::toRow);
+    }
+
+    // [from, to) микросекунд, без сортировки. Соседние записи сегмента обычно одного (app, uri),
+    // счётчик последнего ключа переиспользуется без поиска в карте
+    private List<ViewStatsDto> count(long from, long to, UriFilter uris) {
+        Map<Key, long[]> hits = new HashMap<>();
+        store.scan(from, to, uris, new Consumer<>() {
+
+            private Key last;
+            private long[] lastHits;
+
+            @Override
+            public void accept(HitRecord hit) {
+                if (last == null || !last.matches(hit)) {
+                    last = new Key(hit.app(), hit.uri());
+                    lastHits = hits.computeIfAbsent(last, key -> new long[1]);
+                }
+                lastHits[0]++;
+            }
+        });
+        List<ViewStatsDto> result = new ArrayList<>(hits.size());
+        hits.forEach((key, count) -> result.add(new ViewStatsDto(key.app(), key.uri(), count[0])));
+        return result;
+    }
+
+    private static List<ViewStatsDto> sorted(List<ViewStatsDto> stats) {
+        stats.sort(Comparator.comparing(ViewStatsDto::getHits).reversed());
+        return stats;
+    }
+
+    private static long closedEnd(LocalDateTime end) {
+        return HitRecord.toMicros(end) + 1;
+    }
+
+    private record Key(String app, String uri) {
+
+        boolean matches(HitRecord hit) {
+            return uri.equals(hit.uri()) && app.equals(hit.app());
+        }
+    }
+}
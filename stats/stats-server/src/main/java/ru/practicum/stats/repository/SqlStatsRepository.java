@@ -0,0 +1,17 @@
+package ru.practicum.stats.repository;
+
+import ru.practicum.stats.model.HitRow;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Операции над сырыми хитами в PostgreSQL (режимы plain и compact) для уплотнения и пересчётов на стороне БД.
+// У встроенного хранилища их нет
+public interface SqlStatsRepository {
+
+    // Удаляет не больше limit самых ранних хитов до before и возвращает удалённые
+    List<HitRow> deleteHitsBefore(LocalDateTime before, int limit);
+
+    // SQL-отношение с колонками (app, uri, ip, timestamp) для пересчётов на стороне БД
+    String getHitsRelation();
+}
@@ -1,35 +1,39 @@
 package ru.practicum.stats.repository;
 
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
-import org.springframework.stereotype.Repository;
 import ru.practicum.dto.ViewStatsDto;
 import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.HitRow;
+import ru.practicum.stats.model.UriFilter;
+import ru.practicum.stats.model.Visitor;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
-@Repository
-public interface StatsRepository extends JpaRepository<EndpointHit, Long> {
-
-    @Query("SELECT new ru.practicum.dto.ViewStatsDto(h.app, h.uri, COUNT(h.ip)) " +
-            "FROM EndpointHit h " +
-            "WHERE h.timestamp BETWEEN :start AND :end " +
-            "AND (:uris IS NULL OR h.uri IN :uris) " +
-            "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT(h.ip) DESC")
-    List<ViewStatsDto> getStats(@Param("start") LocalDateTime start,
-                                @Param("end") LocalDateTime end,
-                                @Param("uris") List<String> uris);
-
-    @Query("SELECT new ru.practicum.dto.ViewStatsDto(h.app, h.uri, COUNT(DISTINCT h.ip)) " +
-            "FROM EndpointHit h " +
-            "WHERE h.timestamp BETWEEN :start AND :end " +
-            "AND (:uris IS NULL OR h.uri IN :uris) " +
-            "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT(DISTINCT h.ip) DESC")
-    List<ViewStatsDto> getUniqueStats(@Param("start") LocalDateTime start,
-                                      @Param("end") LocalDateTime end,
-                                      @Param("uris") List<String> uris);
-}
\ No newline at end of file
+// Хранилище сырых хитов. В профиле embedded - встроенное хранилище, иначе реализация выбирается
+// свойством stats.storage.mode. uris == null - все uri
+public interface StatsRepository {
+
+    List<EndpointHit> saveAll(List<EndpointHit> hits);
+
+    // [start, end], отсортировано по убыванию hits
+    List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, UriFilter uris);
+
+    // [start, end], отсортировано по убыванию hits
+    List<ViewStatsDto> getUniqueStats(LocalDateTime start, LocalDateTime end, UriFilter uris);
+
+    // То же, что getStats/getUniqueStats, но курсором; вызывать внутри транзакции и закрывать
+    Stream<ViewStatsDto> streamStats(LocalDateTime start, LocalDateTime end, UriFilter uris, boolean unique);
+
+    // [from, to), без сортировки
+    List<ViewStatsDto> getStatsInRange(LocalDateTime from, LocalDateTime to, UriFilter uris);
+
+    // [from, to), различные тройки (app, uri, ip)
+    List<Visitor> getVisitorsInRange(LocalDateTime from, LocalDateTime to, UriFilter uris);
+
+    // Курсор по всем хитам, вызывать внутри транзакции и закрывать
+    Stream<HitRow> streamAllHits();
+
+    // Курсор по хитам начиная с from в порядке времени, вызывать внутри транзакции и закрывать
+    Stream<HitRow> streamHitsSince(LocalDateTime from);
+}
@@ -0,0 +1,75 @@
+package ru.practicum.stats.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import ru.practicum.stats.model.UriFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Условие по uri для SQL и JPQL: точные значения через IN, префикс p - диапазоном [p, p с увеличенным
+// последним символом), который читается по индексу (uri COLLATE "C", ...) в отличие от LIKE.
+// Диапазон сравнивается в collation "C" независимо от collation базы: только при побайтовом порядке
+// строки с префиксом p лежат ровно между границами
+final class UriFilterSql {
+
+    private UriFilterSql() {
+    }
+
+    static String condition(String column, UriFilter filter, MapSqlParameterSource params) {
+        return condition(column, column + " COLLATE \"C\"", filter, params);
+    }
+
+    static String jpqlCondition(String column, UriFilter filter, MapSqlParameterSource params) {
+        return condition(column, "collate(" + column + " as `C`)", filter, params);
+    }
+
+    static String prefixRanges(String column, List<String> prefixes, MapSqlParameterSource params) {
+        return prefixRangesOf(column + " COLLATE \"C\"", prefixes, params);
+    }
+
+    private static String condition(String column,
+                                    String bytewise,
+                                    UriFilter filter,
+                                    MapSqlParameterSource params) {
+        List<String> conditions = new ArrayList<>();
+        if (!filter.uris().isEmpty()) {
+            conditions.add(column + " IN (:uris)");
+            params.addValue("uris", filter.uris());
+        }
+        if (!filter.prefixes().isEmpty()) {
+            conditions.add(prefixRangesOf(bytewise, filter.prefixes(), params));
+        }
+        return conditions.isEmpty() ? "1 = 0" : "(" + String.join(" OR ", conditions) + ")";
+    }
+
+    private static String prefixRangesOf(String column, List<String> prefixes, MapSqlParameterSource params) {
+        List<String> ranges = new ArrayList<>();
+        for (int i = 0; i < prefixes.size(); i++) {
+            String prefix = prefixes.get(i);
+            String upper = upperBound(prefix);
+            params.addValue("uriFrom" + i, prefix);
+            if (upper == null) {
+                ranges.add(column + " >= :uriFrom" + i);
+            } else {
+                ranges.add("(" + column + " >= :uriFrom" + i + " AND " + column + " < :uriTo" + i + ")");
+                params.addValue("uriTo" + i, upper);
+            }
+        }
+        return "(" + String.join(" OR ", ranges) + ")";
+    }
+
+    // Наименьшая строка больше всех строк с префиксом prefix (по кодовым точкам, как collation "C" в UTF-8);
+    // null, если такой нет
+    private static String upperBound(String prefix) {
+        int end = prefix.length();
+        while (end > 0) {
+            int last = prefix.codePointBefore(end);
+            end -= Character.charCount(last);
+            if (last < Character.MAX_CODE_POINT) {
+                int next = last + 1 == Character.MIN_SURROGATE ? Character.MAX_SURROGATE + 1 : last + 1;
+                return prefix.substring(0, end) + Character.toString(next);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,38 @@
+package ru.practicum.stats.segment;
+
+import ru.practicum.stats.model.HitRow;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+
+// Хит во встроенном хранилище: время в микросекундах UTC, как в журнале хитов.
+// Сегменты отсортированы по (uri, время, id)
+public record HitRecord(String app, String uri, String ip, long micros, long id) {
+
+    public static final Comparator<HitRecord> ORDER = Comparator.comparing(HitRecord::uri)
+            .thenComparingLong(HitRecord::micros)
+            .thenComparingLong(HitRecord::id);
+
+    public LocalDateTime timestamp() {
+        return fromMicros(micros);
+    }
+
+    public HitRow toRow() {
+        return new HitRow(app, uri, ip, timestamp());
+    }
+
+    public static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1000;
+    }
+
+    // Граница диапазона: хиты хранятся с точностью до микросекунды, доли микросекунды округляются вверх
+    public static long ceilMicros(LocalDateTime time) {
+        return toMicros(time) + (time.getNano() % 1000 == 0 ? 0 : 1);
+    }
+
+    public static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1000, ZoneOffset.UTC);
+    }
+}
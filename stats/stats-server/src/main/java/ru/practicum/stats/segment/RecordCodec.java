@@ -0,0 +1,209 @@
+package ru.practicum.stats.segment;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+// Формат блока хитов, общий для сегментов и журнала записи: длина данных (int), CRC32C данных (int), данные.
+// Данные - записи подряд: uri и app - длина общего префикса с предыдущей записью и остаток (varint + UTF-8),
+// ip (varint-длина + UTF-8), время и id - разность с предыдущей записью (zigzag varint).
+// В отсортированном сегменте соседние записи обычно одного uri и app, они занимают по байту
+final class RecordCodec {
+
+    static final int HEADER = 2 * Integer.BYTES;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private RecordCodec() {
+    }
+
+    static final class Encoder {
+
+        private byte[] buffer = new byte[8192];
+        private int size = HEADER;
+        private int records;
+        private String previousUri = "";
+        private byte[] previousUriBytes = EMPTY;
+        private String previousApp = "";
+        private byte[] previousAppBytes = EMPTY;
+        private long previousMicros;
+        private long previousId;
+
+        void add(HitRecord record) {
+            if (!record.uri().equals(previousUri)) {
+                byte[] uri = record.uri().getBytes(StandardCharsets.UTF_8);
+                writeShared(previousUriBytes, uri);
+                previousUri = record.uri();
+                previousUriBytes = uri;
+            } else {
+                writeShared(previousUriBytes, previousUriBytes);
+            }
+            if (!record.app().equals(previousApp)) {
+                byte[] app = record.app().getBytes(StandardCharsets.UTF_8);
+                writeShared(previousAppBytes, app);
+                previousApp = record.app();
+                previousAppBytes = app;
+            } else {
+                writeShared(previousAppBytes, previousAppBytes);
+            }
+            byte[] ip = record.ip().getBytes(StandardCharsets.UTF_8);
+            writeVarint(ip.length);
+            write(ip, 0, ip.length);
+            writeVarint(zigzag(record.micros() - previousMicros));
+            writeVarint(zigzag(record.id() - previousId));
+            previousMicros = record.micros();
+            previousId = record.id();
+            records++;
+        }
+
+        int records() {
+            return records;
+        }
+
+        // Размер блока вместе с заголовком
+        int size() {
+            return size;
+        }
+
+        // Готовый блок с заголовком; после вызова кодировщик начинает новый блок
+        ByteBuffer finish() {
+            int length = size - HEADER;
+            CRC32C crc = new CRC32C();
+            crc.update(buffer, HEADER, length);
+            ByteBuffer block = ByteBuffer.wrap(Arrays.copyOf(buffer, size));
+            block.putInt(0, length).putInt(Integer.BYTES, (int) crc.getValue());
+            reset();
+            return block;
+        }
+
+        private void reset() {
+            size = HEADER;
+            records = 0;
+            previousUri = "";
+            previousUriBytes = EMPTY;
+            previousApp = "";
+            previousAppBytes = EMPTY;
+            previousMicros = 0;
+            previousId = 0;
+        }
+
+        private void writeShared(byte[] previous, byte[] value) {
+            if (previous == value) {
+                writeVarint(value.length);
+                writeVarint(0);
+                return;
+            }
+            int shared = 0;
+            int max = Math.min(previous.length, value.length);
+            while (shared < max && previous[shared] == value[shared]) {
+                shared++;
+            }
+            writeVarint(shared);
+            writeVarint(value.length - shared);
+            write(value, shared, value.length - shared);
+        }
+
+        private void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        private void write(byte[] bytes, int offset, int length) {
+            ensure(length);
+            System.arraycopy(bytes, offset, buffer, size, length);
+            size += length;
+        }
+
+        private void ensure(int length) {
+            if (size + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+            }
+        }
+
+        private static long zigzag(long value) {
+            return value << 1 ^ value >> 63;
+        }
+    }
+
+    static final class Decoder {
+
+        private final ByteBuffer data;
+        private String previousUri = "";
+        private byte[] previousUriBytes = EMPTY;
+        private String previousApp = "";
+        private byte[] previousAppBytes = EMPTY;
+        private long previousMicros;
+        private long previousId;
+
+        // data - данные одного блока без заголовка
+        Decoder(ByteBuffer data) {
+            this.data = data;
+        }
+
+        boolean hasNext() {
+            return data.hasRemaining();
+        }
+
+        HitRecord next() {
+            int shared = (int) readVarint();
+            int suffix = (int) readVarint();
+            if (suffix != 0 || shared != previousUriBytes.length) {
+                previousUriBytes = readShared(previousUriBytes, shared, suffix);
+                previousUri = new String(previousUriBytes, StandardCharsets.UTF_8);
+            }
+            shared = (int) readVarint();
+            suffix = (int) readVarint();
+            if (suffix != 0 || shared != previousAppBytes.length) {
+                previousAppBytes = readShared(previousAppBytes, shared, suffix);
+                previousApp = new String(previousAppBytes, StandardCharsets.UTF_8);
+            }
+            byte[] ip = new byte[(int) readVarint()];
+            data.get(ip);
+            previousMicros += unzigzag(readVarint());
+            previousId += unzigzag(readVarint());
+            return new HitRecord(previousApp, previousUri, new String(ip, StandardCharsets.UTF_8),
+                    previousMicros, previousId);
+        }
+
+        private byte[] readShared(byte[] previous, int shared, int suffix) {
+            byte[] value = Arrays.copyOf(previous, shared + suffix);
+            data.get(value, shared, suffix);
+            return value;
+        }
+
+        private long readVarint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        private static long unzigzag(long value) {
+            return value >>> 1 ^ -(value & 1);
+        }
+    }
+
+    // Данные блока, начинающегося с position; null, если блок обрезан или не сходится контрольная сумма
+    static ByteBuffer readBlock(ByteBuffer source, int position) {
+        if (position + HEADER > source.limit()) {
+            return null;
+        }
+        int length = source.getInt(position);
+        if (length <= 0 || position + HEADER + length > source.limit()) {
+            return null;
+        }
+        ByteBuffer data = source.slice(position + HEADER, length);
+        CRC32C crc = new CRC32C();
+        crc.update(data.duplicate());
+        return (int) crc.getValue() == source.getInt(position + Integer.BYTES) ? data : null;
+    }
+}
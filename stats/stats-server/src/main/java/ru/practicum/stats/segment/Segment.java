@@ -0,0 +1,353 @@
+package ru.practicum.stats.segment;
+
+import ru.practicum.stats.model.UriFilter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Неизменяемый файл хитов, отсортированных по (uri, время, id), отображённый в память целиком.
+// Файл: блоки записей по ~BLOCK_SIZE байт (RecordCodec), разреженный индекс - первый ключ, границы времени
+// и смещение каждого блока, футер. Индекс читается в память при открытии: поиск по (uri, время) - двоичный
+// поиск блока и декодирование от него, блоки вне диапазона времени пропускаются без чтения.
+// Имя файла - диапазон поколений: hits-<first>-<last>.sst, слияние заменяет соседние поколения одним файлом
+final class Segment {
+
+    static final int BLOCK_SIZE = 4096;
+    // Сегменты отображаются одним буфером, слияние не создаёт файлов больше
+    static final long MAX_BYTES = 1L << 30;
+
+    private static final long MAGIC = 0x5354415453534547L;
+    private static final int FOOTER = Long.BYTES + Integer.BYTES + 5 * Long.BYTES;
+    private static final Pattern NAME = Pattern.compile("hits-(\\d{19})-(\\d{19})\\.sst");
+
+    private final Path file;
+    private final long firstGeneration;
+    private final long lastGeneration;
+    private final MappedByteBuffer data;
+    private final long records;
+    private final long maxId;
+    private final long minMicros;
+    private final long maxMicros;
+    private final String[] blockUris;
+    private final long[] blockMicros;
+    private final long[] blockMinMicros;
+    private final long[] blockMaxMicros;
+    private final int[] blockOffsets;
+
+    private Segment(Path file, long firstGeneration, long lastGeneration, MappedByteBuffer data) {
+        this.file = file;
+        this.firstGeneration = firstGeneration;
+        this.lastGeneration = lastGeneration;
+        this.data = data;
+        int footer = data.capacity() - FOOTER;
+        if (footer < 0 || data.getLong(footer + FOOTER - Long.BYTES) != MAGIC) {
+            throw new IllegalStateException("Not a hit segment: " + file);
+        }
+        int indexOffset = (int) data.getLong(footer);
+        int blocks = data.getInt(footer + Long.BYTES);
+        ByteBuffer footerFields = data.slice(footer + Long.BYTES + Integer.BYTES, 4 * Long.BYTES);
+        this.records = footerFields.getLong();
+        this.maxId = footerFields.getLong();
+        this.minMicros = footerFields.getLong();
+        this.maxMicros = footerFields.getLong();
+        this.blockUris = new String[blocks];
+        this.blockMicros = new long[blocks];
+        this.blockMinMicros = new long[blocks];
+        this.blockMaxMicros = new long[blocks];
+        this.blockOffsets = new int[blocks];
+        ByteBuffer index = data.slice(indexOffset, footer - indexOffset);
+        for (int i = 0; i < blocks; i++) {
+            byte[] uri = new byte[index.getShort() & 0xFFFF];
+            index.get(uri);
+            blockUris[i] = new String(uri, StandardCharsets.UTF_8);
+            blockMicros[i] = index.getLong();
+            blockMinMicros[i] = index.getLong();
+            blockMaxMicros[i] = index.getLong();
+            blockOffsets[i] = index.getInt();
+        }
+    }
+
+    static Segment open(Path file) {
+        Matcher name = NAME.matcher(file.getFileName().toString());
+        if (!name.matches()) {
+            throw new IllegalArgumentException("Not a hit segment file name: " + file);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > MAX_BYTES) {
+                throw new IllegalStateException("Hit segment is too large: " + file);
+            }
+            return new Segment(file, Long.parseLong(name.group(1)), Long.parseLong(name.group(2)),
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static boolean isSegmentFile(Path file) {
+        return NAME.matcher(file.getFileName().toString()).matches();
+    }
+
+    static Path path(Path directory, long firstGeneration, long lastGeneration) {
+        return directory.resolve(String.format("hits-%019d-%019d.sst", firstGeneration, lastGeneration));
+    }
+
+    // Пишет отсортированные записи в сегмент поколений [firstGeneration, lastGeneration]: сначала во временный
+    // файл, после force - переименованием, так что после падения сегмент либо целый, либо его нет
+    static Segment write(Path directory, long firstGeneration, long lastGeneration, Iterator<HitRecord> sorted) {
+        Path target = path(directory, firstGeneration, lastGeneration);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+            DataOutputStream index = new DataOutputStream(indexBytes);
+            RecordCodec.Encoder encoder = new RecordCodec.Encoder();
+            long offset = 0;
+            int blocks = 0;
+            long records = 0;
+            long maxId = 0;
+            long minMicros = Long.MAX_VALUE;
+            long maxMicros = Long.MIN_VALUE;
+            long blockMin = Long.MAX_VALUE;
+            long blockMax = Long.MIN_VALUE;
+            while (sorted.hasNext()) {
+                HitRecord record = sorted.next();
+                if (encoder.records() == 0) {
+                    byte[] uri = record.uri().getBytes(StandardCharsets.UTF_8);
+                    index.writeShort(uri.length);
+                    index.write(uri);
+                    index.writeLong(record.micros());
+                }
+                encoder.add(record);
+                blockMin = Math.min(blockMin, record.micros());
+                blockMax = Math.max(blockMax, record.micros());
+                records++;
+                maxId = Math.max(maxId, record.id());
+                if (encoder.size() >= BLOCK_SIZE || !sorted.hasNext()) {
+                    index.writeLong(blockMin);
+                    index.writeLong(blockMax);
+                    index.writeInt((int) offset);
+                    offset += writeFully(channel, encoder.finish());
+                    minMicros = Math.min(minMicros, blockMin);
+                    maxMicros = Math.max(maxMicros, blockMax);
+                    blockMin = Long.MAX_VALUE;
+                    blockMax = Long.MIN_VALUE;
+                    blocks++;
+                }
+            }
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER)
+                    .putLong(offset)
+                    .putInt(blocks)
+                    .putLong(records)
+                    .putLong(maxId)
+                    .putLong(minMicros)
+                    .putLong(maxMicros)
+                    .putLong(MAGIC)
+                    .flip();
+            writeFully(channel, ByteBuffer.wrap(indexBytes.toByteArray()));
+            writeFully(channel, footer);
+            if (channel.size() > MAX_BYTES) {
+                throw new IllegalStateException("Hit segment exceeds " + MAX_BYTES + " bytes: " + target);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return open(target);
+    }
+
+    long firstGeneration() {
+        return firstGeneration;
+    }
+
+    long lastGeneration() {
+        return lastGeneration;
+    }
+
+    long records() {
+        return records;
+    }
+
+    long maxId() {
+        return maxId;
+    }
+
+    long bytes() {
+        return data.capacity();
+    }
+
+    Path file() {
+        return file;
+    }
+
+    // Хиты с временем в [from, to) и uri под фильтром (null - все uri)
+    void scan(long from, long to, UriFilter uris, Consumer<HitRecord> consumer) {
+        if (records == 0 || to <= minMicros || from > maxMicros) {
+            return;
+        }
+        if (uris == null) {
+            for (int block = 0; block < blockUris.length; block++) {
+                if (overlaps(block, from, to)) {
+                    RecordCodec.Decoder decoder = decoder(block);
+                    while (decoder.hasNext()) {
+                        HitRecord record = decoder.next();
+                        if (record.micros() >= from && record.micros() < to) {
+                            consumer.accept(record);
+                        }
+                    }
+                }
+            }
+            return;
+        }
+        for (String prefix : uris.prefixes()) {
+            scanPrefix(prefix, from, to, consumer);
+        }
+        for (String uri : uris.uris()) {
+            if (uris.prefixes().stream().noneMatch(uri::startsWith)) {
+                scanUri(uri, from, to, consumer);
+            }
+        }
+    }
+
+    // Все записи по порядку
+    Iterator<HitRecord> iterator() {
+        return new Iterator<>() {
+
+            private int block;
+            private RecordCodec.Decoder decoder;
+
+            @Override
+            public boolean hasNext() {
+                while (decoder == null || !decoder.hasNext()) {
+                    if (block >= blockUris.length) {
+                        return false;
+                    }
+                    decoder = decoder(block++);
+                }
+                return true;
+            }
+
+            @Override
+            public HitRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return decoder.next();
+            }
+        };
+    }
+
+    private void scanUri(String uri, long from, long to, Consumer<HitRecord> consumer) {
+        for (int block = findBlock(uri, from); block < blockUris.length; block++) {
+            if (blockUris[block].compareTo(uri) > 0) {
+                return;
+            }
+            if (!overlaps(block, from, to)) {
+                continue;
+            }
+            RecordCodec.Decoder decoder = decoder(block);
+            while (decoder.hasNext()) {
+                HitRecord record = decoder.next();
+                int order = record.uri().compareTo(uri);
+                if (order > 0 || order == 0 && record.micros() >= to) {
+                    return;
+                }
+                if (order == 0 && record.micros() >= from) {
+                    consumer.accept(record);
+                }
+            }
+        }
+    }
+
+    // Строки с общим префиксом идут в порядке сортировки подряд
+    private void scanPrefix(String prefix, long from, long to, Consumer<HitRecord> consumer) {
+        for (int block = findBlock(prefix, Long.MIN_VALUE); block < blockUris.length; block++) {
+            String first = blockUris[block];
+            if (!first.startsWith(prefix) && first.compareTo(prefix) > 0) {
+                return;
+            }
+            if (!overlaps(block, from, to)) {
+                continue;
+            }
+            RecordCodec.Decoder decoder = decoder(block);
+            while (decoder.hasNext()) {
+                HitRecord record = decoder.next();
+                if (record.uri().startsWith(prefix)) {
+                    if (record.micros() >= from && record.micros() < to) {
+                        consumer.accept(record);
+                    }
+                } else if (record.uri().compareTo(prefix) > 0) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Последний блок, первый ключ которого меньше (uri, micros): равные ключи могут начинаться в предыдущем блоке
+    private int findBlock(String uri, long micros) {
+        int low = 0;
+        int high = blockUris.length - 1;
+        int found = 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int order = blockUris[middle].compareTo(uri);
+            if (order < 0 || order == 0 && blockMicros[middle] < micros) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    private boolean overlaps(int block, long from, long to) {
+        return blockMinMicros[block] < to && blockMaxMicros[block] >= from;
+    }
+
+    private RecordCodec.Decoder decoder(int block) {
+        ByteBuffer blockData = RecordCodec.readBlock(data, blockOffsets[block]);
+        if (blockData == null) {
+            throw new IllegalStateException("Corrupted block " + block + " in hit segment " + file);
+        }
+        return new RecordCodec.Decoder(blockData);
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return length;
+    }
+
+    static List<Path> list(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files.filter(Segment::isSegmentFile).toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
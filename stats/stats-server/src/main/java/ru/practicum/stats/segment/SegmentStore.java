@@ -0,0 +1,414 @@
+package ru.practicum.stats.segment;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.UriFilter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Встроенное журнально-структурированное хранилище хитов на локальном диске (профиль embedded).
+// Запись: пачка хитов дописывается в журнал текущего поколения и в memtable в памяти. Когда в memtable
+// memtable-hits хитов, начинается новое поколение, а заполненная memtable в фоне сортируется по (uri, время)
+// и сбрасывается в неизменяемый сегмент, после чего её журнал удаляется.
+// Фоновое слияние: merge-factor соседних по поколениям сегментов одного уровня (уровень - порядок числа хитов
+// по основанию merge-factor) сливаются в один, так что сегментов остаётся порядка логарифма от числа хитов.
+// Чтение идёт по снимку состояния: сегменты, сбрасываемые memtable и текущая memtable. Сброс и слияние
+// подменяют снимок целиком, удалённые файлы остаются доступны читателям через отображение в память
+@Component
+@Profile("embedded")
+@Slf4j
+public class SegmentStore {
+
+    private final Path directory;
+    private final int memtableHits;
+    private final int mergeFactor;
+    private final boolean forceOnWrite;
+    private final ExecutorService background = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("stats-segments").daemon().factory());
+    private final Counter flushCounter;
+    private final Counter mergeCounter;
+
+    private volatile State state;
+    // Поля записи, меняются под монитором хранилища
+    private WriteAheadLog writeAheadLog;
+    private long nextId;
+
+    public SegmentStore(@Value("${stats.segments.dir:data/segments}") String directory,
+                        @Value("${stats.segments.memtable-hits:100000}") int memtableHits,
+                        @Value("${stats.segments.merge-factor:4}") int mergeFactor,
+                        @Value("${stats.segments.force-on-write:false}") boolean forceOnWrite,
+                        MeterRegistry meterRegistry) {
+        this.directory = Path.of(directory);
+        this.memtableHits = memtableHits;
+        this.mergeFactor = Math.max(2, mergeFactor);
+        this.forceOnWrite = forceOnWrite;
+        this.flushCounter = Counter.builder("stats.segments.flushes")
+                .description("Memtables flushed to segment files")
+                .register(meterRegistry);
+        this.mergeCounter = Counter.builder("stats.segments.merges")
+                .description("Background segment merges")
+                .register(meterRegistry);
+        Gauge.builder("stats.segments.count", this, store -> store.state.segments().size())
+                .description("Segment files of the embedded hit store")
+                .register(meterRegistry);
+        Gauge.builder("stats.segments.memtable.hits", this, SegmentStore::memtableSize)
+                .description("Hits held in memtables, including those being flushed")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(file -> file.getFileName().toString().endsWith(".tmp")).toList()) {
+                Files.delete(file);
+            }
+        }
+        List<Segment> segments = openSegments();
+        long generation = segments.stream()
+                .mapToLong(Segment::lastGeneration)
+                .max()
+                .orElse(0);
+        long maxId = segments.stream()
+                .mapToLong(Segment::maxId)
+                .max()
+                .orElse(0);
+
+        // Журналы поколений, не успевших попасть в сегмент до остановки
+        List<Path> logs;
+        try (Stream<Path> files = Files.list(directory)) {
+            logs = files.filter(file -> WriteAheadLog.generation(file).isPresent())
+                    .sorted()
+                    .toList();
+        }
+        for (Path file : logs) {
+            long logGeneration = WriteAheadLog.generation(file).getAsLong();
+            generation = Math.max(generation, logGeneration);
+            if (segments.stream().noneMatch(segment -> segment.firstGeneration() <= logGeneration
+                    && logGeneration <= segment.lastGeneration())) {
+                List<HitRecord> records = WriteAheadLog.read(file);
+                if (!records.isEmpty()) {
+                    records.sort(HitRecord.ORDER);
+                    segments.add(Segment.write(directory, logGeneration, logGeneration, records.iterator()));
+                    maxId = Math.max(maxId, records.stream().mapToLong(HitRecord::id).max().orElse(0));
+                    log.info("Recovered {} hits of generation {} from the write-ahead log", records.size(),
+                            logGeneration);
+                }
+            }
+            Files.delete(file);
+        }
+        segments.sort(Comparator.comparingLong(Segment::firstGeneration));
+
+        generation++;
+        writeAheadLog = WriteAheadLog.create(directory, generation, forceOnWrite);
+        nextId = maxId + 1;
+        state = new State(new Memtable(generation), List.of(), List.copyOf(segments));
+        background.execute(this::merge);
+        log.info("Hit segment store opened in {}: {} segments, {} hits",
+                directory.toAbsolutePath(), segments.size(), segments.stream().mapToLong(Segment::records).sum());
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        background.shutdownNow();
+        background.awaitTermination(10, TimeUnit.SECONDS);
+        synchronized (this) {
+            writeAheadLog.close();
+        }
+    }
+
+    // Присваивает хитам id и записывает их; хиты видны чтению сразу после возврата
+    public synchronized List<EndpointHit> append(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return hits;
+        }
+        List<HitRecord> records = new ArrayList<>(hits.size());
+        for (EndpointHit hit : hits) {
+            hit.setId(nextId++);
+            records.add(new HitRecord(hit.getApp(), hit.getUri(), hit.getIp(),
+                    HitRecord.toMicros(hit.getTimestamp()), hit.getId()));
+        }
+        writeAheadLog.append(records);
+        State current = state;
+        current.active().add(records);
+        if (current.active().size() >= memtableHits) {
+            rotate(current);
+        }
+        return hits;
+    }
+
+    // Хиты с временем в [from, to) микросекунд и uri под фильтром (null - все uri), без определённого порядка
+    public void scan(long from, long to, UriFilter uris, Consumer<HitRecord> consumer) {
+        State current = state;
+        for (Segment segment : current.segments()) {
+            segment.scan(from, to, uris, consumer);
+        }
+        for (Memtable memtable : current.flushing()) {
+            memtable.scan(from, to, uris, consumer);
+        }
+        current.active().scan(from, to, uris, consumer);
+    }
+
+    // Все хиты, сегменты читаются лениво
+    public Stream<HitRecord> stream() {
+        State current = state;
+        Stream<HitRecord> segments = current.segments().stream()
+                .flatMap(segment -> StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(segment.iterator(), Spliterator.ORDERED), false));
+        Stream<HitRecord> memtables = Stream.concat(current.flushing().stream(), Stream.of(current.active()))
+                .flatMap(memtable -> memtable.snapshot().stream());
+        return Stream.concat(segments, memtables);
+    }
+
+    private void rotate(State current) {
+        Memtable full = current.active();
+        writeAheadLog.close();
+        long generation = full.generation() + 1;
+        writeAheadLog = WriteAheadLog.create(directory, generation, forceOnWrite);
+        state = new State(new Memtable(generation), append(current.flushing(), full), current.segments());
+        background.execute(() -> flush(full));
+    }
+
+    private void flush(Memtable memtable) {
+        try {
+            List<HitRecord> records = memtable.snapshot();
+            records.sort(HitRecord.ORDER);
+            Segment segment = Segment.write(directory, memtable.generation(), memtable.generation(),
+                    records.iterator());
+            synchronized (this) {
+                State current = state;
+                List<Memtable> flushing = new ArrayList<>(current.flushing());
+                flushing.remove(memtable);
+                state = new State(current.active(), List.copyOf(flushing), append(current.segments(), segment));
+            }
+            Files.deleteIfExists(WriteAheadLog.path(directory, memtable.generation()));
+            flushCounter.increment();
+            log.debug("Flushed {} hits of generation {} to {}", records.size(), memtable.generation(),
+                    segment.file().getFileName());
+        } catch (IOException | RuntimeException e) {
+            // memtable остаётся в памяти и доступна чтению, журнал поколения перечитается при старте
+            log.error("Could not flush generation {} to a segment", memtable.generation(), e);
+            return;
+        }
+        merge();
+    }
+
+    private void merge() {
+        List<Segment> run;
+        while ((run = findMergeRun(state.segments())) != null) {
+            long startedAt = System.currentTimeMillis();
+            Segment merged;
+            try {
+                merged = Segment.write(directory, run.get(0).firstGeneration(),
+                        run.get(run.size() - 1).lastGeneration(), new MergingIterator(run));
+            } catch (RuntimeException e) {
+                log.error("Could not merge segments {}", run.stream().map(Segment::file).toList(), e);
+                return;
+            }
+            synchronized (this) {
+                List<Segment> segments = new ArrayList<>(state.segments());
+                int position = segments.indexOf(run.get(0));
+                segments.removeAll(run);
+                segments.add(position, merged);
+                state = new State(state.active(), state.flushing(), List.copyOf(segments));
+            }
+            for (Segment segment : run) {
+                try {
+                    Files.deleteIfExists(segment.file());
+                } catch (IOException e) {
+                    log.warn("Could not delete merged segment {}", segment.file(), e);
+                }
+            }
+            mergeCounter.increment();
+            log.info("Merged {} segments into {} ({} hits) in {} ms", run.size(), merged.file().getFileName(),
+                    merged.records(), System.currentTimeMillis() - startedAt);
+        }
+    }
+
+    // Первые merge-factor подряд идущих сегментов одного уровня с соседними поколениями; null - сливать нечего
+    private List<Segment> findMergeRun(List<Segment> segments) {
+        int start = 0;
+        for (int i = 1; i <= segments.size(); i++) {
+            boolean continues = i < segments.size()
+                    && level(segments.get(i)) == level(segments.get(start))
+                    && segments.get(i).firstGeneration() == segments.get(i - 1).lastGeneration() + 1;
+            if (continues && i - start + 1 == mergeFactor) {
+                List<Segment> run = segments.subList(start, i + 1);
+                if (run.stream().mapToLong(Segment::bytes).sum() <= Segment.MAX_BYTES) {
+                    return List.copyOf(run);
+                }
+                start++;
+            } else if (!continues) {
+                start = i;
+            }
+        }
+        return null;
+    }
+
+    private int level(Segment segment) {
+        int level = 0;
+        for (long size = (long) memtableHits * mergeFactor; segment.records() >= size; size *= mergeFactor) {
+            level++;
+        }
+        return level;
+    }
+
+    private List<Segment> openSegments() {
+        // Слияние, прерванное после переименования результата, оставляет и его, и исходные сегменты
+        List<Segment> segments = new ArrayList<>();
+        List<Segment> opened = Segment.list(directory).stream()
+                .map(Segment::open)
+                .sorted(Comparator.comparingLong(Segment::firstGeneration)
+                        .thenComparing(Comparator.comparingLong(Segment::lastGeneration).reversed()))
+                .toList();
+        long covered = 0;
+        for (Segment segment : opened) {
+            if (segment.lastGeneration() <= covered) {
+                try {
+                    Files.delete(segment.file());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                log.info("Deleted segment {} replaced by a merge", segment.file().getFileName());
+                continue;
+            }
+            segments.add(segment);
+            covered = segment.lastGeneration();
+        }
+        return segments;
+    }
+
+    private long memtableSize() {
+        State current = state;
+        return current.active().size() + current.flushing().stream().mapToLong(Memtable::size).sum();
+    }
+
+    private static <T> List<T> append(List<T> list, T element) {
+        List<T> result = new ArrayList<>(list);
+        result.add(element);
+        return List.copyOf(result);
+    }
+
+    private record State(Memtable active, List<Memtable> flushing, List<Segment> segments) {
+    }
+
+    // Хиты поколения в порядке записи. После смены поколения не меняется
+    private static final class Memtable {
+
+        private final long generation;
+        private final List<HitRecord> records = new ArrayList<>();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        Memtable(long generation) {
+            this.generation = generation;
+        }
+
+        long generation() {
+            return generation;
+        }
+
+        void add(List<HitRecord> hits) {
+            lock.writeLock().lock();
+            try {
+                records.addAll(hits);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return records.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void scan(long from, long to, UriFilter uris, Consumer<HitRecord> consumer) {
+            lock.readLock().lock();
+            try {
+                for (HitRecord record : records) {
+                    if (record.micros() >= from && record.micros() < to
+                            && (uris == null || uris.matches(record.uri()))) {
+                        consumer.accept(record);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        List<HitRecord> snapshot() {
+            lock.readLock().lock();
+            try {
+                return new ArrayList<>(records);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    // Слияние отсортированных сегментов в один отсортированный поток
+    private static final class MergingIterator implements Iterator<HitRecord> {
+
+        private final PriorityQueue<Head> heads = new PriorityQueue<>(
+                Comparator.comparing(Head::record, HitRecord.ORDER));
+
+        MergingIterator(List<Segment> segments) {
+            for (Segment segment : segments) {
+                Iterator<HitRecord> records = segment.iterator();
+                if (records.hasNext()) {
+                    heads.add(new Head(records.next(), records));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public HitRecord next() {
+            Head head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            if (head.rest().hasNext()) {
+                heads.add(new Head(head.rest().next(), head.rest()));
+            }
+            return head.record();
+        }
+
+        private record Head(HitRecord record, Iterator<HitRecord> rest) {
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ru.practicum.stats.segment;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Транзакции встроенного хранилища пустые: записанные хиты видны сразу и не откатываются.
+// Менеджер нужен ради синхронизации транзакций: индексы и кэш результатов получают хиты
+// через @TransactionalEventListener после коммита, как и с PostgreSQL
+@Component
+@Profile("embedded")
+public class SegmentTransactionManager extends AbstractPlatformTransactionManager {
+
+    @Override
+    protected Object doGetTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    @Override
+    protected boolean isExistingTransaction(Object transaction) {
+        return (Boolean) transaction;
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+    }
+
+    @Override
+    protected Object doSuspend(Object transaction) {
+        return null;
+    }
+
+    @Override
+    protected void doResume(Object transaction, Object suspendedResources) {
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+    }
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+    }
+}
@@ -0,0 +1,95 @@
+package ru.practicum.stats.segment;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Журнал записи одного поколения memtable: каждая пачка хитов - блок RecordCodec в конце файла.
+// Файл удаляется, когда поколение сброшено в сегмент; при старте несброшенные журналы перечитываются
+// до первого обрезанного или повреждённого блока
+final class WriteAheadLog implements AutoCloseable {
+
+    private static final Pattern NAME = Pattern.compile("hits-(\\d{19})\\.wal");
+
+    private final FileChannel channel;
+    private final boolean forceOnWrite;
+
+    private WriteAheadLog(FileChannel channel, boolean forceOnWrite) {
+        this.channel = channel;
+        this.forceOnWrite = forceOnWrite;
+    }
+
+    static WriteAheadLog create(Path directory, long generation, boolean forceOnWrite) {
+        Path file = path(directory, generation);
+        try {
+            return new WriteAheadLog(FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE), forceOnWrite);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Хиты считаются принятыми после возврата: они в page cache и переживут падение процесса,
+    // с force-on-write=true - и падение ОС
+    void append(List<HitRecord> records) {
+        RecordCodec.Encoder encoder = new RecordCodec.Encoder();
+        records.forEach(encoder::add);
+        ByteBuffer block = encoder.finish();
+        try {
+            while (block.hasRemaining()) {
+                channel.write(block);
+            }
+            if (forceOnWrite) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static List<HitRecord> read(Path file) {
+        List<HitRecord> records = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int position = 0;
+            ByteBuffer block;
+            while ((block = RecordCodec.readBlock(data, position)) != null) {
+                position += RecordCodec.HEADER + block.remaining();
+                RecordCodec.Decoder decoder = new RecordCodec.Decoder(block);
+                while (decoder.hasNext()) {
+                    records.add(decoder.next());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return records;
+    }
+
+    static Path path(Path directory, long generation) {
+        return directory.resolve(String.format("hits-%019d.wal", generation));
+    }
+
+    static OptionalLong generation(Path file) {
+        Matcher name = NAME.matcher(file.getFileName().toString());
+        return name.matches() ? OptionalLong.of(Long.parseLong(name.group(1))) : OptionalLong.empty();
+    }
+}
@@ -0,0 +1,133 @@
+package ru.practicum.stats.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.model.DailyVisitors;
+import ru.practicum.stats.model.HitRow;
+import ru.practicum.stats.repository.HitCompactionRepository;
+import ru.practicum.stats.repository.SqlStatsRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Уплотнение сырых хитов старше after-days дней (0 - не уплотнять). Граница уплотнения - начало дня:
+// неуникальные просмотры до неё читаются из роллапов с точностью до минуты, уникальные посетители -
+// из битмапов по дням (endpoint_hits_daily_visitors). Сырые хиты удаляются пачками по chunk-size строк,
+// каждая пачка в своей короткой транзакции вместе с переносом её посетителей в битмапы.
+// Хиты, пришедшие задним числом до границы, уплотняются при следующем запуске.
+// Во встроенном хранилище (профиль embedded) таблиц уплотнения нет и уплотнение недоступно.
+@Service
+@Slf4j
+public class HitCompactionService {
+
+    private final Optional<SqlStatsRepository> sqlStatsRepository;
+    private final Optional<HitCompactionRepository> compactionRepository;
+    private final Optional<StatsResultCache> resultCache;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter compactedCounter;
+    private final int afterDays;
+    private final int chunkSize;
+    private final boolean supported;
+    private volatile LocalDateTime compactedBefore;
+
+    public HitCompactionService(Optional<SqlStatsRepository> sqlStatsRepository,
+                                Optional<HitCompactionRepository> compactionRepository,
+                                Optional<StatsResultCache> resultCache,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${stats.compaction.after-days:0}") int afterDays,
+                                @Value("${stats.compaction.chunk-size:5000}") int chunkSize,
+                                @Value("${stats.rollups.enabled:true}") boolean rollupsEnabled,
+                                @Value("${stats.unique-index.enabled:false}") boolean uniqueIndexEnabled) {
+        this.sqlStatsRepository = sqlStatsRepository;
+        this.compactionRepository = compactionRepository;
+        this.resultCache = resultCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.compactedCounter = Counter.builder("stats.compaction.hits")
+                .description("Raw hits folded into rollups and daily visitor bitmaps")
+                .register(meterRegistry);
+        this.afterDays = afterDays;
+        this.chunkSize = chunkSize;
+        // Без роллапов и индекса уникальных посетителей уплотнённые дни нечем читать
+        this.supported = rollupsEnabled && uniqueIndexEnabled && compactionRepository.isPresent()
+                && sqlStatsRepository.isPresent();
+    }
+
+    @PostConstruct
+    public void init() {
+        compactedBefore = compactionRepository.flatMap(HitCompactionRepository::findCompactedBefore).orElse(null);
+        if (afterDays > 0 && !supported) {
+            log.warn("Hit compaction requires a database, stats.rollups.enabled and stats.unique-index.enabled, "
+                    + "it is disabled");
+        }
+        if (compactedBefore != null) {
+            log.info("Hits before {} are compacted", compactedBefore);
+        }
+    }
+
+    // Хиты до time уплотнены: сырых строк для них может не быть
+    public boolean isCompacted(LocalDateTime time) {
+        LocalDateTime boundary = compactedBefore;
+        return boundary != null && time.isBefore(boundary);
+    }
+
+    public Optional<LocalDateTime> getCompactedBefore() {
+        return Optional.ofNullable(compactedBefore);
+    }
+
+    @Scheduled(cron = "${stats.compaction.cron:0 30 3 * * *}")
+    public void compact() {
+        if (afterDays <= 0 || !supported) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDate.now().minusDays(afterDays).atStartOfDay();
+        // Граница сдвигается до удаления строк: запросы сразу перестают читать удаляемые сырые хиты,
+        // а индексы в памяти уже содержат всех посетителей
+        if (compactedBefore == null || cutoff.isAfter(compactedBefore)) {
+            compactionRepository.orElseThrow().saveCompactedBefore(cutoff);
+            compactedBefore = cutoff;
+            resultCache.ifPresent(StatsResultCache::invalidateAll);
+        }
+        long startedAt = System.currentTimeMillis();
+        long rows = 0;
+        int chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> compactChunk(compactedBefore));
+            rows += chunk;
+            compactedCounter.increment(chunk);
+        } while (chunk == chunkSize);
+        if (rows > 0) {
+            log.info("Compacted {} hits before {} in {} ms", rows, compactedBefore,
+                    System.currentTimeMillis() - startedAt);
+        }
+    }
+
+    private int compactChunk(LocalDateTime before) {
+        List<HitRow> hits = sqlStatsRepository.orElseThrow().deleteHitsBefore(before, chunkSize);
+        Map<Key, DailyVisitors> visitors = new HashMap<>();
+        for (HitRow hit : hits) {
+            Key key = new Key(hit.timestamp().toLocalDate(), hit.app(), hit.uri());
+            visitors.computeIfAbsent(key, k -> new DailyVisitors(k.day(), k.app(), k.uri())).add(hit.ip());
+        }
+        HitCompactionRepository repository = compactionRepository.orElseThrow();
+        for (DailyVisitors saved : repository.findForUpdate(visitors.values())) {
+            visitors.get(new Key(saved.getDay(), saved.getApp(), saved.getUri())).merge(saved);
+        }
+        repository.saveAll(visitors.values());
+        return hits.size();
+    }
+
+    private record Key(LocalDate day, String app, String uri) {
+    }
+}
@@ -0,0 +1,166 @@
+package ru.practicum.stats.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.journal.HitJournal;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.JournalPosition;
+import ru.practicum.stats.repository.JournalPositionRepository;
+
+import java.util.List;
+
+// Переносит хиты из журнала в БД большими пачками. Позиция журнала сохраняется в той же транзакции,
+// что и хиты, поэтому после рестарта перечитывается ровно то, что не успело попасть в БД.
+// Пачку, которую БД отклонила, загрузчик перечитывает по одной записи, сохраняя позицию после каждой
+@Component
+@ConditionalOnProperty(name = "stats.ingest.mode", havingValue = "journal")
+@Slf4j
+public class HitJournalLoader {
+
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private final HitJournal journal;
+    private final HitWriter hitWriter;
+    private final JournalPositionRepository positionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final Counter loadedCounter;
+    private final Counter rejectedCounter;
+    private final Thread loaderThread;
+
+    private volatile boolean running = true;
+    private JournalPosition position;
+
+    public HitJournalLoader(HitJournal journal,
+                            HitWriter hitWriter,
+                            JournalPositionRepository positionRepository,
+                            TransactionTemplate transactionTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${stats.journal.batch-size:5000}") int batchSize,
+                            @Value("${stats.journal.poll-interval-ms:50}") long pollIntervalMs) {
+        this.journal = journal;
+        this.hitWriter = hitWriter;
+        this.positionRepository = positionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.pollIntervalMs = pollIntervalMs;
+        this.loadedCounter = Counter.builder("stats.journal.loaded")
+                .description("Journaled hits written to the database")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("stats.journal.rejected")
+                .description("Journaled hits dropped because the database rejected them")
+                .register(meterRegistry);
+        Gauge.builder("stats.journal.segments", journal, HitJournal::segmentCount)
+                .description("Journal segment files on disk")
+                .register(meterRegistry);
+        this.loaderThread = new Thread(this::runLoader, "journal-loader");
+    }
+
+    // Не раньше готовности приложения: слушатели HitsSavedEvent (индексы, кэш) регистрируются
+    // только после создания всех бинов, события от записи во время старта были бы потеряны
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        position = positionRepository.find().orElseGet(journal::start);
+        journal.deleteBefore(position.segment());
+        log.info("Starting journal loader from segment {} offset {}", position.segment(), position.offset());
+        loaderThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (!loaderThread.isAlive()) {
+            return;
+        }
+        loaderThread.join();
+        log.info("Journal loader stopped at segment {} offset {}", position.segment(), position.offset());
+    }
+
+    private void runLoader() {
+        while (running) {
+            try {
+                if (!loadNextBatch()) {
+                    sleep(pollIntervalMs);
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to load journaled hits, retrying in {} ms", RETRY_DELAY_MS, e);
+                sleep(RETRY_DELAY_MS);
+            }
+        }
+    }
+
+    // false, если новых хитов в журнале нет
+    private boolean loadNextBatch() {
+        HitJournal.Batch batch = journal.read(position, batchSize);
+        if (batch.next().equals(position)) {
+            return false;
+        }
+        List<EndpointHit> hits = batch.hits();
+        JournalPosition next = batch.next();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!hits.isEmpty()) {
+                    hitWriter.write(hits);
+                }
+                positionRepository.save(batch.next());
+            });
+            loadedCounter.increment(hits.size());
+        } catch (DataIntegrityViolationException e) {
+            log.error("Batch of {} journaled hits rejected by database, writing one by one", hits.size(), e);
+            next = loadOneByOne(hits.size());
+        }
+        if (next.segment() != position.segment()) {
+            journal.deleteBefore(next.segment());
+        }
+        position = next;
+        return !hits.isEmpty();
+    }
+
+    // Читает заново count записей с текущей позиции; каждая запись и позиция за ней фиксируются вместе,
+    // сбой посередине не задваивает уже записанные хиты. Возвращает позицию после последней записи
+    private JournalPosition loadOneByOne(int count) {
+        JournalPosition current = position;
+        for (int i = 0; i < count; i++) {
+            HitJournal.Batch single = journal.read(current, 1);
+            if (single.hits().isEmpty()) {
+                break;
+            }
+            loadSingle(single.hits().get(0), single.next());
+            current = single.next();
+        }
+        return current;
+    }
+
+    private void loadSingle(EndpointHit hit, JournalPosition next) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                hitWriter.write(List.of(hit));
+                positionRepository.save(next);
+            });
+            loadedCounter.increment();
+        } catch (DataIntegrityViolationException e) {
+            log.error("Dropping journaled hit rejected by database: {}", hit, e);
+            rejectedCounter.increment();
+            positionRepository.save(next);
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            log.warn("Journal loader interrupted while waiting");
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ru.practicum.stats.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.stats.index.HitIndexLoader;
+import ru.practicum.stats.model.RollupGranularity;
+import ru.practicum.stats.repository.HitCompactionRepository;
+import ru.practicum.stats.repository.HitPartitionRepository;
+import ru.practicum.stats.repository.HitRollupRepository;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+
+// Ведёт помесячные секции таблиц хитов (обычной и компактной): держит созданными секции на months-ahead месяцев вперёд
+// и удаляет целиком секции старше retention-months (0 - хранить всё).
+// Роллапы и посетители уплотнённых дней старше retention-months удаляются вместе с секциями,
+// чтобы /stats за удалённые месяцы не отдавал хиты без уникальных посетителей.
+@Service
+@Profile("!embedded")
+@Slf4j
+public class HitPartitionService {
+
+    private static final List<String> TABLES = List.of("endpoint_hits", "endpoint_hits_compact");
+
+    private final HitPartitionRepository partitionRepository;
+    private final HitIndexLoader hitIndexLoader;
+    private final HitCompactionRepository compactionRepository;
+    private final HitRollupRepository rollupRepository;
+    private final Optional<StatsResultCache> resultCache;
+    private final int monthsAhead;
+    private final int retentionMonths;
+
+    public HitPartitionService(HitPartitionRepository partitionRepository,
+                               HitIndexLoader hitIndexLoader,
+                               HitCompactionRepository compactionRepository,
+                               HitRollupRepository rollupRepository,
+                               Optional<StatsResultCache> resultCache,
+                               @Value("${stats.partitions.months-ahead:3}") int monthsAhead,
+                               @Value("${stats.partitions.retention-months:0}") int retentionMonths) {
+        this.partitionRepository = partitionRepository;
+        this.hitIndexLoader = hitIndexLoader;
+        this.compactionRepository = compactionRepository;
+        this.rollupRepository = rollupRepository;
+        this.resultCache = resultCache;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!partitionRepository.isPartitioned()) {
+            log.info("Migrating endpoint_hits to a partitioned table");
+            long rows = partitionRepository.migrateLegacyTable();
+            log.info("Migrated {} hits to the partitioned endpoint_hits table", rows);
+        }
+        TABLES.forEach(partitionRepository::createDefaultPartition);
+        maintain();
+    }
+
+    @Scheduled(cron = "${stats.partitions.cron:0 0 3 * * *}")
+    public void maintain() {
+        YearMonth current = YearMonth.now();
+        boolean dropped = false;
+        for (String table : TABLES) {
+            dropped |= maintain(table, current);
+        }
+        if (retentionMonths > 0) {
+            LocalDate oldestKept = current.minusMonths(retentionMonths).atDay(1);
+            hitIndexLoader.evictBefore(oldestKept.atStartOfDay());
+            dropped |= compactionRepository.deleteBefore(oldestKept) > 0;
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                dropped |= rollupRepository.deleteBefore(granularity, oldestKept.atStartOfDay()) > 0;
+            }
+        }
+        if (dropped) {
+            resultCache.ifPresent(StatsResultCache::invalidateAll);
+        }
+    }
+
+    // true, если по retention удалена хотя бы одна секция
+    private boolean maintain(String table, YearMonth current) {
+        TreeSet<YearMonth> required = new TreeSet<>(partitionRepository.findMonthsInDefaultPartition(table));
+        for (int i = 0; i <= monthsAhead; i++) {
+            required.add(current.plusMonths(i));
+        }
+        List<YearMonth> existing = partitionRepository.findPartitions(table);
+        required.removeAll(existing);
+        for (YearMonth month : required) {
+            partitionRepository.createPartition(table, month);
+            log.info("Created {} partition for {}", table, month);
+        }
+
+        boolean dropped = false;
+        if (retentionMonths > 0) {
+            YearMonth oldestKept = current.minusMonths(retentionMonths);
+            for (YearMonth month : existing) {
+                if (month.isBefore(oldestKept)) {
+                    partitionRepository.dropPartition(table, month);
+                    dropped = true;
+                    log.info("Dropped {} partition for {} (retention {} months)", table, month, retentionMonths);
+                }
+            }
+        }
+        return dropped;
+    }
+}
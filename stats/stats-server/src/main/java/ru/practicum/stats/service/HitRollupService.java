@@ -0,0 +1,175 @@
+package ru.practicum.stats.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.practicum.dto.ViewStatsBucketDto;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.RollupGranularity;
+import ru.practicum.stats.model.RollupKey;
+import ru.practicum.stats.model.RollupSegment;
+import ru.practicum.stats.model.UriFilter;
+import ru.practicum.stats.repository.HitRollupRepository;
+import ru.practicum.stats.repository.SqlStatsRepository;
+import ru.practicum.stats.repository.StatsRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Неуникальная статистика по роллапам: полные бакеты берутся из самой крупной подходящей
+// гранулярности, сырые хиты читаются только для неполных минут по краям диапазона.
+// До границы уплотнения сырых хитов нет, хиты минуты относятся к её началу.
+// Длинный дневной сегмент делится по месяцам, сегменты читаются параллельно (RangeSplitExecutor)
+@Service
+@ConditionalOnProperty(name = "stats.rollups.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class HitRollupService {
+
+    private final HitRollupRepository rollupRepository;
+    private final StatsRepository statsRepository;
+    private final SqlStatsRepository sqlStatsRepository;
+    private final HitCompactionService compactionService;
+    private final RangeSplitExecutor rangeSplitExecutor;
+
+    @PostConstruct
+    public void init() {
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            if (rollupRepository.isEmpty(granularity)) {
+                compactionService.getCompactedBefore().ifPresent(boundary -> log.warn(
+                        "Rebuilding {} rollup: hits before {} are compacted and will be missing", granularity, boundary));
+                int rows = rollupRepository.rebuild(granularity, sqlStatsRepository.getHitsRelation());
+                log.info("Rebuilt {} rollup from raw hits: {} buckets", granularity, rows);
+            }
+        }
+    }
+
+    public void record(List<EndpointHit> hits) {
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            // Сортировка ключей задаёт общий порядок блокировок строк для параллельных транзакций
+            Map<RollupKey, Long> counts = new TreeMap<>();
+            for (EndpointHit hit : hits) {
+                RollupKey key = new RollupKey(granularity.floor(hit.getTimestamp()), hit.getApp(), hit.getUri());
+                counts.merge(key, 1L, Long::sum);
+            }
+            rollupRepository.increment(granularity, counts);
+        }
+    }
+
+    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, UriFilter uris) {
+        List<ViewStatsDto> result = new ArrayList<>();
+        sum(plan(start, end), uris).forEach((app, byUri) ->
+                byUri.forEach((uri, count) -> result.add(new ViewStatsDto(app, uri, count))));
+        result.sort(Comparator.comparing(ViewStatsDto::getHits).reversed());
+        return result;
+    }
+
+    // Временной ряд: полные бакеты читаются из роллапа своей гранулярности,
+    // неполные крайние бакеты досчитываются по более мелким роллапам и сырым хитам
+    public List<ViewStatsBucketDto> getTimeSeries(LocalDateTime start,
+                                                  LocalDateTime end,
+                                                  UriFilter uris,
+                                                  RollupGranularity granularity) {
+        LocalDateTime endExclusive = exclusive(end);
+        LocalDateTime low = granularity.ceil(start);
+        LocalDateTime high = granularity.floor(endExclusive);
+        List<ViewStatsBucketDto> result = new ArrayList<>();
+        if (low.isBefore(high)) {
+            result.addAll(rollupRepository.getBuckets(granularity, low, high, uris));
+        }
+        LocalDateTime leftEnd = low.isBefore(endExclusive) ? low : endExclusive;
+        addPartialBucket(granularity, start, leftEnd, uris, result);
+        LocalDateTime rightStart = high.isAfter(low) ? high : low;
+        addPartialBucket(granularity, rightStart, endExclusive, uris, result);
+        return result;
+    }
+
+    // Закрытый интервал [start, end] -> не больше одного дневного, двух часовых, двух минутных и двух сырых сегментов
+    public List<RollupSegment> plan(LocalDateTime start, LocalDateTime end) {
+        List<RollupSegment> segments = new ArrayList<>();
+        decompose(start, exclusive(end), RollupGranularity.DAY, segments);
+        return segments;
+    }
+
+    private void addPartialBucket(RollupGranularity granularity,
+                                  LocalDateTime from,
+                                  LocalDateTime to,
+                                  UriFilter uris,
+                                  List<ViewStatsBucketDto> result) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        List<RollupSegment> segments = new ArrayList<>();
+        decompose(from, to, granularity.finer(), segments);
+        LocalDateTime bucket = granularity.floor(from);
+        sum(segments, uris).forEach((app, byUri) -> byUri.forEach((uri, count) ->
+                result.add(new ViewStatsBucketDto(app, uri, bucket, count, null))));
+    }
+
+    private Map<String, Map<String, Long>> sum(List<RollupSegment> segments, UriFilter uris) {
+        List<RollupSegment> parts = new ArrayList<>();
+        for (RollupSegment segment : segments) {
+            parts.addAll(segment.granularity() == RollupGranularity.DAY
+                    ? rangeSplitExecutor.split(segment)
+                    : List.of(segment));
+        }
+        // Короткие сегменты параллельно не читаются: выигрыш меньше затрат на передачу в пул
+        List<List<ViewStatsDto>> results = parts.size() > segments.size()
+                ? rangeSplitExecutor.map(parts, part -> read(part, uris))
+                : parts.stream().map(part -> read(part, uris)).toList();
+        Map<String, Map<String, Long>> hits = new HashMap<>();
+        for (List<ViewStatsDto> rows : results) {
+            for (ViewStatsDto row : rows) {
+                hits.computeIfAbsent(row.getApp(), app -> new HashMap<>())
+                        .merge(row.getUri(), row.getHits(), Long::sum);
+            }
+        }
+        return hits;
+    }
+
+    private List<ViewStatsDto> read(RollupSegment segment, UriFilter uris) {
+        if (!segment.isRaw()) {
+            return rollupRepository.getStats(segment.granularity(), segment.from(), segment.to(), uris);
+        }
+        if (compactionService.isCompacted(segment.from())) {
+            // Сырой сегмент не длиннее минуты, а граница уплотнения - начало дня
+            return rollupRepository.getStats(RollupGranularity.MINUTE, segment.from(), segment.to(), uris);
+        }
+        return statsRepository.getStatsInRange(segment.from(), segment.to(), uris);
+    }
+
+    private static LocalDateTime exclusive(LocalDateTime end) {
+        return end.truncatedTo(ChronoUnit.MICROS).plus(1, ChronoUnit.MICROS);
+    }
+
+    private void decompose(LocalDateTime from,
+                           LocalDateTime to,
+                           RollupGranularity granularity,
+                           List<RollupSegment> segments) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (granularity == null) {
+            segments.add(new RollupSegment(null, from, to));
+            return;
+        }
+        LocalDateTime low = granularity.ceil(from);
+        LocalDateTime high = granularity.floor(to);
+        if (low.isBefore(high)) {
+            decompose(from, low, granularity.finer(), segments);
+            segments.add(new RollupSegment(granularity, low, high));
+            decompose(high, to, granularity.finer(), segments);
+        } else {
+            decompose(from, to, granularity.finer(), segments);
+        }
+    }
+}
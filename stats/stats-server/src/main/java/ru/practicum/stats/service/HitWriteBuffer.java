@@ -0,0 +1,225 @@
+package ru.practicum.stats.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.model.EndpointHit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Component
+@ConditionalOnProperty(name = "stats.ingest.mode", havingValue = "async")
+@Slf4j
+public class HitWriteBuffer {
+
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private final HitWriter hitWriter;
+    private final BlockingQueue<EndpointHit> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long offerTimeoutMs;
+    private final int shutdownRetries;
+    private final Timer flushTimer;
+    private final Counter flushedCounter;
+    private final Counter rejectedCounter;
+    private final Counter droppedCounter;
+    private final Thread writerThread;
+    // offer держит блокировку на чтение, остановка - на запись: после stop() ни один принятый хит
+    // не окажется в очереди позже, чем писатель увидит running=false
+    private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+
+    private volatile boolean running = true;
+
+    public HitWriteBuffer(HitWriter hitWriter,
+                          MeterRegistry meterRegistry,
+                          @Value("${stats.ingest.buffer.capacity:100000}") int capacity,
+                          @Value("${stats.ingest.buffer.batch-size:1000}") int batchSize,
+                          @Value("${stats.ingest.buffer.flush-interval-ms:200}") long flushIntervalMs,
+                          @Value("${stats.ingest.buffer.offer-timeout-ms:5}") long offerTimeoutMs,
+                          @Value("${stats.ingest.buffer.shutdown-retries:3}") int shutdownRetries) {
+        this.hitWriter = hitWriter;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.shutdownRetries = shutdownRetries;
+        this.flushTimer = Timer.builder("stats.ingest.flush")
+                .description("Time to write one batch of buffered hits")
+                .register(meterRegistry);
+        this.flushedCounter = Counter.builder("stats.ingest.flushed")
+                .description("Hits written by the write-behind buffer")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("stats.ingest.rejected")
+                .description("Buffered hits dropped because the database rejected them")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("stats.ingest.dropped")
+                .description("Buffered hits dropped because the database was unavailable on shutdown")
+                .register(meterRegistry);
+        Gauge.builder("stats.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Hits waiting in the write-behind buffer")
+                .register(meterRegistry);
+        this.writerThread = new Thread(this::runWriter, "hit-writer");
+    }
+
+    @PostConstruct
+    public void start() {
+        log.info("Starting write-behind hit buffer: capacity={}, batchSize={}, flushInterval={}ms",
+                queue.remainingCapacity(), batchSize, flushIntervalMs);
+        writerThread.start();
+    }
+
+    /**
+     * Ставит хит в очередь. Возвращает false, если буфер переполнен или остановлен —
+     * тогда вызывающий должен записать хит синхронно.
+     */
+    public boolean offer(EndpointHit hit) {
+        runningLock.readLock().lock();
+        try {
+            return running && queue.offer(hit, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            runningLock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        log.info("Stopping write-behind hit buffer, {} hits to drain", queue.size());
+        close();
+        writerThread.join();
+        log.info("Write-behind hit buffer drained");
+    }
+
+    private void close() {
+        runningLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            runningLock.writeLock().unlock();
+        }
+    }
+
+    // Если писатель всё же упал, буфер закрывается: новые хиты пишутся синхронно, а не копятся без записи
+    private void runWriter() {
+        List<EndpointHit> batch = new ArrayList<>(batchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                try {
+                    collectBatch(batch);
+                } catch (InterruptedException e) {
+                    log.warn("Hit writer interrupted while collecting a batch");
+                }
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                    batch.clear();
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            log.error("Hit writer failed", e);
+            throw e;
+        } finally {
+            close();
+            batch.addAll(queue);
+            if (!batch.isEmpty()) {
+                log.error("Hit writer stopped, dropping {} buffered hits", batch.size());
+                droppedCounter.increment(batch.size());
+            }
+        }
+    }
+
+    private void collectBatch(List<EndpointHit> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                return;
+            }
+            EndpointHit hit = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (hit != null) {
+                batch.add(hit);
+            }
+        }
+    }
+
+    // Принятые хиты не теряем: при сбое БД пачку повторяем, пока запись не пройдёт.
+    // После остановки попыток не больше shutdownRetries, иначе при недоступной БД JVM не завершится
+    private void flush(List<EndpointHit> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                flushTimer.record(() -> hitWriter.write(batch));
+                flushedCounter.increment(batch.size());
+                return;
+            } catch (DataIntegrityViolationException e) {
+                log.error("Batch of {} buffered hits rejected by database, writing one by one", batch.size(), e);
+                batch.forEach(this::flushSingle);
+                return;
+            } catch (RuntimeException e) {
+                batch.forEach(hit -> hit.setId(null));
+                if (!retry(attempt, batch.size(), e)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void flushSingle(EndpointHit hit) {
+        for (int attempt = 1; ; attempt++) {
+            hit.setId(null);
+            try {
+                hitWriter.write(List.of(hit));
+                flushedCounter.increment();
+                return;
+            } catch (DataIntegrityViolationException e) {
+                log.error("Dropping hit rejected by database: {}", hit, e);
+                rejectedCounter.increment();
+                return;
+            } catch (RuntimeException e) {
+                if (!retry(attempt, 1, e)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // false - попытки исчерпаны, хиты отброшены
+    private boolean retry(int attempt, int hits, RuntimeException e) {
+        if (!running && attempt > shutdownRetries) {
+            log.error("Failed to flush {} buffered hits on shutdown, dropping them", hits, e);
+            droppedCounter.increment(hits);
+            return false;
+        }
+        log.error("Failed to flush {} buffered hits, retrying in {} ms", hits, RETRY_DELAY_MS, e);
+        sleepBeforeRetry();
+        return true;
+    }
+
+    private void sleepBeforeRetry() {
+        try {
+            Thread.sleep(RETRY_DELAY_MS);
+        } catch (InterruptedException e) {
+            log.warn("Hit writer interrupted while waiting to retry");
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ru.practicum.stats.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.HitsSavedEvent;
+import ru.practicum.stats.repository.StatsRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HitWriter {
+
+    private final StatsRepository repository;
+    private final Optional<HitRollupService> rollupService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Transactional
+    public List<EndpointHit> write(List<EndpointHit> hits) {
+        log.debug("Writing {} endpoint hits", hits.size());
+        List<EndpointHit> saved = repository.saveAll(hits);
+        rollupService.ifPresent(rollups -> rollups.record(saved));
+        eventPublisher.publishEvent(new HitsSavedEvent(saved));
+        return saved;
+    }
+}
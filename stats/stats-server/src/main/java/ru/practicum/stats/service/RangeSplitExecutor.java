@@ -0,0 +1,141 @@
+package ru.practicum.stats.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.model.RollupSegment;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+// Параллельное выполнение длинных запросов статистики. Диапазон делится по началам месяцев (границам секций
+// endpoint_hits, они же совпадают с границами бакетов роллапов) не больше чем на threads частей, части
+// считаются на ограниченном пуле, первая - в потоке запроса. Частичные результаты сливает вызывающий код.
+// Каждая часть в пуле берёт своё соединение из пула БД, а поток запроса держит своё. Поэтому одновременно
+// в пуле считается не больше max-connections частей на все запросы; часть, которой не хватило разрешения,
+// считается в потоке запроса на его соединении, и запросы не ждут освобождения пула БД
+@Component
+@Slf4j
+public class RangeSplitExecutor {
+
+    private final int parallelism;
+    private final ExecutorService executor;
+    private final Semaphore connections;
+
+    public RangeSplitExecutor(@Value("${stats.parallel.threads:0}") int threads,
+                              @Value("${stats.parallel.max-connections:4}") int maxConnections) {
+        this.parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        int poolThreads = Math.min(parallelism - 1, maxConnections);
+        this.executor = poolThreads > 0
+                ? Executors.newFixedThreadPool(poolThreads,
+                        Thread.ofPlatform().name("stats-query-", 0).daemon().factory())
+                : null;
+        this.connections = new Semaphore(Math.max(0, maxConnections));
+        log.info("Stats queries split into up to {} parallel parts, {} extra connections", parallelism, poolThreads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    // Части сегмента той же гранулярности; сегмент внутри одного месяца не делится
+    public List<RollupSegment> split(RollupSegment segment) {
+        List<LocalDateTime> bounds = new ArrayList<>();
+        if (parallelism > 1) {
+            LocalDateTime month = segment.from().toLocalDate().withDayOfMonth(1).plusMonths(1).atStartOfDay();
+            for (; month.isBefore(segment.to()); month = month.plusMonths(1)) {
+                bounds.add(month);
+            }
+        }
+        if (bounds.isEmpty()) {
+            return List.of(segment);
+        }
+        // Соседние месяцы объединяются в parts частей примерно одинаковой длины
+        int months = bounds.size() + 1;
+        int parts = Math.min(parallelism, months);
+        List<RollupSegment> result = new ArrayList<>(parts);
+        LocalDateTime from = segment.from();
+        for (int part = 1; part < parts; part++) {
+            LocalDateTime to = bounds.get(part * months / parts - 1);
+            result.add(new RollupSegment(segment.granularity(), from, to));
+            from = to;
+        }
+        result.add(new RollupSegment(segment.granularity(), from, segment.to()));
+        return result;
+    }
+
+    // task для каждой части, результаты в порядке частей. Исключение части пробрасывается как есть
+    public <P, R> List<R> map(List<P> parts, Function<P, R> task) {
+        if (executor == null || parts.size() <= 1) {
+            return parts.stream()
+                    .map(task)
+                    .toList();
+        }
+        List<Future<R>> futures = new ArrayList<>(parts.size());
+        try {
+            for (P part : parts.subList(1, parts.size())) {
+                futures.add(connections.tryAcquire() ? submit(part, task) : null);
+            }
+            List<R> results = new ArrayList<>(parts.size());
+            results.add(task.apply(parts.get(0)));
+            for (int i = 0; i < futures.size(); i++) {
+                Future<R> future = futures.get(i);
+                results.add(future != null ? future.get() : task.apply(parts.get(i + 1)));
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for stats query parts", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            futures.stream()
+                    .filter(Objects::nonNull)
+                    .forEach(future -> future.cancel(true));
+        }
+    }
+
+    // Разрешение возвращается ровно один раз: частью, когда она досчитана, или отменой до её запуска
+    private <P, R> Future<R> submit(P part, Function<P, R> task) {
+        AtomicBoolean started = new AtomicBoolean();
+        FutureTask<R> future = new FutureTask<>(() -> {
+            if (started.getAndSet(true)) {
+                return null;
+            }
+            try {
+                return task.apply(part);
+            } finally {
+                connections.release();
+            }
+        }) {
+            @Override
+            protected void done() {
+                if (isCancelled() && !started.getAndSet(true)) {
+                    connections.release();
+                }
+            }
+        };
+        executor.execute(future);
+        return future;
+    }
+}
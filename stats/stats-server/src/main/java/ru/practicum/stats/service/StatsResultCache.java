@@ -0,0 +1,280 @@
+package ru.practicum.stats.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.HitsSavedEvent;
+import ru.practicum.stats.model.StatsQuery;
+import ru.practicum.stats.model.UriFilter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// Кэш результатов getStats. Записанные хиты сразу сбрасывают запросы, в окно и uri которых попадают,
+// поэтому результат за прошедшее окно хранится без срока (пока не вытеснен по размеру),
+// а окно, включающее текущий момент, живёт не дольше open-window-ttl-ms.
+// Результат не кладётся в кэш, только если во время его подсчёта пришли хиты в его окно и uri.
+// Для сброса записи проиндексированы по uri, а запросы по всем uri и по шаблонам - по концу окна:
+// коммит хитов с текущим временем перебирает только записи открытых окон
+@Component
+@ConditionalOnProperty(name = "stats.cache.enabled", havingValue = "true", matchIfMissing = true)
+public class StatsResultCache {
+
+    private final Cache<StatsQuery, CachedStats> cache;
+    // Индексы и незавершённые подсчёты меняются под монитором кэша
+    private final Map<String, NavigableMap<LocalDateTime, Set<CachedStats>>> byUri = new HashMap<>();
+    private final NavigableMap<LocalDateTime, Set<CachedStats>> byEnd = new TreeMap<>();
+    private final Set<PendingLoad> pending = new HashSet<>();
+
+    public StatsResultCache(MeterRegistry meterRegistry,
+                            @Value("${stats.cache.max-size:10000}") long maxSize,
+                            @Value("${stats.cache.open-window-ttl-ms:5000}") long openWindowTtlMs) {
+        long openWindowTtlNanos = TimeUnit.MILLISECONDS.toNanos(openWindowTtlMs);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<StatsQuery, CachedStats>() {
+                    @Override
+                    public long expireAfterCreate(StatsQuery query, CachedStats stats, long currentTime) {
+                        return stats.closed() ? Long.MAX_VALUE : openWindowTtlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(StatsQuery query, CachedStats stats, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(query, stats, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(StatsQuery query, CachedStats stats, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                // Слушатель асинхронный: под монитором кэша не вызывается код Caffeine, ждущий его блокировок
+                .removalListener((StatsQuery query, CachedStats stats, RemovalCause cause) -> unindex(stats))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "stats.results");
+        Gauge.builder("stats.results.hit.ratio", cache, c -> c.stats().hitRate())
+                .description("Share of getStats calls answered from the result cache")
+                .register(meterRegistry);
+    }
+
+    public List<ViewStatsDto> get(StatsQuery query, Supplier<List<ViewStatsDto>> loader) {
+        CachedStats cached = cache.getIfPresent(query);
+        if (cached != null) {
+            return cached.stats();
+        }
+        PendingLoad load = new PendingLoad(query);
+        synchronized (this) {
+            pending.add(load);
+        }
+        boolean closed = query.end().isBefore(LocalDateTime.now());
+        List<ViewStatsDto> stats;
+        try {
+            stats = List.copyOf(loader.get());
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pending.remove(load);
+            }
+            throw e;
+        }
+        synchronized (this) {
+            pending.remove(load);
+            if (!load.stale) {
+                CachedStats entry = new CachedStats(query, stats, closed);
+                index(entry);
+                cache.put(query, entry);
+            }
+        }
+        return stats;
+    }
+
+    @TransactionalEventListener
+    public void onHitsSaved(HitsSavedEvent event) {
+        Map<String, TimeRange> ranges = new HashMap<>();
+        for (EndpointHit hit : event.hits()) {
+            ranges.merge(hit.getUri(), new TimeRange(hit.getTimestamp(), hit.getTimestamp()), TimeRange::union);
+        }
+        LocalDateTime from = ranges.values().stream()
+                .map(TimeRange::from)
+                .min(Comparator.naturalOrder())
+                .orElse(null);
+        if (from == null) {
+            return;
+        }
+
+        List<CachedStats> affected = new ArrayList<>();
+        synchronized (this) {
+            for (PendingLoad load : pending) {
+                if (affects(load.query, ranges)) {
+                    load.stale = true;
+                }
+            }
+            ranges.forEach((uri, range) -> {
+                NavigableMap<LocalDateTime, Set<CachedStats>> entries = byUri.get(uri);
+                if (entries != null) {
+                    collect(entries, range.from(), entry -> entry.query().start().isAfter(range.to()), affected);
+                }
+            });
+            collect(byEnd, from, entry -> !affects(entry.query(), ranges), affected);
+            affected.forEach(this::unindex);
+        }
+        affected.forEach(entry -> cache.asMap().remove(entry.query(), entry));
+    }
+
+    // Данные изменились задним числом (например, удалены секции по retention)
+    public void invalidateAll() {
+        synchronized (this) {
+            pending.forEach(load -> load.stale = true);
+            byUri.clear();
+            byEnd.clear();
+        }
+        cache.invalidateAll();
+    }
+
+    // Записи с концом окна не раньше from, кроме отсеянных skip
+    private static void collect(NavigableMap<LocalDateTime, Set<CachedStats>> entries,
+                                LocalDateTime from,
+                                Predicate<CachedStats> skip,
+                                List<CachedStats> affected) {
+        for (Set<CachedStats> sameEnd : entries.tailMap(from, true).values()) {
+            for (CachedStats entry : sameEnd) {
+                if (!skip.test(entry)) {
+                    affected.add(entry);
+                }
+            }
+        }
+    }
+
+    // Запросы с точными uri индексируются по каждому uri, с шаблонами и по всем uri - только по концу окна
+    private void index(CachedStats entry) {
+        StatsQuery query = entry.query();
+        if (query.uris() == null || query.uris().stream().anyMatch(UriFilter::isPattern)) {
+            byEnd.computeIfAbsent(query.end(), end -> new HashSet<>()).add(entry);
+            return;
+        }
+        for (String uri : query.uris()) {
+            byUri.computeIfAbsent(uri, u -> new TreeMap<>())
+                    .computeIfAbsent(query.end(), end -> new HashSet<>())
+                    .add(entry);
+        }
+    }
+
+    // Удаляется именно этот экземпляр: запись того же запроса могла быть положена заново
+    private synchronized void unindex(CachedStats entry) {
+        StatsQuery query = entry.query();
+        if (query.uris() == null || query.uris().stream().anyMatch(UriFilter::isPattern)) {
+            remove(byEnd, query.end(), entry);
+            return;
+        }
+        for (String uri : query.uris()) {
+            NavigableMap<LocalDateTime, Set<CachedStats>> entries = byUri.get(uri);
+            if (entries != null) {
+                remove(entries, query.end(), entry);
+                if (entries.isEmpty()) {
+                    byUri.remove(uri);
+                }
+            }
+        }
+    }
+
+    private static void remove(NavigableMap<LocalDateTime, Set<CachedStats>> entries,
+                               LocalDateTime end,
+                               CachedStats entry) {
+        Set<CachedStats> sameEnd = entries.get(end);
+        if (sameEnd != null && sameEnd.remove(entry) && sameEnd.isEmpty()) {
+            entries.remove(end);
+        }
+    }
+
+    private static boolean affects(StatsQuery query, Map<String, TimeRange> ranges) {
+        if (query.uris() == null) {
+            return ranges.values().stream().anyMatch(range -> range.overlaps(query.start(), query.end()));
+        }
+        for (String uri : query.uris()) {
+            if (UriFilter.isPattern(uri)) {
+                boolean matched = ranges.entrySet().stream().anyMatch(entry ->
+                        UriFilter.matchesPattern(uri, entry.getKey())
+                                && entry.getValue().overlaps(query.start(), query.end()));
+                if (matched) {
+                    return true;
+                }
+                continue;
+            }
+            TimeRange range = ranges.get(uri);
+            if (range != null && range.overlaps(query.start(), query.end())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Сравнение по ссылке: индекс хранит конкретные экземпляры записей
+    private static final class CachedStats {
+
+        private final StatsQuery query;
+        private final List<ViewStatsDto> stats;
+        private final boolean closed;
+
+        CachedStats(StatsQuery query, List<ViewStatsDto> stats, boolean closed) {
+            this.query = query;
+            this.stats = stats;
+            this.closed = closed;
+        }
+
+        StatsQuery query() {
+            return query;
+        }
+
+        List<ViewStatsDto> stats() {
+            return stats;
+        }
+
+        boolean closed() {
+            return closed;
+        }
+    }
+
+    private static final class PendingLoad {
+
+        private final StatsQuery query;
+        private boolean stale;
+
+        PendingLoad(StatsQuery query) {
+            this.query = query;
+        }
+    }
+
+    private record TimeRange(LocalDateTime from, LocalDateTime to) {
+
+        TimeRange union(TimeRange other) {
+            return new TimeRange(from.isBefore(other.from) ? from : other.from, to.isAfter(other.to) ? to : other.to);
+        }
+
+        boolean overlaps(LocalDateTime start, LocalDateTime end) {
+            return !from.isAfter(end) && !to.isBefore(start);
+        }
+    }
+}
@@ -1,49 +1,323 @@
 package ru.practicum.stats.service;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStatsBucketDto;
 import ru.practicum.dto.ViewStatsDto;
 import ru.practicum.stats.exception.ValidationException;
+import ru.practicum.stats.index.HeavyHitterIndex;
+import ru.practicum.stats.index.HllSketchIndex;
+import ru.practicum.stats.index.HotHitWindow;
+import ru.practicum.stats.journal.HitJournal;
+import ru.practicum.stats.index.UniqueVisitorIndex;
 import ru.practicum.stats.mapper.StatsMapper;
 import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.RollupGranularity;
+import ru.practicum.stats.model.RollupSegment;
+import ru.practicum.stats.model.StatsQuery;
+import ru.practicum.stats.model.UriFilter;
+import ru.practicum.stats.repository.HitTimeSeriesRepository;
 import ru.practicum.stats.repository.StatsRepository;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
-@Transactional(readOnly = true)
 public class StatsService {
 
     private final StatsRepository repository;
     private final StatsMapper mapper;
+    private final HitWriter hitWriter;
+    private final Optional<HitWriteBuffer> writeBuffer;
+    private final Optional<HitJournal> journal;
+    private final Optional<HitRollupService> rollupService;
+    private final Optional<UniqueVisitorIndex> uniqueVisitorIndex;
+    private final Optional<HllSketchIndex> hllSketchIndex;
+    private final Optional<HotHitWindow> hotWindow;
+    private final Optional<HeavyHitterIndex> heavyHitterIndex;
+    private final Duration exactTopMaxWindow;
+    private final HitTimeSeriesRepository timeSeriesRepository;
+    private final long maxTimeSeriesBuckets;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Optional<StatsResultCache> resultCache;
+    private final UriFilterResolver uriFilterResolver;
+    private final HitCompactionService compactionService;
+    private final RangeSplitExecutor rangeSplitExecutor;
+
+    public StatsService(StatsRepository repository,
+                        StatsMapper mapper,
+                        HitWriter hitWriter,
+                        Optional<HitWriteBuffer> writeBuffer,
+                        Optional<HitJournal> journal,
+                        Optional<HitRollupService> rollupService,
+                        Optional<UniqueVisitorIndex> uniqueVisitorIndex,
+                        Optional<HllSketchIndex> hllSketchIndex,
+                        Optional<HotHitWindow> hotWindow,
+                        Optional<HeavyHitterIndex> heavyHitterIndex,
+                        @Value("${stats.top.exact-max-window:1d}") Duration exactTopMaxWindow,
+                        HitTimeSeriesRepository timeSeriesRepository,
+                        @Value("${stats.timeseries.max-buckets:10000}") long maxTimeSeriesBuckets,
+                        PlatformTransactionManager transactionManager,
+                        Optional<StatsResultCache> resultCache,
+                        UriFilterResolver uriFilterResolver,
+                        HitCompactionService compactionService,
+                        RangeSplitExecutor rangeSplitExecutor) {
+        this.repository = repository;
+        this.mapper = mapper;
+        this.hitWriter = hitWriter;
+        this.writeBuffer = writeBuffer;
+        this.journal = journal;
+        this.rollupService = rollupService;
+        this.uniqueVisitorIndex = uniqueVisitorIndex;
+        this.hllSketchIndex = hllSketchIndex;
+        this.hotWindow = hotWindow;
+        this.heavyHitterIndex = heavyHitterIndex;
+        this.exactTopMaxWindow = exactTopMaxWindow;
+        this.timeSeriesRepository = timeSeriesRepository;
+        this.maxTimeSeriesBuckets = maxTimeSeriesBuckets;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.resultCache = resultCache;
+        this.uriFilterResolver = uriFilterResolver;
+        this.compactionService = compactionService;
+        this.rangeSplitExecutor = rangeSplitExecutor;
+    }
 
-    @Transactional
     public EndpointHitDto saveHit(EndpointHitDto dto) {
         log.info("Saving endpoint hit: {}", dto);
         EndpointHit entity = mapper.toEntity(dto);
-        EndpointHit saved = repository.save(entity);
+        if (journal.isPresent()) {
+            journal.get().append(List.of(entity));
+            return mapper.toDto(entity);
+        }
+        if (writeBuffer.isPresent() && writeBuffer.get().offer(entity)) {
+            return mapper.toDto(entity);
+        }
+        EndpointHit saved = hitWriter.write(List.of(entity)).get(0);
         return mapper.toDto(saved);
     }
 
+    public List<EndpointHitDto> saveHits(List<EndpointHitDto> dtos) {
+        log.info("Saving {} endpoint hits", dtos.size());
+        List<EndpointHit> entities = dtos.stream()
+                .map(mapper::toEntity)
+                .toList();
+        if (journal.isPresent()) {
+            journal.get().append(entities);
+            return entities.stream()
+                    .map(mapper::toDto)
+                    .toList();
+        }
+        List<EndpointHit> result = new ArrayList<>(entities.size());
+        List<EndpointHit> toWrite = new ArrayList<>();
+        for (EndpointHit entity : entities) {
+            if (writeBuffer.isPresent() && writeBuffer.get().offer(entity)) {
+                result.add(entity);
+            } else {
+                toWrite.add(entity);
+            }
+        }
+        if (!toWrite.isEmpty()) {
+            result.addAll(hitWriter.write(toWrite));
+        }
+        return result.stream()
+                .map(mapper::toDto)
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
     public List<ViewStatsDto> getStats(LocalDateTime start,
                                        LocalDateTime end,
                                        List<String> uris,
-                                       Boolean unique) {
+                                       Boolean unique,
+                                       Boolean approximate) {
+        checkRange(start, end);
+
+        log.info("Getting stats from {} to {}, uris: {}, unique: {}, approximate: {}",
+                start, end, uris, unique, approximate);
+
+        if (resultCache.isPresent()) {
+            return resultCache.get().get(StatsQuery.of(start, end, uris, unique, approximate),
+                    () -> computeStats(start, end, uris, unique, approximate));
+        }
+        return computeStats(start, end, uris, unique, approximate);
+    }
+
+    private List<ViewStatsDto> computeStats(LocalDateTime start,
+                                            LocalDateTime end,
+                                            List<String> uriParams,
+                                            Boolean unique,
+                                            Boolean approximate) {
+        UriFilter uris = uriFilterResolver.resolve(uriParams);
+        if (uris != null && uris.isEmpty()) {
+            return List.of();
+        }
+        if (hotWindow.isPresent() && hotWindow.get().covers(start) && !compactionService.isCompacted(start)) {
+            return hotWindow.get().getStats(start, end, uris, Boolean.TRUE.equals(unique));
+        }
+        if (Boolean.TRUE.equals(unique) && Boolean.TRUE.equals(approximate) && hllSketchIndex.isPresent()) {
+            return hllSketchIndex.get().getApproximateUniqueStats(start, end, uris);
+        }
+        if (Boolean.TRUE.equals(unique)) {
+            return uniqueVisitorIndex
+                    .map(index -> index.getUniqueStats(start, end, uris))
+                    .orElseGet(() -> repository.getUniqueStats(start, end, uris));
+        }
+        if (rollupService.isPresent()) {
+            return rollupService.get().getStats(start, end, uris);
+        }
+        return getRawStats(start, end, uris);
+    }
+
+    // Без роллапов длинный диапазон считается по сырым хитам частями по секциям, параллельно
+    private List<ViewStatsDto> getRawStats(LocalDateTime start, LocalDateTime end, UriFilter uris) {
+        LocalDateTime endExclusive = end.truncatedTo(ChronoUnit.MICROS).plus(1, ChronoUnit.MICROS);
+        List<RollupSegment> parts = rangeSplitExecutor.split(new RollupSegment(null, start, endExclusive));
+        if (parts.size() == 1) {
+            return repository.getStats(start, end, uris);
+        }
+        Map<String, Map<String, Long>> hits = new HashMap<>();
+        for (List<ViewStatsDto> rows : rangeSplitExecutor.map(parts,
+                part -> repository.getStatsInRange(part.from(), part.to(), uris))) {
+            for (ViewStatsDto row : rows) {
+                hits.computeIfAbsent(row.getApp(), app -> new HashMap<>())
+                        .merge(row.getUri(), row.getHits(), Long::sum);
+            }
+        }
+        List<ViewStatsDto> result = new ArrayList<>();
+        hits.forEach((app, byUri) -> byUri.forEach((uri, count) -> result.add(new ViewStatsDto(app, uri, count))));
+        result.sort(Comparator.comparing(ViewStatsDto::getHits).reversed());
+        return result;
+    }
+
+    // Статистика построчно из курсора БД, без материализации всего результата.
+    // Уплотнённых хитов в курсоре нет, диапазоны, начинающиеся до границы уплотнения, считаются целиком
+    public void streamStats(LocalDateTime start,
+                            LocalDateTime end,
+                            List<String> uris,
+                            Boolean unique,
+                            Consumer<ViewStatsDto> consumer) {
+        checkRange(start, end);
+
+        log.info("Streaming stats from {} to {}, uris: {}, unique: {}", start, end, uris, unique);
+
+        if (compactionService.isCompacted(start)) {
+            readOnlyTransaction.execute(status -> getStats(start, end, uris, unique, false)).forEach(consumer);
+            return;
+        }
+        UriFilter filter = uriFilterResolver.resolve(uris);
+        if (filter != null && filter.isEmpty()) {
+            return;
+        }
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<ViewStatsDto> stats = repository.streamStats(start, end, filter, Boolean.TRUE.equals(unique))) {
+                stats.forEach(consumer);
+            }
+        });
+    }
+
+    public void checkRange(LocalDateTime start, LocalDateTime end) {
         if (start.isAfter(end)) {
             throw new ValidationException("Start date must be before end date");
         }
+    }
 
-        log.info("Getting stats from {} to {}, uris: {}, unique: {}", start, end, uris, unique);
+    // Топ n (app, uri) по просмотрам за последние window. По умолчанию из сводок Space-Saving (оценка сверху),
+    // exact=true считает точно по хитам и допустим только для окон до stats.top.exact-max-window
+    @Transactional(readOnly = true)
+    public List<ViewStatsDto> getTop(int n, String window, Boolean exact) {
+        Duration duration = parseWindow(window);
+        log.info("Getting top {} uris for the last {}, exact: {}", n, duration, exact);
 
-        if (Boolean.TRUE.equals(unique)) {
-            return repository.getUniqueStats(start, end, uris);
+        if (!Boolean.TRUE.equals(exact) && heavyHitterIndex.isPresent()) {
+            if (duration.compareTo(HeavyHitterIndex.MAX_WINDOW) > 0) {
+                throw new ValidationException("Window must not exceed " + HeavyHitterIndex.MAX_WINDOW);
+            }
+            return heavyHitterIndex.get().getTop(n, duration);
+        }
+        if (duration.compareTo(exactTopMaxWindow) > 0) {
+            throw new ValidationException("Exact top is available only for windows up to " + exactTopMaxWindow);
+        }
+        LocalDateTime end = LocalDateTime.now();
+        return getStats(end.minus(duration), end, null, false, false).stream()
+                .limit(n)
+                .toList();
+    }
+
+    // Просмотры по бакетам minute/hour/day в [start, end]; пустые бакеты не возвращаются.
+    // Неуникальные - по роллапам, с unique=true - одним проходом по сырым хитам
+    @Transactional(readOnly = true)
+    public List<ViewStatsBucketDto> getTimeSeries(LocalDateTime start,
+                                                  LocalDateTime end,
+                                                  List<String> uris,
+                                                  String bucket,
+                                                  Boolean unique) {
+        checkRange(start, end);
+        RollupGranularity granularity = parseBucket(bucket);
+        long buckets = granularity.getUnit().between(granularity.floor(start), end) + 1;
+        if (buckets > maxTimeSeriesBuckets) {
+            throw new ValidationException("Too many buckets: " + buckets + ", max " + maxTimeSeriesBuckets);
+        }
+
+        log.info("Getting time series from {} to {} by {}, uris: {}, unique: {}", start, end, granularity, uris, unique);
+
+        UriFilter filter = uriFilterResolver.resolve(uris);
+        if (filter != null && filter.isEmpty()) {
+            return List.of();
+        }
+        List<ViewStatsBucketDto> result = new ArrayList<>();
+        if (!Boolean.TRUE.equals(unique) && rollupService.isPresent()) {
+            result.addAll(rollupService.get().getTimeSeries(start, end, filter, granularity));
+        } else {
+            if (compactionService.isCompacted(start)) {
+                throw new ValidationException("Unique time series are available only from "
+                        + compactionService.getCompactedBefore().orElseThrow());
+            }
+            LocalDateTime endExclusive = end.truncatedTo(ChronoUnit.MICROS).plus(1, ChronoUnit.MICROS);
+            result.addAll(timeSeriesRepository.getTimeSeries(granularity, start, endExclusive, filter,
+                    Boolean.TRUE.equals(unique)));
+        }
+        result.sort(Comparator.comparing(ViewStatsBucketDto::getApp)
+                .thenComparing(ViewStatsBucketDto::getUri)
+                .thenComparing(ViewStatsBucketDto::getBucket));
+        return result;
+    }
+
+    private RollupGranularity parseBucket(String bucket) {
+        try {
+            return RollupGranularity.valueOf(bucket.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Bucket must be one of minute, hour, day: " + bucket);
+        }
+    }
+
+    private Duration parseWindow(String window) {
+        Duration duration;
+        try {
+            duration = DurationStyle.detectAndParse(window);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Invalid window: " + window);
+        }
+        if (duration.isNegative() || duration.isZero()) {
+            throw new ValidationException("Window must be positive");
         }
-        return repository.getStats(start, end, uris);
+        return duration;
     }
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package ru.practicum.stats.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.exception.ValidationException;
+import ru.practicum.stats.index.UriTrie;
+import ru.practicum.stats.model.UriFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Разбор параметра uris: элементы с '*' - шаблоны. Шаблон prefix* становится префиксом, который БД
+// читает диапазоном в collation "C" по индексу (uri COLLATE "C", ...); остальные шаблоны раскрываются
+// по UriTrie в точный список uri. С stats.uri-trie.expand-prefixes=true дерево раскрывает и prefix*
+@Component
+public class UriFilterResolver {
+
+    private final Optional<UriTrie> trie;
+    private final boolean expandPrefixes;
+
+    public UriFilterResolver(Optional<UriTrie> trie,
+                             @Value("${stats.uri-trie.expand-prefixes:false}") boolean expandPrefixes) {
+        this.trie = trie;
+        this.expandPrefixes = expandPrefixes && trie.isPresent();
+    }
+
+    // null - все uri
+    public UriFilter resolve(List<String> uris) {
+        if (uris == null) {
+            return null;
+        }
+        Set<String> exact = new TreeSet<>();
+        List<String> prefixes = new ArrayList<>();
+        for (String uri : uris) {
+            if (!UriFilter.isPattern(uri)) {
+                exact.add(uri);
+                continue;
+            }
+            String prefix = uri.substring(0, uri.indexOf(UriFilter.WILDCARD));
+            boolean prefixOnly = prefix.length() == uri.length() - 1;
+            if (prefixOnly && prefix.isEmpty()) {
+                return null;
+            }
+            if (prefixOnly && !expandPrefixes) {
+                if (trie.map(t -> t.containsPrefix(prefix)).orElse(true)) {
+                    prefixes.add(prefix);
+                }
+            } else {
+                exact.addAll(trie
+                        .orElseThrow(() -> new ValidationException("Uri pattern is not supported: " + uri))
+                        .match(uri));
+            }
+        }
+        List<String> minimal = minimalPrefixes(prefixes);
+        exact.removeIf(uri -> minimal.stream().anyMatch(uri::startsWith));
+        return new UriFilter(exact, minimal);
+    }
+
+    // Префиксы, вложенные в другие префиксы, не нужны
+    private static List<String> minimalPrefixes(List<String> prefixes) {
+        List<String> result = new ArrayList<>();
+        for (String prefix : new TreeSet<>(prefixes)) {
+            if (result.isEmpty() || !prefix.startsWith(result.get(result.size() - 1))) {
+                result.add(prefix);
+            }
+        }
+        return result;
+    }
+}
@@ -1,11 +1,114 @@
+CREATE SEQUENCE IF NOT EXISTS endpoint_hits_id_seq INCREMENT BY 50;
+
+-- Hibernate выделяет id пачками по 50 (pooled optimizer), шаг последовательности должен совпадать
+ALTER SEQUENCE endpoint_hits_id_seq INCREMENT BY 50;
+
+-- Хиты секционированы по месяцам, секции создаёт и удаляет HitPartitionService.
+-- Таблица старого формата (без секций) переносится им же при старте.
 CREATE TABLE IF NOT EXISTS endpoint_hits (
-    id BIGSERIAL PRIMARY KEY,
+    id BIGINT NOT NULL DEFAULT nextval('endpoint_hits_id_seq'),
     app VARCHAR(255) NOT NULL,
     uri VARCHAR(512) NOT NULL,
     ip VARCHAR(45) NOT NULL,
-    timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL
-);
+    timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
 
+DROP INDEX IF EXISTS idx_uri;
+DROP INDEX IF EXISTS idx_app;
 CREATE INDEX IF NOT EXISTS idx_timestamp ON endpoint_hits(timestamp);
-CREATE INDEX IF NOT EXISTS idx_uri ON endpoint_hits(uri);
-CREATE INDEX IF NOT EXISTS idx_app ON endpoint_hits(app);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS idx_uri_timestamp ON endpoint_hits(uri, timestamp);
+-- Шаблоны prefix* читаются диапазоном в collation "C" (побайтово), обычный индекс для них не подходит
+CREATE INDEX IF NOT EXISTS idx_uri_c_timestamp ON endpoint_hits((uri COLLATE "C"), timestamp);
+
+-- Роллапы хитов по минутам, часам и дням
+CREATE TABLE IF NOT EXISTS endpoint_hits_minutely (
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app VARCHAR(255) NOT NULL,
+    uri VARCHAR(512) NOT NULL,
+    hits BIGINT NOT NULL,
+    PRIMARY KEY (bucket, app, uri)
+);
+
+CREATE TABLE IF NOT EXISTS endpoint_hits_hourly (
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app VARCHAR(255) NOT NULL,
+    uri VARCHAR(512) NOT NULL,
+    hits BIGINT NOT NULL,
+    PRIMARY KEY (bucket, app, uri)
+);
+
+CREATE TABLE IF NOT EXISTS endpoint_hits_daily (
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app VARCHAR(255) NOT NULL,
+    uri VARCHAR(512) NOT NULL,
+    hits BIGINT NOT NULL,
+    PRIMARY KEY (bucket, app, uri)
+);
+
+CREATE INDEX IF NOT EXISTS idx_minutely_uri ON endpoint_hits_minutely(uri, bucket);
+CREATE INDEX IF NOT EXISTS idx_hourly_uri ON endpoint_hits_hourly(uri, bucket);
+CREATE INDEX IF NOT EXISTS idx_daily_uri ON endpoint_hits_daily(uri, bucket);
+
+-- Компактное хранение (stats.storage.mode=compact): app и uri вынесены в словари, IPv4 хранится как inet,
+-- остальные строки IP - в ip_text без изменений
+CREATE TABLE IF NOT EXISTS hit_apps (
+    id SERIAL PRIMARY KEY,
+    name VARCHAR(255) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS hit_uris (
+    id SERIAL PRIMARY KEY,
+    uri VARCHAR(512) NOT NULL UNIQUE
+);
+
+CREATE INDEX IF NOT EXISTS idx_hit_uris_uri_c ON hit_uris((uri COLLATE "C"));
+
+CREATE SEQUENCE IF NOT EXISTS endpoint_hits_compact_id_seq;
+
+CREATE TABLE IF NOT EXISTS endpoint_hits_compact (
+    id BIGINT NOT NULL DEFAULT nextval('endpoint_hits_compact_id_seq'),
+    app_id INT NOT NULL,
+    uri_id INT NOT NULL,
+    ip INET,
+    ip_text VARCHAR(45),
+    timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+ALTER TABLE endpoint_hits_compact ADD COLUMN IF NOT EXISTS ip_text VARCHAR(45);
+ALTER TABLE endpoint_hits_compact ALTER COLUMN ip DROP NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_compact_timestamp ON endpoint_hits_compact(timestamp);
+CREATE INDEX IF NOT EXISTS idx_compact_uri_timestamp ON endpoint_hits_compact(uri_id, timestamp);
+
+-- Компактные хиты в исходном виде, для пересчётов на стороне БД
+CREATE OR REPLACE VIEW endpoint_hits_decoded AS
+SELECT h.id, a.name AS app, u.uri, COALESCE(host(h.ip), h.ip_text) AS ip, h.timestamp
+FROM endpoint_hits_compact h
+JOIN hit_apps a ON a.id = h.app_id
+JOIN hit_uris u ON u.id = h.uri_id;
+
+-- Позиция журнала хитов (stats.ingest.mode=journal), до которой хиты уже перенесены в endpoint_hits
+CREATE TABLE IF NOT EXISTS hit_journal_position (
+    id SMALLINT PRIMARY KEY,
+    segment BIGINT NOT NULL,
+    position INT NOT NULL
+);
+
+-- Уплотнение (stats.compaction): сырые хиты до compacted_before удалены, неуникальные просмотры за это время
+-- остаются в роллапах, уникальные посетители - в endpoint_hits_daily_visitors по дням
+CREATE TABLE IF NOT EXISTS hit_compaction (
+    id SMALLINT PRIMARY KEY,
+    compacted_before TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
+
+-- Посетители (app, uri) за уплотнённый день: сериализованный RoaringBitmap IPv4-адресов и прочие адреса
+CREATE TABLE IF NOT EXISTS endpoint_hits_daily_visitors (
+    day DATE NOT NULL,
+    app VARCHAR(255) NOT NULL,
+    uri VARCHAR(512) NOT NULL,
+    ipv4 BYTEA NOT NULL,
+    other_ips TEXT[] NOT NULL,
+    PRIMARY KEY (day, app, uri)
+);
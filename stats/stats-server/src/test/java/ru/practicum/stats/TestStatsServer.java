@@ -0,0 +1,103 @@
+package ru.practicum.stats;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Контекст stats-server без веб-слоя для тестов. Встроенный PostgreSQL один на JVM, каждый сервер получает
+// свою пустую базу. Базы создаются с ICU-локалью en-US: как в образе postgres по умолчанию, порядок строк не C
+public final class TestStatsServer implements AutoCloseable {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+    private static EmbeddedPostgres postgres;
+
+    private final String database;
+    private final String[] properties;
+    private final ConfigurableApplicationContext context;
+
+    private TestStatsServer(String database, String[] properties) {
+        this.database = database;
+        this.properties = properties;
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + postgres().getJdbcUrl("postgres", database),
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=postgres",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate.SQL=WARN"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        this.context = new SpringApplicationBuilder(StatsServerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new));
+    }
+
+    // properties - свойства stats-server вида key=value
+    public static TestStatsServer start(String... properties) {
+        String database = "stats_" + DATABASES.incrementAndGet();
+        execute("CREATE DATABASE " + database + " TEMPLATE template0 LOCALE_PROVIDER icu ICU_LOCALE 'en-US' "
+                + "LOCALE 'C'");
+        return new TestStatsServer(database, properties);
+    }
+
+    // Новый контекст над той же базой, как после перезапуска; свойства дописываются к исходным
+    public TestStatsServer restart(String... extraProperties) {
+        close();
+        List<String> all = new ArrayList<>(List.of(properties));
+        all.addAll(List.of(extraProperties));
+        return new TestStatsServer(database, all.toArray(String[]::new));
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public JdbcTemplate jdbc() {
+        return context.getBean(JdbcTemplate.class);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    private static synchronized EmbeddedPostgres postgres() {
+        if (postgres == null) {
+            try {
+                postgres = EmbeddedPostgres.builder().start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not start embedded PostgreSQL", e);
+            }
+            EmbeddedPostgres started = postgres;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    started.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        return postgres;
+    }
+
+    private static void execute(String sql) {
+        try (Connection connection = postgres().getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not execute " + sql, e);
+        }
+    }
+}
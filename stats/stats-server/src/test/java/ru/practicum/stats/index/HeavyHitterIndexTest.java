@@ -0,0 +1,41 @@
+package ru.practicum.stats.index;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.ViewStatsDto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HeavyHitterIndexTest {
+
+    private final HeavyHitterIndex index = new HeavyHitterIndex(100);
+
+    // Хит в пределах окна, но в предыдущей минуте, попадает в результат при любой секунде текущей минуты
+    @Test
+    void windowIsNotShorterThanRequested() {
+        LocalDateTime now = LocalDateTime.now();
+        index.add("ewm", "/minute", "10.0.0.1", now.minusSeconds(59));
+        index.add("ewm", "/hour", "10.0.0.1", now.minusMinutes(59).minusSeconds(50));
+        index.add("ewm", "/week", "10.0.0.1", now.minusDays(7).plusMinutes(5));
+
+        assertThat(index.getTop(10, Duration.ofMinutes(1))).extracting(ViewStatsDto::getUri)
+                .containsExactly("/minute");
+        assertThat(index.getTop(10, Duration.ofHours(1))).extracting(ViewStatsDto::getUri)
+                .containsExactlyInAnyOrder("/minute", "/hour");
+        assertThat(index.getTop(10, Duration.ofDays(7))).extracting(ViewStatsDto::getUri)
+                .containsExactlyInAnyOrder("/minute", "/hour", "/week");
+    }
+
+    // Окно расширяется не больше чем до границы предыдущей сводки
+    @Test
+    void hitsOlderThanWindowAndOneUnitAreExcluded() {
+        LocalDateTime now = LocalDateTime.now();
+        index.add("ewm", "/old", "10.0.0.1", now.minusMinutes(3));
+        index.add("ewm", "/recent", "10.0.0.1", now);
+
+        assertThat(index.getTop(10, Duration.ofMinutes(1))).extracting(ViewStatsDto::getUri)
+                .containsExactly("/recent");
+    }
+}
@@ -0,0 +1,136 @@
+package ru.practicum.stats.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HyperLogLogTest {
+
+    // Оценка укладывается в четыре стандартные ошибки; хеш детерминирован, поэтому тест не плавает
+    @ParameterizedTest
+    @CsvSource({"11, 1000", "11, 10000", "11, 200000", "14, 50000", "14, 500000"})
+    void estimateStaysWithinStandardErrorBound(int precision, int cardinality) {
+        HyperLogLog sketch = new HyperLogLog(precision);
+        for (int i = 0; i < cardinality; i++) {
+            sketch.add(ip(i));
+        }
+
+        double error = Math.abs(sketch.estimate() - cardinality) / (double) cardinality;
+
+        assertThat(error).isLessThanOrEqualTo(4 * HyperLogLog.standardError(precision));
+    }
+
+    @Test
+    void smallCardinalitiesAreCountedAlmostExactly() {
+        HyperLogLog sketch = new HyperLogLog(11);
+        for (int i = 0; i < 50; i++) {
+            sketch.add(ip(i));
+            assertThat(sketch.estimate()).isBetween((long) i, (long) i + 2);
+        }
+    }
+
+    @Test
+    void repeatedValuesDoNotChangeEstimate() {
+        HyperLogLog sketch = new HyperLogLog(11);
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(ip(i));
+        }
+        long estimate = sketch.estimate();
+
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(ip(i));
+        }
+
+        assertThat(sketch.estimate()).isEqualTo(estimate);
+    }
+
+    @Test
+    void emptySketchEstimatesZero() {
+        assertThat(new HyperLogLog(11).estimate()).isZero();
+    }
+
+    @Test
+    void sketchTurnsDenseOnlyAfterManyRegistersAreSet() {
+        HyperLogLog sketch = new HyperLogLog(11);
+        for (int i = 0; i < 100; i++) {
+            sketch.add(ip(i));
+        }
+        assertThat(sketch.isSparse()).isTrue();
+
+        for (int i = 100; i < 2000; i++) {
+            sketch.add(ip(i));
+        }
+        assertThat(sketch.isSparse()).isFalse();
+    }
+
+    // Оценка не зависит от представления: сверка с плотными регистрами по определению алгоритма
+    @ParameterizedTest
+    @CsvSource({"10", "200", "255", "256", "257", "400", "5000"})
+    void estimateMatchesDenseReference(int cardinality) {
+        int precision = 11;
+        int m = 1 << precision;
+        HyperLogLog sketch = new HyperLogLog(precision);
+        byte[] registers = new byte[m];
+        for (int i = 0; i < cardinality; i++) {
+            sketch.add(ip(i));
+            long hash = HyperLogLog.hash(ip(i));
+            int index = (int) (hash >>> (64 - precision));
+            int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+            registers[index] = (byte) Math.max(registers[index], rank);
+        }
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += Math.pow(2, -register);
+            zeros += register == 0 ? 1 : 0;
+        }
+        double expected = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+        if (expected <= 2.5 * m && zeros > 0) {
+            expected = m * Math.log((double) m / zeros);
+        }
+
+        assertThat(sketch.estimate()).isEqualTo(Math.round(expected));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"50, 60", "50, 5000", "5000, 50", "5000, 6000"})
+    void mergeEqualsSketchOfUnion(int left, int right) {
+        HyperLogLog union = new HyperLogLog(11);
+        HyperLogLog first = new HyperLogLog(11);
+        HyperLogLog second = new HyperLogLog(11);
+        for (int i = 0; i < left; i++) {
+            first.add(ip(i));
+            union.add(ip(i));
+        }
+        // Множества пересекаются наполовину меньшего
+        for (int i = left - Math.min(left, right) / 2; i < left - Math.min(left, right) / 2 + right; i++) {
+            second.add(ip(i));
+            union.add(ip(i));
+        }
+
+        first.merge(second);
+
+        assertThat(first.estimate()).isEqualTo(union.estimate());
+    }
+
+    @Test
+    void mergeRejectsDifferentPrecision() {
+        HyperLogLog sketch = new HyperLogLog(11);
+
+        assertThatThrownBy(() -> sketch.merge(new HyperLogLog(12)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void precisionOutsideSupportedRangeIsRejected() {
+        assertThatThrownBy(() -> new HyperLogLog(3)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new HyperLogLog(17)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String ip(int i) {
+        return "10." + (i >>> 16 & 0xFF) + "." + (i >>> 8 & 0xFF) + "." + (i & 0xFF);
+    }
+}
@@ -0,0 +1,116 @@
+package ru.practicum.stats.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SpaceSavingTest {
+
+    private static final int CAPACITY = 50;
+
+    @Test
+    void countsExactlyWhileKeysFit() {
+        SpaceSaving<String> summary = new SpaceSaving<>(CAPACITY);
+        summary.add("/events/1", 3);
+        summary.add("/events/2", 1);
+        summary.add("/events/1", 2);
+
+        assertThat(summary.top(10)).containsExactly(Map.entry("/events/1", 5L), Map.entry("/events/2", 1L));
+    }
+
+    // Счёт не занижен и завышен не больше чем на total / capacity; ключи чаще total / capacity присутствуют
+    @Test
+    void singleSummaryStaysWithinErrorBound() {
+        Map<String, Long> exact = new HashMap<>();
+        SpaceSaving<String> summary = new SpaceSaving<>(CAPACITY);
+        long total = feed(summary, exact, new Random(1), 100_000);
+
+        Map<String, Long> reported = toMap(summary.top(CAPACITY));
+        double bound = (double) total / CAPACITY;
+
+        reported.forEach((key, count) -> assertThat(count - exact.get(key))
+                .as(key)
+                .isBetween(0L, (long) bound));
+        exact.forEach((key, count) -> {
+            if (count > bound) {
+                assertThat(reported).as(key).containsKey(key);
+            }
+        });
+    }
+
+    // После слияния ключ, вытесненный из второй сводки, теряет не больше её минимума:
+    // ошибка в обе стороны не больше 2 * total / capacity, ключи чаще этого присутствуют
+    @Test
+    void mergedSummaryStaysWithinErrorBound() {
+        Map<String, Long> exact = new HashMap<>();
+        SpaceSaving<String> first = new SpaceSaving<>(CAPACITY);
+        SpaceSaving<String> second = new SpaceSaving<>(CAPACITY);
+        long total = feed(first, exact, new Random(2), 60_000) + feed(second, exact, new Random(3), 40_000);
+
+        first.merge(second);
+
+        Map<String, Long> reported = toMap(first.top(CAPACITY));
+        double bound = 2.0 * total / CAPACITY;
+        reported.forEach((key, count) -> assertThat((double) Math.abs(count - exact.get(key)))
+                .as(key)
+                .isLessThanOrEqualTo(bound));
+        exact.forEach((key, count) -> {
+            if (count > bound) {
+                assertThat(reported).as(key).containsKey(key);
+            }
+        });
+    }
+
+    @Test
+    void mergeAddsCountsOfSameKeys() {
+        SpaceSaving<String> first = new SpaceSaving<>(CAPACITY);
+        SpaceSaving<String> second = new SpaceSaving<>(CAPACITY);
+        first.add("/events/1", 4);
+        second.add("/events/1", 6);
+        second.add("/events/2", 5);
+
+        first.merge(second);
+
+        assertThat(first.top(10)).containsExactly(Map.entry("/events/1", 10L), Map.entry("/events/2", 5L));
+    }
+
+    @Test
+    void topIsOrderedByCountAndLimited() {
+        SpaceSaving<String> summary = new SpaceSaving<>(CAPACITY);
+        for (int i = 1; i <= 20; i++) {
+            summary.add("/events/" + i, i);
+        }
+
+        List<Map.Entry<String, Long>> top = summary.top(3);
+
+        assertThat(top).extracting(Map.Entry::getValue).containsExactly(20L, 19L, 18L);
+    }
+
+    @Test
+    void capacityMustBePositive() {
+        assertThatThrownBy(() -> new SpaceSaving<String>(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // Распределение с тяжёлым хвостом: несколько частых uri и много редких
+    private static long feed(SpaceSaving<String> summary, Map<String, Long> exact, Random random, int hits) {
+        for (int i = 0; i < hits; i++) {
+            int rank = (int) Math.floor(Math.pow(2000, random.nextDouble()));
+            String key = "/events/" + rank;
+            summary.add(key, 1);
+            exact.merge(key, 1L, Long::sum);
+        }
+        return hits;
+    }
+
+    private static Map<String, Long> toMap(List<Map.Entry<String, Long>> entries) {
+        Map<String, Long> map = new HashMap<>();
+        entries.forEach(entry -> map.put(entry.getKey(), entry.getValue()));
+        return map;
+    }
+}
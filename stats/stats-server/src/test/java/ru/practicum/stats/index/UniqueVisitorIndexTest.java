@@ -0,0 +1,89 @@
+package ru.practicum.stats.index;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.TestStatsServer;
+import ru.practicum.stats.service.HitCompactionService;
+import ru.practicum.stats.service.StatsService;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UniqueVisitorIndexTest {
+
+    private static final LocalDateTime TODAY = LocalDate.now().atStartOfDay();
+
+    // Начала в уплотнённой части - начала дней: до границы посетители дня относятся к его началу
+    private static final List<LocalDateTime[]> RANGES = List.of(
+            range(TODAY.minusDays(10), TODAY.minusDays(1).plusHours(13).plusMinutes(17)),
+            range(TODAY.minusDays(8), TODAY.minusDays(3).plusHours(7).plusMinutes(45)),
+            range(TODAY.minusDays(7), TODAY.minusDays(5).plusHours(6)),
+            range(TODAY.minusDays(4).plusHours(9).plusMinutes(30), TODAY.minusDays(2).plusHours(18)),
+            range(TODAY.minusDays(3), TODAY.minusSeconds(1)));
+
+    @Test
+    void uniqueStatsMatchCountDistinctAcrossCompactionBoundary() {
+        TestStatsServer server = TestStatsServer.start("stats.unique-index.enabled=true",
+                "stats.compaction.after-days=5", "stats.hot-window.enabled=false");
+        List<List<ViewStatsDto>> expected = new ArrayList<>();
+        try {
+            server.getBean(StatsService.class).saveHits(hits());
+            UniqueVisitorIndex index = server.getBean(UniqueVisitorIndex.class);
+            for (LocalDateTime[] range : RANGES) {
+                List<ViewStatsDto> distinct = countDistinct(server, range);
+                assertThat(index.getUniqueStats(range[0], range[1], null))
+                        .containsExactlyInAnyOrderElementsOf(distinct);
+                expected.add(distinct);
+            }
+            assertThat(index.sizeInBytes()).isPositive();
+
+            server.getBean(HitCompactionService.class).compact();
+        } catch (RuntimeException | AssertionError e) {
+            server.close();
+            throw e;
+        }
+
+        // После перезапуска дни до границы читаются из битмапов уплотнения, сырых хитов за них нет
+        try (TestStatsServer restarted = server.restart()) {
+            assertThat(restarted.jdbc().queryForObject("SELECT MIN(timestamp) FROM endpoint_hits",
+                    LocalDateTime.class)).isAfterOrEqualTo(TODAY.minusDays(5));
+            UniqueVisitorIndex index = restarted.getBean(UniqueVisitorIndex.class);
+            for (int i = 0; i < RANGES.size(); i++) {
+                LocalDateTime[] range = RANGES.get(i);
+                assertThat(index.getUniqueStats(range[0], range[1], null))
+                        .as("range %s - %s", range[0], range[1])
+                        .containsExactlyInAnyOrderElementsOf(expected.get(i));
+            }
+        }
+    }
+
+    private static List<ViewStatsDto> countDistinct(TestStatsServer server, LocalDateTime[] range) {
+        return server.jdbc().query("SELECT app, uri, COUNT(DISTINCT ip) AS hits FROM endpoint_hits " +
+                        "WHERE timestamp BETWEEN ? AND ? GROUP BY app, uri",
+                (rs, rowNum) -> new ViewStatsDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")),
+                range[0], range[1]);
+    }
+
+    // Десять полных дней до сегодняшнего, 40 адресов на 5 uri двух приложений
+    private static List<EndpointHitDto> hits() {
+        Random random = new Random(17);
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            LocalDateTime timestamp = TODAY.minusDays(10).plusSeconds(random.nextInt(10 * 24 * 3600));
+            hits.add(new EndpointHitDto(null, random.nextInt(4) == 0 ? "ewm-admin" : "ewm",
+                    "/events/" + random.nextInt(5), "10.0." + random.nextInt(2) + "." + random.nextInt(20),
+                    timestamp));
+        }
+        return hits;
+    }
+
+    private static LocalDateTime[] range(LocalDateTime start, LocalDateTime end) {
+        return new LocalDateTime[] {start, end};
+    }
+}
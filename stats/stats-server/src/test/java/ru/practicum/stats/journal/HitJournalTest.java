@@ -0,0 +1,174 @@
+package ru.practicum.stats.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.JournalPosition;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HitJournalTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 3, 1, 12, 0, 0, 123_456_000);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void appendedHitsAreReadBack() throws IOException {
+        HitJournal journal = open();
+        List<EndpointHit> hits = hits(0, 5);
+
+        journal.append(hits);
+        HitJournal.Batch batch = journal.read(journal.start(), 100);
+
+        assertThat(batch.hits()).isEqualTo(hits);
+        assertThat(batch.next()).isEqualTo(journal.head());
+    }
+
+    @Test
+    void readContinuesFromReturnedPosition() throws IOException {
+        HitJournal journal = open();
+        journal.append(hits(0, 5));
+
+        HitJournal.Batch first = journal.read(journal.start(), 2);
+        HitJournal.Batch rest = journal.read(first.next(), 100);
+
+        assertThat(first.hits()).isEqualTo(hits(0, 2));
+        assertThat(rest.hits()).isEqualTo(hits(2, 5));
+    }
+
+    // После рестарта запись идёт в новый сегмент, записанное до него читается первым
+    @Test
+    void reopenedJournalKeepsOldSegmentAndWritesNewOne() throws IOException {
+        HitJournal before = open();
+        before.append(hits(0, 3));
+        before.close();
+
+        HitJournal after = open();
+        after.append(hits(3, 5));
+
+        assertThat(after.start().segment()).isLessThan(after.head().segment());
+        assertThat(after.read(after.start(), 100).hits()).isEqualTo(hits(0, 5));
+    }
+
+    @Test
+    void fullSegmentRollsOverToNextOne() throws IOException {
+        HitJournal journal = open();
+        // Записи около килобайта: 2000 хитов не помещаются в сегмент в 1 МБ
+        List<EndpointHit> hits = IntStream.range(0, 2000)
+                .mapToObj(i -> new EndpointHit(null, "ewm", "/events/" + "x".repeat(1000) + i, "10.0.0.1", TIME))
+                .toList();
+
+        journal.append(hits);
+
+        assertThat(journal.segmentCount()).isGreaterThan(1);
+        assertThat(readAll(journal)).isEqualTo(hits);
+    }
+
+    // Запись с несошедшейся CRC и всё после неё в том же сегменте пропускаются, следующий сегмент читается
+    @Test
+    void corruptedRecordSkipsRestOfItsSegment() throws IOException {
+        HitJournal before = open();
+        before.append(hits(0, 5));
+        before.close();
+        corruptRecord(onlySegment(), 2);
+
+        HitJournal after = open();
+        after.append(hits(5, 6));
+
+        List<EndpointHit> expected = new ArrayList<>(hits(0, 2));
+        expected.addAll(hits(5, 6));
+        assertThat(readAll(after)).isEqualTo(expected);
+    }
+
+    @Test
+    void deleteBeforeKeepsSegmentBeingWritten() throws IOException {
+        HitJournal before = open();
+        before.append(hits(0, 3));
+        before.close();
+        HitJournal after = open();
+        after.append(hits(3, 4));
+
+        after.deleteBefore(after.head().segment() + 1);
+
+        assertThat(after.segmentCount()).isEqualTo(1);
+        assertThat(readAll(after)).isEqualTo(hits(3, 4));
+    }
+
+    @Test
+    void hitThatDoesNotFitRecordFormatIsRejected() throws IOException {
+        HitJournal journal = open();
+        EndpointHit hit = new EndpointHit(null, "ewm", "/events/1", "1".repeat(300), TIME);
+
+        assertThatThrownBy(() -> journal.append(List.of(hit))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private HitJournal open() throws IOException {
+        HitJournal journal = new HitJournal(directory.toString(), 1, false);
+        journal.open();
+        return journal;
+    }
+
+    private static List<EndpointHit> readAll(HitJournal journal) {
+        List<EndpointHit> hits = new ArrayList<>();
+        JournalPosition position = journal.start();
+        while (true) {
+            HitJournal.Batch batch = journal.read(position, 100);
+            hits.addAll(batch.hits());
+            if (batch.hits().isEmpty()) {
+                return hits;
+            }
+            position = batch.next();
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.reduce((a, b) -> {
+                throw new IllegalStateException("More than one segment");
+            }).orElseThrow();
+        }
+    }
+
+    // Портит последний байт данных записи с номером record
+    private static void corruptRecord(Path segment, int record) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            long offset = 0;
+            for (int i = 0; ; i++) {
+                header.clear();
+                channel.read(header, offset);
+                int length = header.getInt(0);
+                if (i == record) {
+                    ByteBuffer last = ByteBuffer.allocate(1);
+                    long position = offset + 2 * Integer.BYTES + length - 1;
+                    channel.read(last, position);
+                    channel.write(ByteBuffer.wrap(new byte[]{(byte) (last.get(0) ^ 0x5A)}), position);
+                    return;
+                }
+                offset += 2 * Integer.BYTES + length;
+            }
+        }
+    }
+
+    private static List<EndpointHit> hits(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(i -> new EndpointHit(null, i % 2 == 0 ? "ewm" : "ewm-admin", "/events/" + i,
+                        "192.168.0." + i, TIME.plusSeconds(i)))
+                .toList();
+    }
+}
@@ -0,0 +1,161 @@
+package ru.practicum.stats.repository;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.stats.TestStatsServer;
+import ru.practicum.stats.model.HitRow;
+import ru.practicum.stats.model.UriFilter;
+import ru.practicum.stats.service.StatsService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactStatsRepositoryTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 12, 0);
+    // Строки IP, которые API принимает: канонические IPv4 и IPv6 и то, что inet записал бы иначе или не принял
+    private static final List<String> IPS = List.of("10.0.0.1", "10.0.0.2", "192.168.1.255", "010.0.0.1",
+            "10.0.0.1/24", "2001:DB8::1", "2001:db8::1", "2001:db8:0:0:0:0:0:1", "::ffff:10.0.0.1", "::1",
+            "unknown", "10.0.0");
+
+    private static TestStatsServer plain;
+    private static TestStatsServer compact;
+
+    @BeforeAll
+    static void start() {
+        plain = TestStatsServer.start("stats.storage.mode=plain");
+        compact = TestStatsServer.start("stats.storage.mode=compact");
+        List<EndpointHitDto> hits = hits();
+        plain.getBean(StatsService.class).saveHits(hits);
+        compact.getBean(StatsService.class).saveHits(hits);
+    }
+
+    @AfterAll
+    static void stop() {
+        plain.close();
+        compact.close();
+    }
+
+    @Test
+    void compactStorageAnswersLikePlain() {
+        assertThat(compact.getBean(StatsRepository.class)).isInstanceOf(CompactStatsRepository.class);
+        LocalDateTime from = START.plusMinutes(10);
+        LocalDateTime to = START.plusMinutes(200);
+        List<UriFilter> filters = new ArrayList<>();
+        filters.add(null);
+        filters.add(new UriFilter(Set.of("/events/1", "/events/7", "/missing"), List.of()));
+        filters.add(new UriFilter(Set.of("/events/2"), List.of("/events/1")));
+        filters.add(new UriFilter(Set.of(), List.of("/events/")));
+
+        for (UriFilter filter : filters) {
+            assertSame(repository -> List.copyOf(repository.getStats(from, to, filter)));
+            assertSame(repository -> List.copyOf(repository.getUniqueStats(from, to, filter)));
+            assertSame(repository -> List.copyOf(repository.getStatsInRange(from, to, filter)));
+            assertSame(repository -> List.copyOf(repository.getVisitorsInRange(from, to, filter)));
+        }
+    }
+
+    // Строки IP возвращаются в том виде, в котором пришли
+    @Test
+    void hitsKeepTheirIpStrings() {
+        assertThat(allHits(compact)).containsExactlyInAnyOrderElementsOf(allHits(plain));
+        assertThat(allHits(compact)).extracting(HitRow::ip).containsAll(IPS);
+    }
+
+    @Test
+    void serviceStatsMatchPlain() {
+        for (Boolean unique : List.of(false, true)) {
+            List<String> uris = List.of("/events/1", "/events/3", "/events/4");
+            assertThat(compact.getBean(StatsService.class).getStats(START, START.plusDays(1), uris, unique, false))
+                    .containsExactlyInAnyOrderElementsOf(plain.getBean(StatsService.class)
+                            .getStats(START, START.plusDays(1), uris, unique, false));
+        }
+    }
+
+    // Новые uri интернируются в транзакции записи: второе соединение из пула не нужно
+    @Test
+    void concurrentWritersWithNewUrisNeedOneConnectionEach() throws Exception {
+        try (TestStatsServer small = TestStatsServer.start("stats.storage.mode=compact",
+                "spring.datasource.hikari.maximum-pool-size=2",
+                "spring.datasource.hikari.connection-timeout=2000")) {
+            StatsService service = small.getBean(StatsService.class);
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<?>> writes = new ArrayList<>();
+                for (int writer = 0; writer < 8; writer++) {
+                    int first = writer * 100;
+                    writes.add(executor.submit(() -> {
+                        for (int i = first; i < first + 20; i++) {
+                            service.saveHits(List.of(new EndpointHitDto(null, "ewm", "/new/" + i, "10.0.0.1", START),
+                                    new EndpointHitDto(null, "ewm", "/new/" + (i + 50), "10.0.0.1", START)));
+                        }
+                    }));
+                }
+                for (Future<?> write : writes) {
+                    write.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertThat(small.jdbc().queryForObject("SELECT COUNT(*) FROM endpoint_hits_compact", Long.class))
+                    .isEqualTo(8 * 20 * 2);
+        }
+    }
+
+    // Откат записи не оставляет в кэше id строки, которой нет в словаре
+    @Test
+    void rolledBackValuesAreNotCached() {
+        HitDictionary dictionary = compact.getBean(HitDictionary.class);
+        TransactionTemplate transaction = new TransactionTemplate(compact.getBean(PlatformTransactionManager.class));
+
+        Integer rolledBack = transaction.execute(status -> {
+            status.setRollbackOnly();
+            return dictionary.uriIds(List.of("/rolled-back")).get("/rolled-back");
+        });
+        Map<String, Integer> ids = transaction.execute(status -> dictionary.uriIds(List.of("/rolled-back")));
+
+        assertThat(rolledBack).isNotNull();
+        assertThat(dictionary.findUriId("/rolled-back")).isEqualTo(ids.get("/rolled-back"));
+        assertThat(compact.jdbc().queryForObject("SELECT id FROM hit_uris WHERE uri = '/rolled-back'", Integer.class))
+                .isEqualTo(ids.get("/rolled-back"));
+    }
+
+    private static void assertSame(Function<StatsRepository, List<Object>> query) {
+        assertThat(query.apply(compact.getBean(StatsRepository.class)))
+                .containsExactlyInAnyOrderElementsOf(query.apply(plain.getBean(StatsRepository.class)));
+    }
+
+    private static List<HitRow> allHits(TestStatsServer server) {
+        return new TransactionTemplate(server.getBean(PlatformTransactionManager.class)).execute(status -> {
+            try (Stream<HitRow> hits = server.getBean(StatsRepository.class).streamAllHits()) {
+                return hits.toList();
+            }
+        });
+    }
+
+    // i-й хит: uri /events/{i % 9} (и /events/1x для префиксов), IP по кругу, время START + i минут
+    private static List<EndpointHitDto> hits() {
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String uri = "/events/" + (i % 9 == 8 ? 10 + i % 5 : i % 9);
+            hits.add(new EndpointHitDto(null, i % 4 == 0 ? "ewm-admin" : "ewm", uri, IPS.get(i * 7 % IPS.size()),
+                    START.plusMinutes(i)));
+        }
+        return hits;
+    }
+}
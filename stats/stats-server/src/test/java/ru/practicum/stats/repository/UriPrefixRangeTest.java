@@ -0,0 +1,66 @@
+package ru.practicum.stats.repository;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.TestStatsServer;
+import ru.practicum.stats.service.StatsService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Базы тестового сервера в ICU en-US: без collation "C" диапазон по префиксу захватил бы лишние uri
+// (/events-1, /Events/1) или потерял бы нужные
+class UriPrefixRangeTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 5, 1, 0, 0);
+    private static final String PREFIX = "/events/";
+    private static final List<String> URIS = List.of("/events", "/events/", "/events/1", "/events/10", "/events/Z",
+            "/events/z", "/events/é", "/events/_", "/events/1/comments", "/events-1", "/events0", "/eventsZ",
+            "/Events/1", "/events.", "/event/1", "/events//", "/events/😀");
+
+    private static final Map<String, TestStatsServer> SERVERS = Map.of(
+            "plain", TestStatsServer.start("stats.storage.mode=plain"),
+            "compact", TestStatsServer.start("stats.storage.mode=compact"),
+            "plain-without-rollups", TestStatsServer.start("stats.storage.mode=plain", "stats.rollups.enabled=false"));
+
+    @BeforeAll
+    static void saveHits() {
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < URIS.size() * 10; i++) {
+            hits.add(new EndpointHitDto(null, "ewm", URIS.get(i % URIS.size()), "10.0.0." + i % 7,
+                    START.plusMinutes(i * 37L)));
+        }
+        SERVERS.values().forEach(server -> server.getBean(StatsService.class).saveHits(hits));
+    }
+
+    @AfterAll
+    static void stop() {
+        SERVERS.values().forEach(TestStatsServer::close);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"plain", "compact", "plain-without-rollups"})
+    void prefixAnswersLikeExplicitUriList(String storage) {
+        StatsService service = SERVERS.get(storage).getBean(StatsService.class);
+        List<String> explicit = URIS.stream().filter(uri -> uri.startsWith(PREFIX)).toList();
+        // Середина часа и дня: запрос идёт и по роллапам, и по сырым хитам
+        LocalDateTime from = START.plusMinutes(7);
+        LocalDateTime to = START.plusDays(3).plusMinutes(13);
+
+        for (Boolean unique : List.of(false, true)) {
+            List<ViewStatsDto> byPrefix = service.getStats(from, to, List.of(PREFIX + "*"), unique, false);
+
+            assertThat(byPrefix).containsExactlyInAnyOrderElementsOf(
+                    service.getStats(from, to, explicit, unique, false));
+            assertThat(byPrefix).extracting(ViewStatsDto::getUri).containsExactlyInAnyOrderElementsOf(explicit);
+        }
+    }
+}
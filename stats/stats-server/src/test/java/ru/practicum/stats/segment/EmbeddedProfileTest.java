@@ -0,0 +1,41 @@
+package ru.practicum.stats.segment;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.TestStatsServer;
+import ru.practicum.stats.repository.HitRollupRepository;
+import ru.practicum.stats.repository.SegmentStatsRepository;
+import ru.practicum.stats.repository.StatsRepository;
+import ru.practicum.stats.service.StatsService;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Профиль embedded поднимает встроенное хранилище и не создаёт SQL-бинов
+class EmbeddedProfileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void embeddedProfileUsesSegmentStore() {
+        try (TestStatsServer server = TestStatsServer.start("spring.profiles.active=embedded",
+                "stats.segments.dir=" + dir)) {
+            StatsService service = server.getBean(StatsService.class);
+            LocalDateTime time = LocalDateTime.of(2024, 3, 1, 12, 0);
+            service.saveHits(List.of(new EndpointHitDto(null, "ewm", "/events/1", "10.0.0.1", time),
+                    new EndpointHitDto(null, "ewm", "/events/1", "10.0.0.2", time.plusMinutes(1))));
+
+            assertThat(server.getBean(StatsRepository.class)).isInstanceOf(SegmentStatsRepository.class);
+            assertThatThrownBy(() -> server.getBean(HitRollupRepository.class)).isNotNull();
+            assertThat(service.getStats(time, time.plusHours(1), null, false, false))
+                    .containsExactly(new ViewStatsDto("ewm", "/events/1", 2L));
+        }
+    }
+}
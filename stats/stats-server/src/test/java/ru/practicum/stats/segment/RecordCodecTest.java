@@ -0,0 +1,90 @@
+package ru.practicum.stats.segment;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecordCodecTest {
+
+    // Время и id идут и назад: разности кодируются со знаком
+    private static final List<HitRecord> RECORDS = List.of(
+            new HitRecord("ewm", "", "10.0.0.1", 0, 1),
+            new HitRecord("ewm", "/events/10", "10.0.0.1", 1_709_294_400_000_000L, 2),
+            new HitRecord("ewm", "/events/10", "10.0.0.2", 1_709_294_400_000_000L, 3),
+            new HitRecord("ewm", "/events/1", "::1", 1_709_294_399_999_999L, 1),
+            new HitRecord("ewm-admin", "/events/1", "::1", -86_400_000_000L, 100),
+            new HitRecord("ewm", "/события/😀", "2001:db8::ff00:42:8329", Long.MAX_VALUE / 2, Long.MAX_VALUE / 2),
+            new HitRecord("", "/события/😁", "", Long.MIN_VALUE / 2, 0));
+
+    @Test
+    void blockRoundTrip() {
+        ByteBuffer block = encode(RECORDS);
+
+        assertThat(decode(RecordCodec.readBlock(block, 0))).isEqualTo(RECORDS);
+    }
+
+    // После finish() кодировщик начинает блок с чистого состояния, блоки читаются независимо
+    @Test
+    void encoderStartsEachBlockFromScratch() {
+        RecordCodec.Encoder encoder = new RecordCodec.Encoder();
+        RECORDS.subList(0, 3).forEach(encoder::add);
+        ByteBuffer first = encoder.finish();
+        RECORDS.subList(3, RECORDS.size()).forEach(encoder::add);
+        ByteBuffer second = encoder.finish();
+        ByteBuffer both = ByteBuffer.allocate(first.capacity() + second.capacity()).put(first).put(second);
+
+        List<HitRecord> decoded = new ArrayList<>(decode(RecordCodec.readBlock(both, 0)));
+        decoded.addAll(decode(RecordCodec.readBlock(both, first.capacity())));
+
+        assertThat(decoded).isEqualTo(RECORDS);
+    }
+
+    @Test
+    void corruptedDataFailsChecksum() {
+        ByteBuffer block = encode(RECORDS);
+        int last = block.capacity() - 1;
+        block.put(last, (byte) (block.get(last) ^ 1));
+
+        assertThat(RecordCodec.readBlock(block, 0)).isNull();
+    }
+
+    @Test
+    void truncatedBlockIsNotRead() {
+        ByteBuffer block = encode(RECORDS);
+
+        for (int limit = 0; limit < block.capacity(); limit++) {
+            assertThat(RecordCodec.readBlock(block.duplicate().limit(limit), 0)).as("limit %d", limit).isNull();
+        }
+    }
+
+    // Нули после последнего блока (недописанный хвост файла) - не блок
+    @Test
+    void zeroLengthIsEndOfData() {
+        assertThat(RecordCodec.readBlock(ByteBuffer.allocate(64), 0)).isNull();
+    }
+
+    private static ByteBuffer encode(List<HitRecord> records) {
+        RecordCodec.Encoder encoder = new RecordCodec.Encoder();
+        records.forEach(encoder::add);
+        assertThat(encoder.records()).isEqualTo(records.size());
+        int size = encoder.size();
+        ByteBuffer block = encoder.finish();
+        assertThat(block.capacity()).isEqualTo(size);
+        assertThat(encoder.size()).isEqualTo(RecordCodec.HEADER);
+        return block;
+    }
+
+    private static List<HitRecord> decode(ByteBuffer data) {
+        assertThat(data).isNotNull();
+        List<HitRecord> records = new ArrayList<>();
+        RecordCodec.Decoder decoder = new RecordCodec.Decoder(data);
+        while (decoder.hasNext()) {
+            records.add(decoder.next());
+        }
+        return records;
+    }
+}
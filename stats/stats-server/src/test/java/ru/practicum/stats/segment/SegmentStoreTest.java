@@ -0,0 +1,202 @@
+package ru.practicum.stats.segment;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.UriFilter;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class SegmentStoreTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    @TempDir
+    Path dir;
+
+    private final List<SegmentStore> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeStores() throws InterruptedException {
+        for (SegmentStore store : opened) {
+            store.close();
+        }
+    }
+
+    @Test
+    void appendAssignsSequentialIdsAndIsVisibleAtOnce() throws IOException {
+        SegmentStore store = open(1000, 4);
+
+        List<EndpointHit> first = store.append(hits(0, 10));
+        List<EndpointHit> second = store.append(hits(10, 5));
+
+        assertThat(first).extracting(EndpointHit::getId).containsExactly(ids(1, 10));
+        assertThat(second).extracting(EndpointHit::getId).containsExactly(ids(11, 15));
+        assertThat(store.append(List.of())).isEmpty();
+        assertThat(ids(store)).containsExactly(ids(1, 15));
+
+        List<HitRecord> found = new ArrayList<>();
+        store.scan(HitRecord.toMicros(START.plusMinutes(3)), HitRecord.toMicros(START.plusMinutes(6)),
+                new UriFilter(Set.of("/events/3", "/events/5"), List.of()), found::add);
+        assertThat(found).extracting(HitRecord::id).containsExactlyInAnyOrder(4L, 6L);
+    }
+
+    @Test
+    void flushesMemtablesAndMergesSegments() throws IOException {
+        SegmentStore store = open(100, 2);
+
+        for (int i = 0; i < 8; i++) {
+            store.append(hits(i * 100, 100));
+        }
+
+        // 8 сброшенных memtable по 100 хитов сливаются парами до одного сегмента 1-8
+        await().atMost(Duration.ofSeconds(10))
+                .untilAsserted(() -> assertThat(files(".sst")).containsExactly(Segment.path(dir, 1, 8)));
+        assertThat(files(".wal")).containsExactly(WriteAheadLog.path(dir, 9));
+        assertThat(ids(store)).containsExactly(ids(1, 800));
+        List<HitRecord> found = new ArrayList<>();
+        store.scan(Long.MIN_VALUE, Long.MAX_VALUE, new UriFilter(Set.of(), List.of("/events/1")), found::add);
+        // /events/1 и /events/10..19 - 11 uri из 20
+        assertThat(found).hasSize(800 / 20 * 11);
+    }
+
+    @Test
+    void reopenKeepsHitsAndContinuesIds() throws Exception {
+        SegmentStore store = open(100, 4);
+        // Поколение сменяется после пачки, на которой memtable заполнилась
+        store.append(hits(0, 100));
+        store.append(hits(100, 100));
+        store.append(hits(200, 50));
+        await().atMost(Duration.ofSeconds(10)).until(() -> files(".sst").size() == 2);
+        close(store);
+
+        SegmentStore reopened = open(100, 4);
+
+        assertThat(ids(reopened)).containsExactly(ids(1, 250));
+        assertThat(reopened.append(hits(250, 1))).extracting(EndpointHit::getId).containsExactly(251L);
+    }
+
+    // Хиты, не сброшенные в сегмент, восстанавливаются из журнала
+    @Test
+    void recoversUnflushedHitsFromWriteAheadLog() throws Exception {
+        SegmentStore store = open(1000, 4);
+        store.append(hits(0, 30));
+        store.append(hits(30, 20));
+        close(store);
+        assertThat(files(".wal")).containsExactly(WriteAheadLog.path(dir, 1));
+
+        SegmentStore reopened = open(1000, 4);
+
+        assertThat(ids(reopened)).containsExactly(ids(1, 50));
+        assertThat(files(".sst")).containsExactly(Segment.path(dir, 1, 1));
+        assertThat(files(".wal")).containsExactly(WriteAheadLog.path(dir, 2));
+    }
+
+    // Недописанная последняя пачка теряется, предыдущие читаются
+    @Test
+    void truncatedWriteAheadLogRecoversEarlierBatches() throws Exception {
+        SegmentStore store = open(1000, 4);
+        store.append(hits(0, 30));
+        store.append(hits(30, 20));
+        close(store);
+        try (FileChannel channel = FileChannel.open(WriteAheadLog.path(dir, 1), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        SegmentStore reopened = open(1000, 4);
+
+        assertThat(ids(reopened)).containsExactly(ids(1, 30));
+        assertThat(reopened.append(hits(30, 1))).extracting(EndpointHit::getId).containsExactly(31L);
+    }
+
+    // Слияние прервано после переименования результата: исходные сегменты удаляются при старте
+    @Test
+    void interruptedMergeLeavesNoDuplicates() throws Exception {
+        SegmentStore store = open(100, 8);
+        for (int i = 0; i < 3; i++) {
+            store.append(hits(i * 100, 100));
+        }
+        await().atMost(Duration.ofSeconds(10)).until(() -> files(".sst").size() == 3);
+        close(store);
+        List<Segment> sources = Stream.of(Segment.path(dir, 1, 1), Segment.path(dir, 2, 2))
+                .map(Segment::open)
+                .toList();
+        List<HitRecord> merged = new ArrayList<>();
+        sources.forEach(segment -> segment.iterator().forEachRemaining(merged::add));
+        merged.sort(HitRecord.ORDER);
+        Segment.write(dir, 1, 2, merged.iterator());
+
+        SegmentStore reopened = open(100, 8);
+
+        assertThat(ids(reopened)).containsExactly(ids(1, 300));
+        assertThat(files(".sst")).containsExactly(Segment.path(dir, 1, 2), Segment.path(dir, 3, 3));
+    }
+
+    @Test
+    void leftoverTemporaryFilesAreDeleted() throws Exception {
+        Path temporary = Files.writeString(dir.resolve(Segment.path(dir, 1, 1).getFileName() + ".tmp"), "partial");
+
+        SegmentStore store = open(1000, 4);
+
+        assertThat(temporary).doesNotExist();
+        assertThat(ids(store)).isEmpty();
+    }
+
+    private SegmentStore open(int memtableHits, int mergeFactor) throws IOException {
+        SegmentStore store = new SegmentStore(dir.toString(), memtableHits, mergeFactor, false,
+                new SimpleMeterRegistry());
+        store.open();
+        opened.add(store);
+        return store;
+    }
+
+    private void close(SegmentStore store) throws InterruptedException {
+        opened.remove(store);
+        store.close();
+    }
+
+    private List<Path> files(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(suffix))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    // i-й хит - uri /events/{i % 20}, время START + i минут
+    private static List<EndpointHit> hits(int from, int count) {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            hits.add(new EndpointHit(null, "ewm", "/events/" + i % 20, "10.0.0." + i % 7,
+                    START.plusMinutes(i)));
+        }
+        return hits;
+    }
+
+    private static List<Long> ids(SegmentStore store) {
+        return store.stream()
+                .map(HitRecord::id)
+                .sorted()
+                .toList();
+    }
+
+    private static Long[] ids(long from, long to) {
+        return LongStream.rangeClosed(from, to).boxed().toArray(Long[]::new);
+    }
+}
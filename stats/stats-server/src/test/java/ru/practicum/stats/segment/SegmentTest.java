@@ -0,0 +1,160 @@
+package ru.practicum.stats.segment;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.stats.model.UriFilter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SegmentTest {
+
+    private static final long BASE = 1_709_294_400_000_000L;
+    private static final long MINUTE = 60_000_000L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writeAndReadBackAllRecords() throws IOException {
+        List<HitRecord> records = records(20_000);
+        Segment segment = Segment.write(dir, 3, 7, records.iterator());
+
+        assertThat(segment.file()).isEqualTo(Segment.path(dir, 3, 7));
+        assertThat(segment.firstGeneration()).isEqualTo(3);
+        assertThat(segment.lastGeneration()).isEqualTo(7);
+        assertThat(segment.records()).isEqualTo(records.size());
+        assertThat(segment.maxId()).isEqualTo(records.size());
+        // Записей хватает на много блоков
+        assertThat(segment.bytes()).isGreaterThan(10L * Segment.BLOCK_SIZE);
+        assertThat(read(Segment.open(segment.file()))).isEqualTo(records);
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files).containsExactly(segment.file());
+        }
+    }
+
+    @Test
+    void emptySegment() {
+        Segment segment = Segment.write(dir, 1, 1, List.<HitRecord>of().iterator());
+
+        assertThat(segment.records()).isZero();
+        assertThat(segment.iterator()).isExhausted();
+        List<HitRecord> found = new ArrayList<>();
+        segment.scan(Long.MIN_VALUE, Long.MAX_VALUE, null, found::add);
+        assertThat(found).isEmpty();
+    }
+
+    @Test
+    void scanMatchesFilteredInput() {
+        List<HitRecord> records = records(20_000);
+        Segment segment = Segment.write(dir, 1, 1, records.iterator());
+        long from = BASE + 10 * MINUTE;
+        long to = BASE + 50 * MINUTE;
+        List<UriFilter> filters = List.of(
+                new UriFilter(Set.of("/events/1", "/events/10", "/events/42", "/missing"), List.of()),
+                new UriFilter(Set.of(), List.of("/events/1")),
+                new UriFilter(Set.of("/events/17", "/events/5"), List.of("/events/1", "/events/3")),
+                new UriFilter(Set.of(), List.of("/")),
+                new UriFilter(Set.of(), List.of("/users")));
+
+        assertThat(scan(segment, from, to, null))
+                .isEqualTo(filter(records, from, to, record -> true));
+        assertThat(scan(segment, Long.MIN_VALUE, Long.MAX_VALUE, null)).isEqualTo(records);
+        assertThat(scan(segment, BASE + 1000 * MINUTE, Long.MAX_VALUE, null)).isEmpty();
+        for (UriFilter filter : filters) {
+            assertThat(scan(segment, from, to, filter))
+                    .as("filter %s", filter)
+                    .isEqualTo(filter(records, from, to, record -> filter.matches(record.uri())));
+        }
+    }
+
+    @Test
+    void corruptedBlockIsReported() throws IOException {
+        Segment segment = Segment.write(dir, 1, 1, records(1000).iterator());
+        Path file = segment.file();
+        flipByte(file, RecordCodec.HEADER + 10);
+
+        Segment corrupted = Segment.open(file);
+
+        assertThatThrownBy(() -> read(corrupted))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Corrupted block 0");
+    }
+
+    @Test
+    void fileWithoutFooterIsRejected() throws IOException {
+        Path file = Segment.path(dir, 1, 1);
+        Files.write(file, new byte[100]);
+
+        assertThatThrownBy(() -> Segment.open(file))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Not a hit segment");
+    }
+
+    @Test
+    void truncatedSegmentIsRejected() throws IOException {
+        Segment segment = Segment.write(dir, 1, 1, records(1000).iterator());
+        Path file = segment.file();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        assertThatThrownBy(() -> Segment.open(file)).isInstanceOf(IllegalStateException.class);
+    }
+
+    // Отсортированные хиты по 50 uri за час, с повторами времени
+    static List<HitRecord> records(int count) {
+        Random random = new Random(count);
+        List<HitRecord> records = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            records.add(new HitRecord(random.nextInt(5) == 0 ? "ewm-admin" : "ewm",
+                    "/events/" + random.nextInt(50),
+                    "10.0." + random.nextInt(4) + "." + random.nextInt(256),
+                    BASE + random.nextInt(60) * MINUTE + random.nextInt(3) * 1000,
+                    i));
+        }
+        records.sort(HitRecord.ORDER);
+        return records;
+    }
+
+    static void flipByte(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, position);
+            value.put(0, (byte) (value.get(0) ^ 0x10)).rewind();
+            channel.write(value, position);
+        }
+    }
+
+    private static List<HitRecord> read(Segment segment) {
+        List<HitRecord> records = new ArrayList<>();
+        segment.iterator().forEachRemaining(records::add);
+        return records;
+    }
+
+    private static List<HitRecord> scan(Segment segment, long from, long to, UriFilter filter) {
+        List<HitRecord> found = new ArrayList<>();
+        segment.scan(from, to, filter, found::add);
+        found.sort(HitRecord.ORDER);
+        return found;
+    }
+
+    private static List<HitRecord> filter(List<HitRecord> records, long from, long to, Predicate<HitRecord> uri) {
+        return records.stream()
+                .filter(record -> record.micros() >= from && record.micros() < to && uri.test(record))
+                .toList();
+    }
+}
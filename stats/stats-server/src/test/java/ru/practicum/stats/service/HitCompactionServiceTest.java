@@ -0,0 +1,111 @@
+package ru.practicum.stats.service;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.TestStatsServer;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HitCompactionServiceTest {
+
+    private static final LocalDateTime TODAY = LocalDate.now().atStartOfDay();
+    private static final List<String> URIS = List.of("/events/1", "/events/3");
+
+    // Начала в уплотнённой части - начала дней, концы - целые минуты: точность уплотнённых данных
+    private static final List<LocalDateTime[]> RANGES = List.of(
+            range(TODAY.minusDays(10), TODAY.minusSeconds(1)),
+            range(TODAY.minusDays(8), TODAY.minusDays(3).plusHours(7).plusMinutes(45).minusSeconds(1)),
+            range(TODAY.minusDays(7), TODAY.minusDays(5).plusHours(6).minusSeconds(1)),
+            range(TODAY.minusDays(6), TODAY.minusDays(5).minusSeconds(1)),
+            range(TODAY.minusDays(4).plusHours(9).plusMinutes(30), TODAY.minusDays(2).plusHours(18)));
+
+    // getStats до и после уплотнения, в том числе после перезапуска, совпадает с подсчётом по сырым хитам
+    @Test
+    void statsStayCorrectAcrossCompactionBoundary() {
+        TestStatsServer server = TestStatsServer.start("stats.unique-index.enabled=true",
+                "stats.compaction.after-days=5", "stats.hot-window.enabled=false");
+        List<List<ViewStatsDto>> expected = new ArrayList<>();
+        try {
+            server.getBean(StatsService.class).saveHits(hits());
+            for (LocalDateTime[] range : RANGES) {
+                for (boolean unique : List.of(false, true)) {
+                    for (List<String> uris : listOfUris()) {
+                        expected.add(count(server, range, uris, unique));
+                    }
+                }
+            }
+            assertStats(server, expected);
+
+            server.getBean(HitCompactionService.class).compact();
+
+            assertThat(server.jdbc().queryForObject("SELECT MIN(timestamp) FROM endpoint_hits",
+                    LocalDateTime.class)).isAfterOrEqualTo(TODAY.minusDays(5));
+            assertStats(server, expected);
+        } catch (RuntimeException | AssertionError e) {
+            server.close();
+            throw e;
+        }
+
+        try (TestStatsServer restarted = server.restart()) {
+            assertStats(restarted, expected);
+        }
+    }
+
+    private static void assertStats(TestStatsServer server, List<List<ViewStatsDto>> expected) {
+        StatsService service = server.getBean(StatsService.class);
+        int i = 0;
+        for (LocalDateTime[] range : RANGES) {
+            for (boolean unique : List.of(false, true)) {
+                for (List<String> uris : listOfUris()) {
+                    assertThat(service.getStats(range[0], range[1], uris, unique, false))
+                            .as("range %s - %s, uris %s, unique %s", range[0], range[1], uris, unique)
+                            .containsExactlyInAnyOrderElementsOf(expected.get(i++));
+                }
+            }
+        }
+    }
+
+    private static List<ViewStatsDto> count(TestStatsServer server,
+                                            LocalDateTime[] range,
+                                            List<String> uris,
+                                            boolean unique) {
+        String sql = "SELECT app, uri, " + (unique ? "COUNT(DISTINCT ip)" : "COUNT(*)") + " AS hits " +
+                "FROM endpoint_hits WHERE timestamp BETWEEN ? AND ? " +
+                (uris == null ? "" : "AND uri IN ('" + String.join("', '", uris) + "') ") +
+                "GROUP BY app, uri";
+        return server.jdbc().query(sql,
+                (rs, rowNum) -> new ViewStatsDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")),
+                range[0], range[1]);
+    }
+
+    private static List<List<String>> listOfUris() {
+        List<List<String>> result = new ArrayList<>();
+        result.add(null);
+        result.add(URIS);
+        return result;
+    }
+
+    // Десять полных дней до сегодняшнего, 40 адресов на 5 uri двух приложений
+    private static List<EndpointHitDto> hits() {
+        Random random = new Random(23);
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            LocalDateTime timestamp = TODAY.minusDays(10).plusSeconds(random.nextInt(10 * 24 * 3600));
+            hits.add(new EndpointHitDto(null, random.nextInt(4) == 0 ? "ewm-admin" : "ewm",
+                    "/events/" + random.nextInt(5), "10.0." + random.nextInt(2) + "." + random.nextInt(20),
+                    timestamp));
+        }
+        return hits;
+    }
+
+    private static LocalDateTime[] range(LocalDateTime start, LocalDateTime end) {
+        return new LocalDateTime[] {start, end};
+    }
+}
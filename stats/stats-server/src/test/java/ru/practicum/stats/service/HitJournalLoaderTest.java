@@ -0,0 +1,67 @@
+package ru.practicum.stats.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.stats.TestStatsServer;
+import ru.practicum.stats.journal.HitJournal;
+import ru.practicum.stats.model.JournalPosition;
+import ru.practicum.stats.repository.JournalPositionRepository;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class HitJournalLoaderTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    @TempDir
+    Path dir;
+
+    // Отклонённая БД запись пропускается, остальные хиты пачки записываются по одному вместе с позицией:
+    // после перезапуска ничего не перечитывается повторно
+    @Test
+    void rejectedBatchIsLoadedRecordByRecordWithPosition() {
+        TestStatsServer server = TestStatsServer.start("stats.ingest.mode=journal",
+                "stats.journal.dir=" + dir, "stats.journal.poll-interval-ms=10");
+        try {
+            List<EndpointHitDto> hits = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                // app длиннее VARCHAR(255): журнал примет, БД - нет
+                String app = i == 4 ? "a".repeat(300) : "ewm";
+                hits.add(new EndpointHitDto(null, app, "/events/" + i, "10.0.0.1", START.plusMinutes(i)));
+            }
+            server.getBean(StatsService.class).saveHits(hits);
+            JournalPosition head = server.getBean(HitJournal.class).head();
+            JournalPositionRepository positions = server.getBean(JournalPositionRepository.class);
+
+            await().atMost(Duration.ofSeconds(10)).until(() -> positions.find().filter(head::equals).isPresent());
+
+            assertThat(count(server)).isEqualTo(9);
+            assertThat(server.getBean(MeterRegistry.class).counter("stats.journal.rejected").count()).isEqualTo(1);
+        } catch (RuntimeException | AssertionError e) {
+            server.close();
+            throw e;
+        }
+
+        try (TestStatsServer restarted = server.restart()) {
+            restarted.getBean(StatsService.class).saveHits(List.of(
+                    new EndpointHitDto(null, "ewm", "/events/10", "10.0.0.1", START.plusMinutes(10))));
+
+            await().atMost(Duration.ofSeconds(10)).until(() -> count(restarted) == 10);
+            assertThat(restarted.jdbc().queryForObject("SELECT COUNT(DISTINCT uri) FROM endpoint_hits", Long.class))
+                    .isEqualTo(10);
+        }
+    }
+
+    private static long count(TestStatsServer server) {
+        return server.jdbc().queryForObject("SELECT COUNT(*) FROM endpoint_hits", Long.class);
+    }
+}
@@ -0,0 +1,45 @@
+package ru.practicum.stats.service;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.TestStatsServer;
+import ru.practicum.stats.model.RollupGranularity;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HitPartitionServiceTest {
+
+    // Вместе с секциями старше retention-months удаляются и роллапы: статистика за эти месяцы пустая
+    @Test
+    void retentionDropsRollupsWithPartitions() {
+        try (TestStatsServer server = TestStatsServer.start("stats.partitions.retention-months=2")) {
+            StatsService service = server.getBean(StatsService.class);
+            LocalDateTime old = YearMonth.now().minusMonths(6).atDay(10).atTime(12, 0);
+            LocalDateTime recent = YearMonth.now().atDay(1).atTime(0, 30);
+            service.saveHits(List.of(new EndpointHitDto(null, "ewm", "/events/1", "10.0.0.1", old),
+                    new EndpointHitDto(null, "ewm", "/events/1", "10.0.0.2", old.plusMinutes(1)),
+                    new EndpointHitDto(null, "ewm", "/events/1", "10.0.0.1", recent)));
+            assertThat(service.getStats(old.minusDays(1), old.plusDays(1), null, false, false))
+                    .containsExactly(new ViewStatsDto("ewm", "/events/1", 2L));
+
+            // Первый проход переносит старый месяц из секции по умолчанию, второй удаляет его секцию
+            HitPartitionService partitionService = server.getBean(HitPartitionService.class);
+            partitionService.maintain();
+            partitionService.maintain();
+
+            LocalDateTime oldestKept = YearMonth.now().minusMonths(2).atDay(1).atStartOfDay();
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                assertThat(server.jdbc().queryForObject("SELECT COUNT(*) FROM " + granularity.getTable()
+                        + " WHERE bucket < ?", Long.class, oldestKept)).isZero();
+            }
+            assertThat(service.getStats(old.minusDays(1), old.plusDays(1), null, false, false)).isEmpty();
+            assertThat(service.getStats(old.minusDays(1), recent.plusHours(1), null, false, false))
+                    .containsExactly(new ViewStatsDto("ewm", "/events/1", 1L));
+        }
+    }
+}
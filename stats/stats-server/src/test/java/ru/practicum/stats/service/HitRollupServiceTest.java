@@ -0,0 +1,100 @@
+package ru.practicum.stats.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.stats.TestStatsServer;
+import ru.practicum.stats.model.RollupGranularity;
+import ru.practicum.stats.model.RollupSegment;
+import ru.practicum.stats.model.UriFilter;
+import ru.practicum.stats.repository.StatsRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HitRollupServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 10, 15, 30);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 3, 5, 14, 45, 10);
+
+    private static TestStatsServer server;
+
+    @BeforeAll
+    static void start() {
+        server = TestStatsServer.start();
+        server.getBean(StatsService.class).saveHits(hits());
+    }
+
+    @AfterAll
+    static void stop() {
+        server.close();
+    }
+
+    // Края диапазона дробятся до минут и сырых хитов, середина берётся из самой крупной гранулярности
+    @Test
+    void planDecomposesRangeByGranularity() {
+        LocalDateTime endExclusive = END.plusNanos(1000);
+
+        assertThat(server.getBean(HitRollupService.class).plan(START, END)).containsExactly(
+                new RollupSegment(null, START, START.withSecond(0).plusMinutes(1)),
+                new RollupSegment(RollupGranularity.MINUTE, START.withSecond(0).plusMinutes(1), START.withMinute(0)
+                        .withSecond(0).plusHours(1)),
+                new RollupSegment(RollupGranularity.HOUR, START.withMinute(0).withSecond(0).plusHours(1),
+                        START.toLocalDate().plusDays(1).atStartOfDay()),
+                new RollupSegment(RollupGranularity.DAY, START.toLocalDate().plusDays(1).atStartOfDay(),
+                        END.toLocalDate().atStartOfDay()),
+                new RollupSegment(RollupGranularity.HOUR, END.toLocalDate().atStartOfDay(),
+                        END.withMinute(0).withSecond(0)),
+                new RollupSegment(RollupGranularity.MINUTE, END.withMinute(0).withSecond(0), END.withSecond(0)),
+                new RollupSegment(null, END.withSecond(0), endExclusive));
+    }
+
+    // Внутри одной минуты роллапы не нужны
+    @Test
+    void planWithinMinuteReadsRawHits() {
+        assertThat(server.getBean(HitRollupService.class).plan(START, START.plusSeconds(10)))
+                .containsExactly(new RollupSegment(null, START, START.plusSeconds(10).plusNanos(1000)));
+    }
+
+    @Test
+    void rollupStatsMatchRawHits() {
+        HitRollupService rollups = server.getBean(HitRollupService.class);
+        StatsRepository repository = server.getBean(StatsRepository.class);
+        List<UriFilter> filters = new ArrayList<>();
+        filters.add(null);
+        filters.add(new UriFilter(Set.of("/events/1", "/events/3"), List.of()));
+        filters.add(new UriFilter(Set.of(), List.of("/events/")));
+        List<LocalDateTime[]> ranges = List.of(new LocalDateTime[]{START, END},
+                new LocalDateTime[]{START.minusDays(1), END.plusDays(1)},
+                new LocalDateTime[]{START.plusMinutes(1), START.plusMinutes(2)},
+                new LocalDateTime[]{END.withMinute(0), END});
+
+        for (LocalDateTime[] range : ranges) {
+            for (UriFilter filter : filters) {
+                assertThat(rollups.getStats(range[0], range[1], filter))
+                        .as("%s %s", Arrays.toString(range), filter)
+                        .containsExactlyInAnyOrderElementsOf(repository.getStats(range[0], range[1], filter));
+            }
+        }
+    }
+
+    // Хиты каждые 7 минут 13 секунд вокруг диапазона и точно на его границах
+    private static List<EndpointHitDto> hits() {
+        List<EndpointHitDto> hits = new ArrayList<>();
+        LocalDateTime time = START.minusDays(1);
+        for (int i = 0; time.isBefore(END.plusDays(1)); i++) {
+            hits.add(new EndpointHitDto(null, "ewm", "/events/" + i % 5, "10.0.0." + i % 7, time));
+            time = time.plusSeconds(7 * 60 + 13);
+        }
+        for (LocalDateTime edge : List.of(START, END, START.minusNanos(1000), END.plusNanos(1000))) {
+            hits.add(new EndpointHitDto(null, "ewm", "/events/1", "10.0.0.1", edge));
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,99 @@
+package ru.practicum.stats.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.ViewStatsDto;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.HitsSavedEvent;
+import ru.practicum.stats.model.StatsQuery;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatsResultCacheTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 0, 0);
+    private static final LocalDateTime END = START.plusDays(1);
+
+    private final StatsResultCache cache = new StatsResultCache(new SimpleMeterRegistry(), 100, 60_000);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void repeatedQueryIsAnsweredFromCache() {
+        StatsQuery query = query(List.of("/events/1"));
+
+        assertThat(get(query)).isEqualTo(get(query));
+        assertThat(loads).hasValue(1);
+    }
+
+    // Сбрасываются только запросы, в окно и uri которых попал хит
+    @Test
+    void hitInvalidatesQueriesCoveringItsUriAndTime() {
+        StatsQuery exact = query(List.of("/events/1"));
+        StatsQuery other = query(List.of("/events/2"));
+        StatsQuery all = query(null);
+        StatsQuery pattern = query(List.of("/events/*"));
+        StatsQuery otherPattern = query(List.of("/users/*"));
+        List<StatsQuery> queries = List.of(exact, other, all, pattern, otherPattern);
+        queries.forEach(this::get);
+
+        cache.onHitsSaved(new HitsSavedEvent(List.of(hit("/events/1", START.plusHours(1)))));
+        queries.forEach(this::get);
+
+        // Перезагружены exact, all и pattern
+        assertThat(loads).hasValue(queries.size() + 3);
+    }
+
+    @Test
+    void hitOutsideWindowKeepsEntries() {
+        List<StatsQuery> queries = List.of(query(List.of("/events/1")), query(null), query(List.of("/events/*")));
+        queries.forEach(this::get);
+
+        cache.onHitsSaved(new HitsSavedEvent(List.of(hit("/events/1", END.plusSeconds(1)))));
+        cache.onHitsSaved(new HitsSavedEvent(List.of(hit("/events/1", START.minusSeconds(1)))));
+        queries.forEach(this::get);
+
+        assertThat(loads).hasValue(queries.size());
+    }
+
+    // Хиты пришли во время подсчёта: результат мог их не учесть и не кладётся в кэш
+    @Test
+    void resultLoadedDuringWriteIsNotCached() {
+        StatsQuery query = query(List.of("/events/1"));
+        cache.get(query, () -> {
+            loads.incrementAndGet();
+            cache.onHitsSaved(new HitsSavedEvent(List.of(hit("/events/1", START.plusHours(1)))));
+            return List.of();
+        });
+
+        get(query);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void invalidateAllDropsEveryEntry() {
+        List<StatsQuery> queries = List.of(query(List.of("/events/1")), query(null), query(List.of("/events/*")));
+        queries.forEach(this::get);
+
+        cache.invalidateAll();
+        queries.forEach(this::get);
+
+        assertThat(loads).hasValue(queries.size() * 2);
+    }
+
+    private List<ViewStatsDto> get(StatsQuery query) {
+        return cache.get(query, () -> List.of(new ViewStatsDto("ewm", "/events/1", (long) loads.incrementAndGet())));
+    }
+
+    private static StatsQuery query(List<String> uris) {
+        return StatsQuery.of(START, END, uris, false, false);
+    }
+
+    private static EndpointHit hit(String uri, LocalDateTime timestamp) {
+        return new EndpointHit(null, "ewm", uri, "10.0.0.1", timestamp);
+    }
+}
@@ -0,0 +1,86 @@
+package ru.practicum.stats.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.stats.exception.ValidationException;
+import ru.practicum.stats.index.UriTrie;
+import ru.practicum.stats.model.UriFilter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UriFilterResolverTest {
+
+    private static final List<String> URIS = List.of("/events", "/events/1", "/events/2", "/events/1/comments",
+            "/events/2/comments", "/events/2/likes", "/events-archive/1", "/compilations/1");
+
+    private final UriTrie trie = trie();
+
+    @Test
+    void nullMeansAllUris() {
+        UriFilterResolver resolver = new UriFilterResolver(Optional.of(trie), false);
+
+        assertThat(resolver.resolve(null)).isNull();
+        assertThat(resolver.resolve(List.of("/events/1", "*"))).isNull();
+    }
+
+    @Test
+    void exactUrisAreKeptAsIs() {
+        UriFilter filter = new UriFilterResolver(Optional.of(trie), false).resolve(List.of("/events/1", "/unknown"));
+
+        assertThat(filter).isEqualTo(new UriFilter(Set.of("/events/1", "/unknown"), List.of()));
+    }
+
+    // Вложенные префиксы и точные uri под префиксом поглощаются более коротким префиксом
+    @Test
+    void prefixPatternsBecomeMinimalPrefixes() {
+        UriFilter filter = new UriFilterResolver(Optional.of(trie), false)
+                .resolve(List.of("/events/1/*", "/events/*", "/events/2", "/compilations/1"));
+
+        assertThat(filter).isEqualTo(new UriFilter(Set.of("/compilations/1"), List.of("/events/")));
+    }
+
+    @Test
+    void prefixUnknownToTrieMatchesNothing() {
+        UriFilter filter = new UriFilterResolver(Optional.of(trie), false).resolve(List.of("/users/*"));
+
+        assertThat(filter.isEmpty()).isTrue();
+    }
+
+    @Test
+    void wildcardInsideIsExpandedByTrie() {
+        UriFilter filter = new UriFilterResolver(Optional.of(trie), false)
+                .resolve(List.of("/events/*/comments", "/events*archive/*"));
+
+        assertThat(filter).isEqualTo(new UriFilter(
+                Set.of("/events/1/comments", "/events/2/comments", "/events-archive/1"), List.of()));
+    }
+
+    @Test
+    void expandPrefixesFallbackListsUrisUnderPrefix() {
+        UriFilter filter = new UriFilterResolver(Optional.of(trie), true).resolve(List.of("/events/*"));
+
+        assertThat(filter).isEqualTo(new UriFilter(Set.of("/events/1", "/events/2", "/events/1/comments",
+                "/events/2/comments", "/events/2/likes"), List.of()));
+    }
+
+    @Test
+    void withoutTrieOnlyPrefixPatternsAreSupported() {
+        UriFilterResolver resolver = new UriFilterResolver(Optional.empty(), true);
+
+        assertThat(resolver.resolve(List.of("/users/*"))).isEqualTo(new UriFilter(Set.of(), List.of("/users/")));
+        assertThatThrownBy(() -> resolver.resolve(List.of("/events/*/comments")))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    private static UriTrie trie() {
+        UriTrie trie = new UriTrie(new SimpleMeterRegistry());
+        URIS.forEach(uri -> trie.add("ewm", uri, "10.0.0.1", LocalDateTime.of(2024, 1, 1, 0, 0)));
+        return trie;
+    }
+}